@@ -0,0 +1,19 @@
+package com.github.asm0dey.cligen.runtime;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Parses the value of a {@code long} or {@code int} {@link Option} as a number of bytes
+ * with an optional unit: {@code B}, decimal {@code kB}/{@code KB}, {@code MB}, {@code GB},
+ * {@code TB}, {@code PB}, {@code EB}, or binary {@code KiB}, {@code MiB}, {@code GiB},
+ * {@code TiB}, {@code PiB}, {@code EiB}, as in {@code 512MiB}. The generated parser scans
+ * the value character by character and reports overflow and invalid characters with
+ * their position.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target({ElementType.FIELD, ElementType.RECORD_COMPONENT})
+public @interface ByteSize {
+}
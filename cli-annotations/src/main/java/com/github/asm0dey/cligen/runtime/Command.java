@@ -13,4 +13,28 @@ public @interface Command {
     String version() default "";
     boolean mixinStandardHelpOptions() default false;
     Class<?>[] subcommands() default {};
+    /**
+     * End option parsing at the first positional argument, as if {@code --} preceded it.
+     * Wrapper tools use this to pass everything after the wrapped program's name through
+     * untouched, including tokens that look like options such as {@code -Xmx4g}.
+     */
+    boolean stopAtPositional() default false;
+    /**
+     * Generate a single self-contained {@code XxxCli} class instead of a
+     * {@link CommandParser}. It holds parsing, help and version handling with
+     * no reference to the cli-gen runtime, so a small tool loads one class for
+     * its command line. Errors are reported as {@link IllegalArgumentException}s,
+     * and custom converters are not supported in this mode.
+     */
+    boolean standalone() default false;
+    /**
+     * Generate a parser that describes the command with compact tables run by the shared
+     * {@link TableParser} interpreter instead of straight-line code per option. For commands
+     * with hundreds of options this cuts the size of the parser class, and so the time to
+     * load it, at the cost of boxing the values. Map, I/O-bound, byte size and duration
+     * options, constraints and option groups need the generated code and are compile errors.
+     * The parser does not support {@link CommandParser.Capability#OVERRIDES} and
+     * {@link CommandParser.Capability#REUSE}.
+     */
+    boolean tableDriven() default false;
 }
@@ -0,0 +1,17 @@
+package com.github.asm0dey.cligen.runtime;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Parses the value of a {@link java.time.Duration} {@link Option} as one or more whole
+ * amounts with units {@code d}, {@code h}, {@code m}, {@code s}, {@code ms}, {@code us}
+ * or {@code ns}, as in {@code 30s} or {@code 1h30m}. The generated parser scans the value
+ * character by character and reports overflow and invalid characters with their position.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target({ElementType.FIELD, ElementType.RECORD_COMPONENT})
+public @interface CompactDuration {
+}
@@ -0,0 +1,16 @@
+package com.github.asm0dey.cligen.runtime;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Requires a {@code String}, {@link java.nio.file.Path} or {@link java.io.File}
+ * {@link Option} or {@link Parameters} field to name an existing file or directory.
+ * The generated parser checks the value right after converting it.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target({ElementType.FIELD, ElementType.RECORD_COMPONENT})
+public @interface Existing {
+}
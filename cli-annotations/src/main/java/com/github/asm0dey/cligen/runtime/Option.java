@@ -21,4 +21,20 @@ public @interface Option {
      * (int, long, boolean, etc.) and plain String assignment are used.
      */
     Class<?> converter() default java.lang.Void.class;
+    /**
+     * Maximum number of converted values to memoize for the option's
+     * {@link #converter()}, keyed by the input string. Results are kept in a
+     * {@link com.github.asm0dey.cligen.runtime.ConverterCache} shared by all
+     * parsers using the same converter class, so the converter must be a pure
+     * function of its input. 0 (the default) disables caching.
+     */
+    int converterCacheSize() default 0;
+    /**
+     * Marks the option's {@link #converter()} as I/O-bound, e.g. resolving a host
+     * name or reading a file. Such conversions start on a background thread as
+     * soon as the value is read and are joined before the command is built, so
+     * several of them overlap instead of running one after another. Conversion
+     * failures are still reported in token order, after any syntax error.
+     */
+    boolean ioBound() default false;
 }
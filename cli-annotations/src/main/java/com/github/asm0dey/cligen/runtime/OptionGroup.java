@@ -0,0 +1,34 @@
+package com.github.asm0dey.cligen.runtime;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Repeatable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Constrains which options of a {@link Command} may be given together.
+ * The generated parser checks every group after all tokens are consumed and
+ * throws a {@link ParseException} naming the group's options if it is violated.
+ * Contradictory groups, such as an exclusive group of two required options,
+ * are rejected at compile time.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target({ElementType.TYPE})
+@Repeatable(OptionGroups.class)
+public @interface OptionGroup {
+    Type type();
+    /**
+     * Names of the grouped options; any of an option's names may be used.
+     */
+    String[] options();
+
+    enum Type {
+        /** At most one of the options may be given. */
+        EXCLUSIVE,
+        /** Either all of the options or none of them must be given. */
+        CO_REQUIRED,
+        /** At least one of the options must be given. */
+        AT_LEAST_ONE
+    }
+}
@@ -0,0 +1,15 @@
+package com.github.asm0dey.cligen.runtime;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Container for repeated {@link OptionGroup} annotations.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target({ElementType.TYPE})
+public @interface OptionGroups {
+    OptionGroup[] value();
+}
@@ -0,0 +1,17 @@
+package com.github.asm0dey.cligen.runtime;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Requires the whole value of a {@code String} {@link Option} or {@link Parameters} field to
+ * match a regular expression. The expression is validated at compile time and compiled once
+ * into a {@code static final} field of the generated parser.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target({ElementType.FIELD, ElementType.RECORD_COMPONENT})
+public @interface Pattern {
+    String value();
+}
@@ -0,0 +1,18 @@
+package com.github.asm0dey.cligen.runtime;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Requires the numeric value of an {@link Option} or {@link Parameters} field to lie within
+ * {@code [min, max]}. The generated parser checks the value right after converting it and
+ * reports an error naming the bounds; defaults are not checked.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target({ElementType.FIELD, ElementType.RECORD_COMPONENT})
+public @interface Range {
+    long min() default Long.MIN_VALUE;
+    long max() default Long.MAX_VALUE;
+}
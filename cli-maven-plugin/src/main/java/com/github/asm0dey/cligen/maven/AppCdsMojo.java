@@ -0,0 +1,169 @@
+package com.github.asm0dey.cligen.maven;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.project.MavenProject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds a dynamic AppCDS archive for a generated CLI and a launcher script that uses it.
+ * <p>
+ * The goal runs the packaged main class once with {@code -XX:ArchiveClassesAtExit} and the
+ * training arguments, so every class loaded by a typical invocation (the command, its
+ * generated parser and the runtime) is stored pre-parsed in the archive. It then times
+ * the main class with and without the archive and logs both startup times.
+ * <p>
+ * CDS only archives classes loaded from jar files, so the goal must run after the
+ * project jar has been built, e.g. in the {@code package} phase.
+ */
+@Mojo(name = "appcds", defaultPhase = LifecyclePhase.PACKAGE,
+        requiresDependencyResolution = ResolutionScope.RUNTIME, threadSafe = true)
+public class AppCdsMojo extends AbstractMojo {
+
+    @Parameter(defaultValue = "${project}", readonly = true, required = true)
+    private MavenProject project;
+
+    /**
+     * Main class of the CLI.
+     */
+    @Parameter(property = "cli-gen.mainClass", required = true)
+    private String mainClass;
+
+    /**
+     * Arguments of the training run; they should exercise the commands users run most.
+     */
+    @Parameter
+    private List<String> trainingArgs = new ArrayList<>();
+
+    @Parameter(defaultValue = "${project.build.directory}/${project.artifactId}.jsa")
+    private File archiveFile;
+
+    @Parameter(defaultValue = "${project.build.directory}/${project.artifactId}")
+    private File launcherFile;
+
+    @Parameter(defaultValue = "${java.home}/bin/java")
+    private File javaExecutable;
+
+    /**
+     * Number of timed runs with and without the archive; the fastest run of each is reported.
+     */
+    @Parameter(property = "cli-gen.startupRuns", defaultValue = "5")
+    private int startupRuns;
+
+    @Parameter(property = "cli-gen.appcds.skip", defaultValue = "false")
+    private boolean skip;
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        if (skip) {
+            getLog().info("Skipping AppCDS archive");
+            return;
+        }
+        String classpath = buildClasspath();
+
+        try {
+            Files.createDirectories(archiveFile.toPath().getParent());
+            Files.deleteIfExists(archiveFile.toPath());
+
+            getLog().info("Training " + mainClass + " " + String.join(" ", trainingArgs));
+            int exitCode = run(List.of("-XX:ArchiveClassesAtExit=" + archiveFile.getAbsolutePath()), classpath);
+            if (exitCode != 0) {
+                getLog().warn("Training run exited with code " + exitCode);
+            }
+            if (!archiveFile.isFile()) {
+                throw new MojoExecutionException("Training run did not create " + archiveFile);
+            }
+            getLog().info("Wrote AppCDS archive " + archiveFile + " (" + archiveFile.length() / 1024 + " KiB)");
+
+            writeLauncher(classpath);
+            getLog().info("Wrote launcher " + launcherFile);
+
+            if (startupRuns > 0) {
+                long withoutArchive = fastestRunMillis(List.of("-Xshare:auto"), classpath);
+                long withArchive = fastestRunMillis(
+                        List.of("-XX:SharedArchiveFile=" + archiveFile.getAbsolutePath()), classpath);
+                getLog().info(String.format("Startup of %s: %d ms without archive, %d ms with archive (%.0f%% faster)",
+                        mainClass, withoutArchive, withArchive,
+                        100.0 * (withoutArchive - withArchive) / Math.max(1, withoutArchive)));
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Cannot build AppCDS archive: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while building AppCDS archive", e);
+        }
+    }
+
+    private String buildClasspath() throws MojoExecutionException {
+        List<String> entries = new ArrayList<>();
+        entries.add(jarOf(project.getArtifact(), "project"));
+        for (Artifact artifact : project.getArtifacts()) {
+            if (artifact.getArtifactHandler().isAddedToClasspath()
+                    && (Artifact.SCOPE_COMPILE.equals(artifact.getScope()) || Artifact.SCOPE_RUNTIME.equals(artifact.getScope()))) {
+                entries.add(jarOf(artifact, artifact.getId()));
+            }
+        }
+        return String.join(File.pathSeparator, entries);
+    }
+
+    private static String jarOf(Artifact artifact, String description) throws MojoExecutionException {
+        File file = artifact.getFile();
+        if (file == null || !file.isFile()) {
+            throw new MojoExecutionException("AppCDS needs jar files on the class path, but " + description
+                    + " is " + (file == null ? "not packaged" : "the directory " + file)
+                    + "; run the goal in the package phase or later");
+        }
+        return file.getAbsolutePath();
+    }
+
+    private long fastestRunMillis(List<String> jvmOptions, String classpath) throws IOException, InterruptedException {
+        long fastest = Long.MAX_VALUE;
+        for (int i = 0; i < startupRuns; i++) {
+            long start = System.nanoTime();
+            run(jvmOptions, classpath);
+            fastest = Math.min(fastest, (System.nanoTime() - start) / 1_000_000);
+        }
+        return fastest;
+    }
+
+    private int run(List<String> jvmOptions, String classpath) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(javaExecutable.getAbsolutePath());
+        command.addAll(jvmOptions);
+        command.add("-cp");
+        command.add(classpath);
+        command.add(mainClass);
+        command.addAll(trainingArgs);
+        Process process = new ProcessBuilder(command)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        return process.waitFor();
+    }
+
+    private void writeLauncher(String classpath) throws IOException {
+        // The archive is only valid for the exact class path it was dumped with, so paths stay absolute
+        String script = "#!/bin/sh\n"
+                + "# Generated by cli-maven-plugin: runs " + mainClass + " with its AppCDS archive\n"
+                + "exec \"${JAVA:-" + javaExecutable.getAbsolutePath() + "}\" $JAVA_OPTS"
+                + " -XX:SharedArchiveFile=\"" + archiveFile.getAbsolutePath() + "\""
+                + " -cp \"" + classpath + "\" " + mainClass + " \"$@\"\n";
+        Path launcher = launcherFile.toPath();
+        Files.write(launcher, script.getBytes(StandardCharsets.UTF_8));
+        if (!launcher.toFile().setExecutable(true)) {
+            getLog().warn("Cannot make " + launcher + " executable");
+        }
+    }
+}
@@ -3,19 +3,49 @@ package com.github.asm0dey.cligen;
 import com.github.asm0dey.cligen.runtime.*;
 import com.google.auto.service.AutoService;
 import com.squareup.javapoet.*;
+import com.sun.source.util.Trees;
 import javax.annotation.processing.*;
 import javax.lang.model.SourceVersion;
 import javax.lang.model.element.*;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
 import javax.lang.model.type.MirroredTypeException;
 import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 @AutoService(Processor.class)
 @SupportedAnnotationTypes({"com.github.asm0dey.cligen.runtime.Command"})
 @SupportedSourceVersion(SourceVersion.RELEASE_17)
 public class CliAnnotationProcessor extends AbstractProcessor {
+    /** Options handled by one generated dispatch or validation method. */
+    static final int OPTIONS_PER_METHOD = 128;
+    /** Option names matched by one generated string switch. */
+    static final int NAMES_PER_METHOD = 128;
+    /** HotSpot does not JIT-compile methods with more bytecode than this ({@code -XX:HugeMethodLimit}). */
+    static final int HUGE_METHOD_LIMIT = 8000;
+    /** The class file format limit for the bytecode of a method. */
+    static final int MAX_METHOD_SIZE = 65535;
+    /** String constants are limited to 65535 bytes of modified UTF-8, i.e. at least 21845 chars. */
+    static final int HELP_CHUNK_CHARS = 20000;
+
+    /** Option handler classes already written in this compilation, shared by several commands. */
+    private final Set<String> writtenOptionHandlers = new HashSet<>();
+    /** Lines of the {@link CommandIndex} resource, written once all rounds are done. */
+    private final List<String> commandIndex = new ArrayList<>();
+    private final Map<String, List<StandaloneCommand>> standaloneCommands = new TreeMap<>();
+    private final Set<String> writtenStandaloneDispatchers = new HashSet<>();
+    private static final Set<String> BYTE_SIZE_TYPES = Set.of("long", "int", "java.lang.Long", "java.lang.Integer");
+    private static final Set<String> NUMERIC_TYPES = Set.of("int", "long", "short", "byte", "double", "float",
+            "java.lang.Integer", "java.lang.Long", "java.lang.Short", "java.lang.Byte",
+            "java.lang.Double", "java.lang.Float");
+    private static final Set<String> EXISTING_TYPES = Set.of("java.lang.String", "java.nio.file.Path", "java.io.File");
 
     @Override
     public boolean process(Set<? extends TypeElement> annotations,
@@ -26,6 +56,11 @@ public class CliAnnotationProcessor extends AbstractProcessor {
         );
 
 
+        if (roundEnv.processingOver()) {
+            writeCommandIndex();
+            return false;
+        }
+
         if (annotations.isEmpty()) {
             processingEnv.getMessager().printMessage(
                     Diagnostic.Kind.NOTE,
@@ -58,9 +93,131 @@ public class CliAnnotationProcessor extends AbstractProcessor {
             }
         }
 
+        writeStandaloneDispatchers();
         return true;
     }
 
+    /**
+     * A standalone command, collected to generate the dispatcher of its package.
+     */
+    private record StandaloneCommand(String name, ClassName cli, String description, TypeElement element) {
+    }
+
+    /**
+     * Generate a {@code CliDispatcher} for every package declaring at least two standalone commands.
+     */
+    private void writeStandaloneDispatchers() {
+        for (Map.Entry<String, List<StandaloneCommand>> entry : standaloneCommands.entrySet()) {
+            String packageName = entry.getKey();
+            List<StandaloneCommand> commands = entry.getValue();
+            if (commands.size() < 2 || !writtenStandaloneDispatchers.add(packageName)) {
+                continue;
+            }
+            Set<String> names = new HashSet<>();
+            boolean unique = true;
+            for (StandaloneCommand command : commands) {
+                if (!names.add(command.name())) {
+                    error("Duplicate standalone command name in package " + packageName + ": " + command.name(),
+                            command.element());
+                    unique = false;
+                }
+            }
+            if (!unique) {
+                // Other packages still get their dispatchers, so only the duplicate is reported
+                continue;
+            }
+            try {
+                JavaFile.builder(packageName, generateStandaloneDispatcher(commands))
+                        .addFileComment("Generated by CLI-Gen annotation processor")
+                        .addFileComment("DO NOT EDIT - changes will be overwritten")
+                        .build()
+                        .writeTo(processingEnv.getFiler());
+            } catch (IOException e) {
+                error("Cannot write standalone dispatcher of package " + packageName + ": " + e.getMessage(),
+                        commands.get(0).element());
+            }
+        }
+    }
+
+    private TypeSpec generateStandaloneDispatcher(List<StandaloneCommand> commands) {
+        StringBuilder help = new StringBuilder("Usage: <command> [options]\n\nCommands:\n");
+        int width = 0;
+        for (StandaloneCommand command : commands) {
+            width = Math.max(width, command.name().length());
+        }
+        for (StandaloneCommand command : commands) {
+            help.append("  ").append(command.name());
+            if (!command.description().isEmpty()) {
+                help.append(" ".repeat(width - command.name().length() + 2)).append(command.description());
+            }
+            help.append("\n");
+        }
+        help.append("\nUse '<command> --help' for command-specific help\n");
+
+        CodeBlock.Builder parse = CodeBlock.builder().beginControlFlow("switch (args[0])");
+        CodeBlock.Builder parseOrExit = CodeBlock.builder().beginControlFlow("switch (args[0])");
+        for (StandaloneCommand command : commands) {
+            parse.add("case $S:\n", command.name())
+                    .indent().addStatement("return $T.parse(commandArgs)", command.cli()).unindent();
+            parseOrExit.add("case $S:\n", command.name())
+                    .indent().addStatement("return $T.parseOrExit(commandArgs)", command.cli()).unindent();
+        }
+        parse.add("default:\n").indent()
+                .addStatement("throw new $T($S + args[0] + $S)", IllegalArgumentException.class,
+                        "Unknown command: ", ". Use --help for available commands.")
+                .unindent()
+                .endControlFlow();
+        parseOrExit.endControlFlow();
+
+        return TypeSpec.classBuilder("CliDispatcher")
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addJavadoc("Generated dispatcher of the standalone commands of this package\n")
+                .addJavadoc("Self-contained: no reference to the CLI-Gen runtime\n")
+                .addField(FieldSpec.builder(String.class, "HELP", Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                        .initializer(stringExpression(help.toString()))
+                        .build())
+                .addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PRIVATE).build())
+                .addMethod(MethodSpec.methodBuilder("dispatch")
+                        .addJavadoc("Parse the arguments after the command name with the parser of the command\n")
+                        .addJavadoc("named by {@code args[0]}.\n")
+                        .addJavadoc("\n@throws IllegalArgumentException if the command is unknown or its arguments are invalid.\n")
+                        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                        .returns(Object.class)
+                        .addParameter(String[].class, "args")
+                        .beginControlFlow("if (args.length == 0)")
+                        .addStatement("throw new $T($S)", IllegalArgumentException.class,
+                                "No command specified. Use --help for available commands.")
+                        .endControlFlow()
+                        .addStatement("$T[] commandArgs = $T.copyOfRange(args, 1, args.length)",
+                                String.class, Arrays.class)
+                        .addCode(parse.build())
+                        .build())
+                .addMethod(MethodSpec.methodBuilder("dispatchOrExit")
+                        .addJavadoc("Entry point for {@code main}: prints the command list for {@code --help}, runs the\n")
+                        .addJavadoc("{@code parseOrExit} of the command, or prints the error and exits with status 2.\n")
+                        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                        .returns(Object.class)
+                        .addParameter(String[].class, "args")
+                        .beginControlFlow("if (args.length > 0)")
+                        .beginControlFlow("if (args[0].equals($S) || args[0].equals($S))", "--help", "-h")
+                        .addStatement("$T.out.print(HELP)", System.class)
+                        .addStatement("$T.exit(0)", System.class)
+                        .endControlFlow()
+                        .addStatement("$T[] commandArgs = $T.copyOfRange(args, 1, args.length)",
+                                String.class, Arrays.class)
+                        .addCode(parseOrExit.build())
+                        .endControlFlow()
+                        .beginControlFlow("try")
+                        .addStatement("return dispatch(args)")
+                        .nextControlFlow("catch ($T e)", IllegalArgumentException.class)
+                        .addStatement("$T.err.println($S + e.getMessage())", System.class, "ERROR: ")
+                        .addStatement("$T.exit(2)", System.class)
+                        .addStatement("return null")
+                        .endControlFlow()
+                        .build())
+                .build();
+    }
+
     private void processCommand(TypeElement typeElement) throws IOException {
         Command cmdAnnotation = typeElement.getAnnotation(Command.class);
         String commandName = cmdAnnotation.name();
@@ -74,25 +231,90 @@ public class CliAnnotationProcessor extends AbstractProcessor {
         );
 
         // Collect metadata
-        Map<String, OptionMetadata> options = new HashMap<>();
+        Map<String, OptionMetadata> options = new LinkedHashMap<>();
         List<ParameterMetadata> parameters = new ArrayList<>();
 
-        List<? extends Element> members = typeElement.getKind() == ElementKind.RECORD
-                ? typeElement.getEnclosedElements().stream()
-                .filter(e -> e.getKind() == ElementKind.RECORD_COMPONENT)
-                .toList()
-                : typeElement.getEnclosedElements().stream()
-                .filter(e -> e.getKind() == ElementKind.FIELD)
-                .toList();
+        List<VariableElement> members = commandFields(typeElement);
+        Set<String> fieldNames = new HashSet<>();
+        warnAboutCompiledSuperclasses(typeElement);
 
-        for (Element member : members) {
-            VariableElement var = (VariableElement) member;
+        for (VariableElement member : members) {
+            VariableElement var = member;
             Option optAnnotation = member.getAnnotation(Option.class);
             Parameters paramAnnotation = member.getAnnotation(Parameters.class);
 
+            if (optAnnotation != null || paramAnnotation != null) {
+                String fieldName = var.getSimpleName().toString();
+                if (!fieldNames.add(fieldName)) {
+                    error("Field " + fieldName + " of " + typeElement.getSimpleName()
+                            + " hides an inherited option or parameter field of the same name", member);
+                    return;
+                }
+                if (!checkInheritedAccess(typeElement, var)) {
+                    return;
+                }
+            }
             if (optAnnotation != null) {
-                options.put(var.getSimpleName().toString(),
-                        new OptionMetadata(optAnnotation, var));
+                OptionMetadata meta = new OptionMetadata(optAnnotation, var);
+                if (optAnnotation.converterCacheSize() < 0) {
+                    error("converterCacheSize must not be negative", member);
+                    return;
+                }
+                if (optAnnotation.converterCacheSize() > 0 && getConverterFqn(meta) == null) {
+                    error("converterCacheSize requires a converter on option " + optAnnotation.names()[0], member);
+                    return;
+                }
+                if (optAnnotation.ioBound() && getConverterFqn(meta) == null) {
+                    error("ioBound requires a converter on option " + optAnnotation.names()[0], member);
+                    return;
+                }
+                if (isMap(var.asType())) {
+                    List<? extends TypeMirror> typeArguments = ((DeclaredType) var.asType()).getTypeArguments();
+                    if (typeArguments.size() != 2 || !typeArguments.get(0).toString().equals("java.lang.String")
+                            || !FieldTypeAnalyzer.isConvertible(typeArguments.get(1))) {
+                        error("Map option " + optAnnotation.names()[0] + " must have type Map<String, V>"
+                                + " with V one of String, Integer, Long, Boolean, Double or Float", member);
+                        return;
+                    }
+                    if (getConverterFqn(meta) != null || optAnnotation.arity().equals("0")) {
+                        error("Map option " + optAnnotation.names()[0]
+                                + " takes key=value pairs and cannot have a converter or arity 0", member);
+                        return;
+                    }
+                    meta.mapValueType = typeArguments.get(1);
+                }
+                if (member.getAnnotation(ByteSize.class) != null || member.getAnnotation(CompactDuration.class) != null) {
+                    String unitAnnotation = member.getAnnotation(ByteSize.class) != null ? "@ByteSize" : "@CompactDuration";
+                    String typeName = var.asType().toString();
+                    if (member.getAnnotation(ByteSize.class) != null && member.getAnnotation(CompactDuration.class) != null) {
+                        error("Option " + optAnnotation.names()[0] + " cannot be both @ByteSize and @CompactDuration", member);
+                        return;
+                    }
+                    if (getConverterFqn(meta) != null || meta.mapValueType != null || optAnnotation.arity().equals("0")) {
+                        error(unitAnnotation + " option " + optAnnotation.names()[0]
+                                + " cannot also have a converter, a Map type or arity 0", member);
+                        return;
+                    }
+                    if (unitAnnotation.equals("@ByteSize") && !BYTE_SIZE_TYPES.contains(typeName)) {
+                        error("@ByteSize option " + optAnnotation.names()[0] + " must be a long or an int", member);
+                        return;
+                    }
+                    if (unitAnnotation.equals("@CompactDuration") && !typeName.equals("java.time.Duration")) {
+                        error("@CompactDuration option " + optAnnotation.names()[0] + " must be a java.time.Duration", member);
+                        return;
+                    }
+                    meta.scanner = unitAnnotation.equals("@ByteSize") ? "parseByteSize" : "parseDuration";
+                }
+                if (!validateConstraints(var, "option " + optAnnotation.names()[0],
+                        meta.mapValueType != null || optAnnotation.arity().equals("0"))) {
+                    return;
+                }
+                TypeElement declaringType = (TypeElement) var.getEnclosingElement();
+                if (!declaringType.equals(typeElement) && !cmdAnnotation.standalone() && !cmdAnnotation.tableDriven()
+                        && !optAnnotation.ioBound() && meta.mapValueType == null && !optAnnotation.arity().equals("0")) {
+                    meta.handlers = ClassName.get(packageOf(declaringType), optionHandlersClassName(declaringType));
+                }
+                options.put(var.getSimpleName().toString(), meta);
                 processingEnv.getMessager().printMessage(
                         Diagnostic.Kind.NOTE,
                         "[CLI-GEN] Found option: " + var.getSimpleName() +
@@ -100,6 +322,9 @@ public class CliAnnotationProcessor extends AbstractProcessor {
                 );
             }
             if (paramAnnotation != null) {
+                if (!validateConstraints(var, "parameter " + var.getSimpleName(), false)) {
+                    return;
+                }
                 parameters.add(new ParameterMetadata(paramAnnotation, var));
                 processingEnv.getMessager().printMessage(
                         Diagnostic.Kind.NOTE,
@@ -114,63 +339,1407 @@ public class CliAnnotationProcessor extends AbstractProcessor {
                         " options and " + parameters.size() + " parameters"
         );
 
+        Map<String, String> fieldsByOptionName = new HashMap<>();
+        for (Map.Entry<String, OptionMetadata> option : options.entrySet()) {
+            for (String name : option.getValue().annotation.names()) {
+                String previous = fieldsByOptionName.put(name, option.getKey());
+                if (previous != null) {
+                    error("Option name " + name + " is used by both " + previous + " and " + option.getKey(),
+                            option.getValue().element);
+                    return;
+                }
+            }
+        }
+
+        List<OptionGroupMetadata> groups = resolveOptionGroups(typeElement, options);
+        if (groups == null) {
+            return;
+        }
+
+        if (cmdAnnotation.tableDriven() && !validateTableDriven(typeElement, cmdAnnotation, options, parameters, groups)) {
+            return;
+        }
+
+        if (cmdAnnotation.standalone()) {
+            for (OptionMetadata meta : options.values()) {
+                if (getConverterFqn(meta) != null) {
+                    error("Custom converters are not supported in standalone mode: option "
+                            + meta.annotation.names()[0], meta.element);
+                    return;
+                }
+            }
+            String cliClassName = typeElement.getSimpleName() + "Cli";
+            standaloneCommands.computeIfAbsent(packageName, name -> new ArrayList<>())
+                    .add(new StandaloneCommand(commandName, ClassName.get(packageName, cliClassName),
+                            cmdAnnotation.description().strip().lines().findFirst().orElse(""), typeElement));
+            processingEnv.getMessager().printMessage(
+                    Diagnostic.Kind.NOTE,
+                    "[CLI-GEN] Writing standalone parser: " + packageName + "." + cliClassName
+            );
+            JavaFile.builder(packageName,
+                            generateStandaloneClass(typeElement, commandName, cmdAnnotation, options, parameters, groups))
+                    .addFileComment("Generated by CLI-Gen annotation processor")
+                    .addFileComment("DO NOT EDIT - changes will be overwritten")
+                    .build()
+                    .writeTo(processingEnv.getFiler());
+            return;
+        }
+
+        generateOptionHandlers(options);
+
         // Generate parser class using JavaPoet
         String parserClassName = capitalizeFirst(typeElement.getSimpleName().toString()) + "CommandParser";
-        TypeSpec parserClass = generateParserClass(
-                typeElement, commandName, cmdAnnotation, options, parameters
+        TypeSpec parserClass = cmdAnnotation.tableDriven()
+                ? generateTableParserClass(typeElement, commandName, cmdAnnotation, options, parameters)
+                : generateParserClass(typeElement, commandName, cmdAnnotation, options, parameters, groups);
+
+        // Write to source file
+        JavaFile javaFile = JavaFile.builder(packageName, parserClass)
+                .addFileComment("Generated by CLI-Gen annotation processor")
+                .addFileComment("DO NOT EDIT - changes will be overwritten")
+                .build();
+
+        processingEnv.getMessager().printMessage(
+                Diagnostic.Kind.NOTE,
+                "[CLI-GEN] Writing generated parser: " + packageName + "." + parserClassName
+        );
+
+        javaFile.writeTo(processingEnv.getFiler());
+
+        String description = cmdAnnotation.description().strip().lines().findFirst().orElse("");
+        commandIndex.add(commandName + "\t" + (packageName.isEmpty() ? "" : packageName + ".") + parserClassName
+                + "\t" + description.replace('\t', ' '));
+
+        generateCodec(typeElement, commandName, packageName);
+    }
+
+    /**
+     * Write the {@link CommandIndex} of the parsers generated in this compilation, so
+     * applications can find the commands of every jar without loading them.
+     * <p>
+     * An incremental compilation only processes the changed commands, so the index already in
+     * the output is merged in, as AutoService does for service files. Its entries are kept
+     * unless this compilation generated the same command or parser, or the parser or its
+     * command type no longer exists.
+     */
+    private void writeCommandIndex() {
+        if (commandIndex.isEmpty()) {
+            return;
+        }
+        Set<String> parsers = new HashSet<>();
+        for (String line : commandIndex) {
+            parsers.add(line.split("\t", 3)[1]);
+        }
+        // Sorted by command name, so the index does not depend on which compilation wrote an entry
+        Map<String, String> lines = new TreeMap<>();
+        for (String line : readCommandIndex()) {
+            String[] fields = line.split("\t", 3);
+            if (fields.length == 3 && !parsers.contains(fields[1]) && commandTypeExists(fields[1])) {
+                lines.put(fields[0], line);
+            }
+        }
+        for (String line : commandIndex) {
+            lines.put(line.split("\t", 3)[0], line);
+        }
+        try {
+            FileObject resource = processingEnv.getFiler()
+                    .createResource(StandardLocation.CLASS_OUTPUT, "", CommandIndex.RESOURCE);
+            try (Writer writer = new OutputStreamWriter(resource.openOutputStream(), StandardCharsets.UTF_8)) {
+                writer.write("# Generated by CLI-Gen annotation processor: command, parser, description\n");
+                for (String line : lines.values()) {
+                    writer.write(line);
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "[CLI-GEN] Cannot write command index " + CommandIndex.RESOURCE + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * The entries of the {@link CommandIndex} a previous compilation left in the output, if any.
+     */
+    private List<String> readCommandIndex() {
+        List<String> lines = new ArrayList<>();
+        try {
+            FileObject resource = processingEnv.getFiler()
+                    .getResource(StandardLocation.CLASS_OUTPUT, "", CommandIndex.RESOURCE);
+            resource.getCharContent(true).toString().lines()
+                    .filter(line -> !line.isEmpty() && line.charAt(0) != '#')
+                    .forEach(lines::add);
+        } catch (IOException | IllegalArgumentException e) {
+            // No index yet
+        }
+        return lines;
+    }
+
+    /**
+     * Whether the parser class of an index entry and the command type it parses still exist.
+     */
+    private boolean commandTypeExists(String parserClass) {
+        TypeElement parser = processingEnv.getElementUtils().getTypeElement(parserClass);
+        if (parser == null) {
+            return false;
+        }
+        for (TypeMirror type : parser.getInterfaces()) {
+            if (type.getKind() == TypeKind.DECLARED && ((DeclaredType) type).asElement().getSimpleName()
+                    .contentEquals(CommandParser.class.getSimpleName())) {
+                List<? extends TypeMirror> arguments = ((DeclaredType) type).getTypeArguments();
+                return arguments.size() == 1 && arguments.get(0).getKind() == TypeKind.DECLARED;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The record components of a record, or the fields of a class and its superclasses, the
+     * fields of the topmost superclass first.
+     */
+    private List<VariableElement> commandFields(TypeElement typeElement) {
+        if (typeElement.getKind() == ElementKind.RECORD) {
+            List<VariableElement> components = new ArrayList<>();
+            for (Element member : typeElement.getEnclosedElements()) {
+                if (member.getKind() == ElementKind.RECORD_COMPONENT) {
+                    components.add((VariableElement) member);
+                }
+            }
+            return components;
+        }
+        List<VariableElement> fields = new ArrayList<>();
+        TypeMirror superclass = typeElement.getSuperclass();
+        if (superclass.getKind() == TypeKind.DECLARED) {
+            TypeElement superElement = (TypeElement) processingEnv.getTypeUtils().asElement(superclass);
+            if (!superElement.getQualifiedName().contentEquals("java.lang.Object")) {
+                fields.addAll(commandFields(superElement));
+            }
+        }
+        for (Element member : typeElement.getEnclosedElements()) {
+            if (member.getKind() == ElementKind.FIELD) {
+                fields.add((VariableElement) member);
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * Check that the generated parser of {@code typeElement} and the option handlers of the
+     * superclass can set an inherited option or parameter field.
+     */
+    private boolean checkInheritedAccess(TypeElement typeElement, VariableElement field) {
+        TypeElement declaringType = (TypeElement) field.getEnclosingElement();
+        if (declaringType.equals(typeElement)) {
+            return true;
+        }
+        Set<Modifier> modifiers = field.getModifiers();
+        if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.FINAL) || modifiers.contains(Modifier.STATIC)
+                || !modifiers.contains(Modifier.PUBLIC) && !packageOf(declaringType).equals(packageOf(typeElement))) {
+            error("Inherited field " + field.getSimpleName() + " of " + declaringType.getSimpleName()
+                    + " must be a non-final instance field visible in the package of "
+                    + typeElement.getSimpleName(), field);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Warn about superclasses of a command that come from class files. Their annotations have
+     * source retention, so their public fields silently contribute no options or parameters.
+     */
+    private void warnAboutCompiledSuperclasses(TypeElement typeElement) {
+        Trees trees;
+        try {
+            trees = Trees.instance(processingEnv);
+        } catch (IllegalArgumentException e) {
+            // Not javac; sources cannot be told apart from class files
+            return;
+        }
+        TypeMirror superclass = typeElement.getSuperclass();
+        while (superclass.getKind() == TypeKind.DECLARED) {
+            TypeElement superElement = (TypeElement) processingEnv.getTypeUtils().asElement(superclass);
+            if (superElement.getQualifiedName().contentEquals("java.lang.Object")) {
+                return;
+            }
+            if (trees.getPath(superElement) == null) {
+                List<String> fields = new ArrayList<>();
+                for (Element member : superElement.getEnclosedElements()) {
+                    if (member.getKind() == ElementKind.FIELD && member.getModifiers().contains(Modifier.PUBLIC)
+                            && !member.getModifiers().contains(Modifier.STATIC)) {
+                        fields.add(member.getSimpleName().toString());
+                    }
+                }
+                if (!fields.isEmpty()) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                            "[CLI-GEN] Superclass " + superElement.getQualifiedName() + " of "
+                                    + typeElement.getSimpleName() + " is compiled without its source, so its fields "
+                                    + String.join(", ", fields) + " are not options or parameters even if annotated;"
+                                    + " compile it together with " + typeElement.getSimpleName(),
+                            typeElement);
+                }
+            }
+            superclass = superElement.getSuperclass();
+        }
+    }
+
+    private String packageOf(TypeElement typeElement) {
+        return processingEnv.getElementUtils().getPackageOf(typeElement).getQualifiedName().toString();
+    }
+
+    private static String optionHandlersClassName(TypeElement declaringType) {
+        return declaringType.getSimpleName() + "OptionHandlers";
+    }
+
+    /**
+     * Write the option handler class of every superclass declaring options handled by
+     * {@link OptionMetadata#handlers}, unless a command processed earlier already did.
+     */
+    private void generateOptionHandlers(Map<String, OptionMetadata> options) throws IOException {
+        Map<ClassName, Map<String, OptionMetadata>> optionsByHandlers = new LinkedHashMap<>();
+        for (Map.Entry<String, OptionMetadata> option : options.entrySet()) {
+            ClassName handlers = option.getValue().handlers;
+            if (handlers != null) {
+                optionsByHandlers.computeIfAbsent(handlers, name -> new LinkedHashMap<>())
+                        .put(option.getKey(), option.getValue());
+            }
+        }
+        for (Map.Entry<ClassName, Map<String, OptionMetadata>> entry : optionsByHandlers.entrySet()) {
+            ClassName handlers = entry.getKey();
+            if (!writtenOptionHandlers.add(handlers.canonicalName())) {
+                continue;
+            }
+            processingEnv.getMessager().printMessage(
+                    Diagnostic.Kind.NOTE,
+                    "[CLI-GEN] Writing shared option handlers: " + handlers.canonicalName()
+            );
+            JavaFile.builder(handlers.packageName(), generateOptionHandlersClass(handlers, entry.getValue()))
+                    .addFileComment("Generated by CLI-Gen annotation processor")
+                    .addFileComment("DO NOT EDIT - changes will be overwritten")
+                    .build()
+                    .writeTo(processingEnv.getFiler());
+        }
+    }
+
+    /**
+     * Generate the handlers of the options a superclass declares. Every parser of a command
+     * extending it calls them instead of converting and checking the values in methods of its
+     * own, so the code is generated and loaded once however many commands share the options.
+     */
+    private TypeSpec generateOptionHandlersClass(ClassName handlers, Map<String, OptionMetadata> options) {
+        TypeElement declaringType = (TypeElement) options.values().iterator().next().element.getEnclosingElement();
+        ClassName failure = ClassName.get(ParseException.class);
+        TypeSpec.Builder handlersClass = TypeSpec.classBuilder(handlers)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addJavadoc("Generated handlers for the options of $L, shared by the parsers of its @Command subclasses\n",
+                        declaringType.getSimpleName())
+                .addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PRIVATE).build());
+        Set<String> scanners = new TreeSet<>();
+        for (Map.Entry<String, OptionMetadata> option : options.entrySet()) {
+            String fieldName = option.getKey();
+            OptionMetadata meta = option.getValue();
+            if (meta.annotation.converterCacheSize() > 0) {
+                handlersClass.addField(generateConverterCacheField(fieldName, meta));
+            }
+            if (meta.scanner != null) {
+                scanners.add(meta.scanner);
+            }
+            handlersClass.addMethod(MethodSpec.methodBuilder("parse" + capitalizeFirst(fieldName))
+                    .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                    .returns(int.class)
+                    .addParameter(ClassName.get(declaringType), "instance")
+                    .addParameter(String[].class, "args")
+                    .addParameter(int.class, "idx")
+                    .addParameter(ParseTrace.class, "trace")
+                    .addException(failure)
+                    .addCode(generateOptionHandlerCode(declaringType.getSimpleName().toString(), "instance",
+                            fieldName, meta, failure))
+                    .addStatement("return idx")
+                    .build());
+        }
+        handlersClass.addFields(generatePatternFields(options, List.of()));
+        if (!scanners.isEmpty()) {
+            handlersClass.addMethod(generateUnitErrorMethod(failure));
+        }
+        if (scanners.contains("parseByteSize")) {
+            handlersClass.addMethod(generateByteSizeScanner(failure));
+        }
+        if (scanners.contains("parseDuration")) {
+            handlersClass.addMethod(generateDurationScanner(failure));
+        }
+        return handlersClass.build();
+    }
+
+    private void generateCodec(TypeElement typeElement, String commandName, String packageName) throws IOException {
+        // Records are rebuilt through their canonical constructor, so every component is encoded
+        boolean isRecord = typeElement.getKind() == ElementKind.RECORD;
+        List<VariableElement> fields = new ArrayList<>();
+        for (VariableElement member : commandFields(typeElement)) {
+            if (isRecord || member.getAnnotation(Option.class) != null || member.getAnnotation(Parameters.class) != null) {
+                fields.add(member);
+            }
+        }
+
+        Map<VariableElement, TypeMirror> valueCodecs = new HashMap<>();
+        TypeMirror valueCodec = processingEnv.getTypeUtils().erasure(processingEnv.getElementUtils()
+                .getTypeElement(ValueCodec.class.getCanonicalName()).asType());
+        for (VariableElement field : fields) {
+            TypeMirror converter = converterType(field);
+            if (converter != null && processingEnv.getTypeUtils().isAssignable(converter, valueCodec)) {
+                valueCodecs.put(field, converter);
+            }
+        }
+
+        CodecGenerator generator = new CodecGenerator(processingEnv.getTypeUtils());
+        VariableElement unsupported = generator.findUnsupportedField(fields, valueCodecs);
+        if (unsupported != null) {
+            // Not every command is forwarded, so a missing codec is only worth a note
+            processingEnv.getMessager().printMessage(
+                    Diagnostic.Kind.NOTE,
+                    "[CLI-GEN] Skipping binary codec for " + typeElement.getSimpleName() + ": field "
+                            + unsupported.getSimpleName() + " has type " + unsupported.asType()
+                            + " which has no binary encoding"
+                            + (converterType(unsupported) == null ? "" : "; implement ValueCodec in its converter to encode it"),
+                    unsupported
+            );
+            return;
+        }
+
+        JavaFile.builder(packageName, generator.generate(typeElement, commandName, fields, valueCodecs))
+                .addFileComment("Generated by CLI-Gen annotation processor")
+                .addFileComment("DO NOT EDIT - changes will be overwritten")
+                .build()
+                .writeTo(processingEnv.getFiler());
+    }
+
+    private TypeSpec generateParserClass(TypeElement typeElement,
+                                         String commandName,
+                                         Command cmdAnnotation,
+                                         Map<String, OptionMetadata> options,
+                                         List<ParameterMetadata> parameters,
+                                         List<OptionGroupMetadata> groups) {
+
+        String simpleClassName = typeElement.getSimpleName().toString();
+        String parserClassName = simpleClassName + "CommandParser";
+
+        // Generate parse() methods
+        MethodSpec entryParseMethod = generateEntryParseMethod(typeElement);
+        MethodSpec tracedParseMethod = generateTracedParseMethod(typeElement, commandName);
+        List<MethodSpec> parseMethods = generateParseMethod(
+                typeElement, simpleClassName, options, parameters, groups, cmdAnnotation
         );
 
-        // Write to source file
-        JavaFile javaFile = JavaFile.builder(packageName, parserClass)
-                .addFileComment("Generated by CLI-Gen annotation processor")
-                .addFileComment("DO NOT EDIT - changes will be overwritten")
+        // Generate getHelpText() method
+        MethodSpec helpMethod = generateHelpMethod(commandName, cmdAnnotation, options, parameters);
+
+        // Build the parser class
+        TypeSpec.Builder parserClass = TypeSpec.classBuilder(parserClassName)
+                .addModifiers(Modifier.PUBLIC)
+                .addSuperinterface(
+                        ParameterizedTypeName.get(
+                                ClassName.get(CommandParser.class),
+                                ClassName.get(typeElement)
+                        )
+                )
+                .addJavadoc("Generated parser for @Command: $L\n", commandName)
+                .addJavadoc("Generated at compile time - zero runtime reflection\n")
+                .addField(generateSuggestionField(options));
+        String helpText = buildHelpText(commandName, cmdAnnotation, options, parameters);
+        if (helpText.length() > HELP_CHUNK_CHARS) {
+            parserClass.addField(FieldSpec.builder(String.class, "HELP_TEXT",
+                            Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                    .initializer(stringExpression(helpText))
+                    .build());
+        }
+        // Options handled by the option handlers of a superclass keep their caches and patterns there
+        Map<String, OptionMetadata> ownOptions = new LinkedHashMap<>();
+        for (Map.Entry<String, OptionMetadata> option : options.entrySet()) {
+            if (option.getValue().handlers == null) {
+                ownOptions.put(option.getKey(), option.getValue());
+            }
+        }
+        for (Map.Entry<String, OptionMetadata> option : ownOptions.entrySet()) {
+            if (option.getValue().annotation.converterCacheSize() > 0) {
+                parserClass.addField(generateConverterCacheField(option.getKey(), option.getValue()));
+            }
+        }
+        parserClass.addFields(generatePatternFields(ownOptions, parameters));
+        return parserClass
+                .addType(generateModelHolder(commandName, cmdAnnotation, options, parameters))
+                .addTypes(typeElement.getKind() == ElementKind.RECORD
+                        ? List.of()
+                        : List.of(generateDefaultsHolder(typeElement)))
+                .addMethod(entryParseMethod)
+                .addMethod(tracedParseMethod)
+                .addMethods(parseMethods)
+                .addMethod(helpMethod)
+                .addMethod(generateGetModelMethod())
+                .addMethod(typeElement.getKind() == ElementKind.RECORD
+                        ? generateSupportsMethod(CommandParser.Capability.REUSE)
+                        : generateSupportsMethod())
+                .addMethods(generateDiffMethods(typeElement, options, parameters))
+                .addMethods(generateFingerprintMethods(typeElement, commandName, options, parameters))
+                .addMethods(generateOverrideMethods(typeElement, commandName, options, parameters))
+                .build();
+    }
+
+    /**
+     * Generate {@code supports(capability)}, true for every capability except {@code unsupported}.
+     */
+    private MethodSpec generateSupportsMethod(CommandParser.Capability... unsupported) {
+        CodeBlock.Builder supported = CodeBlock.builder().add("return ");
+        if (unsupported.length == 0) {
+            supported.add("true");
+        }
+        for (int i = 0; i < unsupported.length; i++) {
+            supported.add(i == 0 ? "capability != $T.$L" : " && capability != $T.$L",
+                    CommandParser.Capability.class, unsupported[i].name());
+        }
+        return MethodSpec.methodBuilder("supports")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .returns(boolean.class)
+                .addParameter(CommandParser.Capability.class, "capability")
+                .addStatement(supported.build())
+                .build();
+    }
+
+    /**
+     * Generate {@code fingerprint(command)}, adding every option and parameter field to a
+     * {@link Fingerprint.Builder}.
+     */
+    private List<MethodSpec> generateFingerprintMethods(TypeElement typeElement,
+                                                        String commandName,
+                                                        Map<String, OptionMetadata> options,
+                                                        List<ParameterMetadata> parameters) {
+        boolean isRecord = typeElement.getKind() == ElementKind.RECORD;
+        TypeName commandType = TypeName.get(typeElement.asType());
+        ClassName builderType = ClassName.get(Fingerprint.Builder.class);
+        List<VariableElement> fields = new ArrayList<>();
+        for (OptionMetadata meta : options.values()) {
+            fields.add(meta.element);
+        }
+        for (ParameterMetadata param : parameters) {
+            fields.add(param.element);
+        }
+
+        List<MethodSpec> methods = new ArrayList<>();
+        CodeBlock.Builder fingerprint = CodeBlock.builder()
+                .addStatement("$T fingerprint = $T.builder($S)", builderType, Fingerprint.class, commandName);
+        for (int chunk = 0; chunk * OPTIONS_PER_METHOD < fields.size(); chunk++) {
+            CodeBlock.Builder additions = CodeBlock.builder();
+            for (VariableElement field : fields.subList(chunk * OPTIONS_PER_METHOD,
+                    Math.min(fields.size(), (chunk + 1) * OPTIONS_PER_METHOD))) {
+                String name = field.getSimpleName().toString();
+                additions.addStatement("fingerprint.add($S, command.$L)", name, isRecord ? name + "()" : name);
+            }
+            if (fields.size() <= OPTIONS_PER_METHOD) {
+                fingerprint.add(additions.build());
+            } else {
+                fingerprint.addStatement("fingerprint$L(command, fingerprint)", chunk);
+                methods.add(MethodSpec.methodBuilder("fingerprint" + chunk)
+                        .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                        .addParameter(commandType, "command")
+                        .addParameter(builderType, "fingerprint")
+                        .addCode(additions.build())
+                        .build());
+            }
+        }
+        methods.add(0, MethodSpec.methodBuilder("fingerprint")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .returns(Fingerprint.class)
+                .addParameter(commandType, "command")
+                .addCode(fingerprint.addStatement("return fingerprint.build()").build())
+                .build());
+        return methods;
+    }
+
+    private MethodSpec generateGetModelMethod() {
+        return MethodSpec.methodBuilder("getModel")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .returns(CommandModel.class)
+                .addStatement("return ModelHolder.MODEL")
+                .build();
+    }
+
+    /**
+     * Check that a {@link Command#tableDriven()} command only uses what {@link TableParser} interprets.
+     */
+    private boolean validateTableDriven(TypeElement typeElement,
+                                        Command cmdAnnotation,
+                                        Map<String, OptionMetadata> options,
+                                        List<ParameterMetadata> parameters,
+                                        List<OptionGroupMetadata> groups) {
+        if (cmdAnnotation.standalone()) {
+            error("A command cannot be both standalone and table-driven", typeElement);
+            return false;
+        }
+        if (!groups.isEmpty()) {
+            error("Table-driven parsers do not support option groups", typeElement);
+            return false;
+        }
+        List<Element> members = new ArrayList<>();
+        for (OptionMetadata meta : options.values()) {
+            String name = "option " + meta.annotation.names()[0];
+            String unsupported = meta.annotation.ioBound() ? "ioBound"
+                    : meta.mapValueType != null ? "Map options"
+                    : meta.scanner != null ? "@ByteSize and @CompactDuration" : null;
+            if (unsupported == null && !meta.annotation.arity().equals("0") && getConverterFqn(meta) == null
+                    && tableKind(meta.element.asType()) == TableParser.CONVERTER) {
+                unsupported = "values of type " + meta.element.asType() + " without a converter";
+            }
+            if (unsupported != null) {
+                error("Table-driven parsers do not support " + unsupported + ": " + name, meta.element);
+                return false;
+            }
+            members.add(meta.element);
+        }
+        for (ParameterMetadata param : parameters) {
+            if (tableKind(param.element.asType()) == TableParser.CONVERTER) {
+                error("Table-driven parsers do not support parameters of type " + param.element.asType()
+                        + ": parameter " + param.element.getSimpleName(), param.element);
+                return false;
+            }
+            members.add(param.element);
+        }
+        for (Element member : members) {
+            if (member.getAnnotation(Range.class) != null || member.getAnnotation(Positive.class) != null
+                    || member.getAnnotation(Pattern.class) != null || member.getAnnotation(Existing.class) != null) {
+                error("Table-driven parsers do not support constraints: " + member.getSimpleName(), member);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The {@link TableParser} kind converting a string to {@code type}, or
+     * {@link TableParser#CONVERTER} if the type needs a custom converter.
+     */
+    private static char tableKind(TypeMirror type) {
+        switch (type.toString()) {
+            case "int": case "java.lang.Integer": return TableParser.INT;
+            case "long": case "java.lang.Long": return TableParser.LONG;
+            case "boolean": case "java.lang.Boolean": return TableParser.BOOLEAN;
+            case "double": case "java.lang.Double": return TableParser.DOUBLE;
+            case "float": case "java.lang.Float": return TableParser.FLOAT;
+            case "java.lang.String": return TableParser.STRING;
+            case "java.nio.file.Path": return TableParser.PATH;
+            case "java.io.File": return TableParser.FILE;
+            default: return TableParser.CONVERTER;
+        }
+    }
+
+    /**
+     * Generate a parser for a {@link Command#tableDriven()} command. Parsing is delegated to a
+     * {@link TableParser} built from three string constants; the class itself only creates
+     * converters and stores the parsed values, in chunks for commands with many options.
+     */
+    private TypeSpec generateTableParserClass(TypeElement typeElement,
+                                              String commandName,
+                                              Command cmdAnnotation,
+                                              Map<String, OptionMetadata> options,
+                                              List<ParameterMetadata> parameters) {
+        boolean isRecord = typeElement.getKind() == ElementKind.RECORD;
+        TypeName commandType = TypeName.get(typeElement.asType());
+        ClassName parseException = ClassName.get(ParseException.class);
+
+        // Slots: options in declaration order, then parameters by index
+        StringBuilder names = new StringBuilder();
+        StringBuilder ids = new StringBuilder();
+        StringBuilder kinds = new StringBuilder();
+        Map<String, Integer> slots = new LinkedHashMap<>();
+        CodeBlock.Builder converters = CodeBlock.builder().beginControlFlow("switch (slot)");
+        for (Map.Entry<String, OptionMetadata> option : options.entrySet()) {
+            OptionMetadata meta = option.getValue();
+            int slot = slots.size();
+            for (String name : meta.annotation.names()) {
+                names.append(names.length() == 0 ? "" : "\n").append(name);
+                ids.append((char) slot);
+            }
+            String converterFqn = getConverterFqn(meta);
+            if (meta.annotation.arity().equals("0")) {
+                kinds.append(TableParser.FLAG);
+            } else if (converterFqn != null) {
+                kinds.append(TableParser.CONVERTER);
+                converters.addStatement(meta.annotation.converterCacheSize() > 0
+                        ? CodeBlock.of("case $L: return $L", slot, converterCacheFieldName(option.getKey()))
+                        : CodeBlock.of("case $L: return new $L()", slot, converterFqn));
+            } else {
+                kinds.append(tableKind(meta.element.asType()));
+            }
+            slots.put(option.getKey(), slot);
+        }
+        int parameterCount = 0;
+        for (ParameterMetadata param : parameters) {
+            parameterCount = Math.max(parameterCount, param.annotation.index() + 1);
+        }
+        char[] parameterKinds = new char[parameterCount];
+        Arrays.fill(parameterKinds, TableParser.NONE);
+        for (ParameterMetadata param : parameters) {
+            parameterKinds[param.annotation.index()] = tableKind(param.element.asType());
+            slots.put(param.element.getSimpleName().toString(), options.size() + param.annotation.index());
+        }
+        kinds.append(parameterKinds);
+        converters.addStatement("default: throw new $T($S + slot)", IllegalArgumentException.class,
+                        "No converter for slot ")
+                .endControlFlow();
+
+        // Store the given values; required checks follow their assignment, in slot order like generated parsers
+        Map<String, String> requiredMessages = new HashMap<>();
+        for (Map.Entry<String, OptionMetadata> option : options.entrySet()) {
+            if (option.getValue().annotation.required() && isObjectType(option.getValue().element.asType())) {
+                requiredMessages.put(option.getKey(),
+                        "Required option not provided: " + option.getValue().annotation.names()[0]);
+            }
+        }
+        for (ParameterMetadata param : parameters) {
+            if (param.annotation.required() && isObjectType(param.element.asType())) {
+                requiredMessages.put(param.element.getSimpleName().toString(),
+                        "Required parameter not provided: " + param.element.getSimpleName());
+            }
+        }
+        List<Element> fields = new ArrayList<>();
+        for (OptionMetadata meta : options.values()) {
+            fields.add(meta.element);
+        }
+        List<ParameterMetadata> sortedParams = new ArrayList<>(parameters);
+        sortedParams.sort(Comparator.comparingInt(p -> p.annotation.index()));
+        for (ParameterMetadata param : sortedParams) {
+            fields.add(param.element);
+        }
+        boolean unchecked = false;
+        for (Element field : fields) {
+            unchecked |= TypeName.get(field.asType()) instanceof ParameterizedTypeName;
+        }
+
+        List<MethodSpec> bindMethods = new ArrayList<>();
+        CodeBlock.Builder build = CodeBlock.builder();
+        if (isRecord) {
+            for (Element component : typeElement.getEnclosedElements()) {
+                if (component.getKind() != ElementKind.RECORD_COMPONENT) {
+                    continue;
+                }
+                String name = component.getSimpleName().toString();
+                TypeName type = TypeName.get(component.asType());
+                Integer slot = slots.get(name);
+                if (slot == null) {
+                    build.addStatement("$T $L = $L", type, name, getDefaultValue(component.asType()));
+                } else if (type.isPrimitive()) {
+                    build.addStatement("$T $L = values[$L] != null ? ($T) values[$L] : $L",
+                            type, name, slot, type, slot, getDefaultValue(component.asType()));
+                } else {
+                    build.addStatement("$T $L = ($T) values[$L]", type, name, type, slot);
+                }
+            }
+            for (Element field : fields) {
+                String name = field.getSimpleName().toString();
+                if (requiredMessages.containsKey(name)) {
+                    build.beginControlFlow("if ($L == null)", name)
+                            .addStatement("throw new $T($S)", parseException, requiredMessages.get(name))
+                            .endControlFlow();
+                }
+            }
+            String argsList = typeElement.getEnclosedElements().stream()
+                    .filter(e -> e.getKind() == ElementKind.RECORD_COMPONENT)
+                    .map(e -> e.getSimpleName().toString())
+                    .collect(java.util.stream.Collectors.joining(", "));
+            build.addStatement("return new $T($L)", commandType, argsList);
+        } else {
+            build.addStatement("$T instance = new $T()", commandType, commandType);
+            for (int chunk = 0; chunk * OPTIONS_PER_METHOD < fields.size(); chunk++) {
+                CodeBlock.Builder assignments = CodeBlock.builder();
+                for (Element field : fields.subList(chunk * OPTIONS_PER_METHOD,
+                        Math.min(fields.size(), (chunk + 1) * OPTIONS_PER_METHOD))) {
+                    String name = field.getSimpleName().toString();
+                    int slot = slots.get(name);
+                    assignments.addStatement("if (values[$L] != null) instance.$L = ($T) values[$L]",
+                            slot, name, TypeName.get(field.asType()), slot);
+                    if (requiredMessages.containsKey(name)) {
+                        assignments.beginControlFlow("if (instance.$L == null)", name)
+                                .addStatement("throw new $T($S)", parseException, requiredMessages.get(name))
+                                .endControlFlow();
+                    }
+                }
+                if (fields.size() <= OPTIONS_PER_METHOD) {
+                    build.add(assignments.build());
+                } else {
+                    build.addStatement("bind$L(instance, values)", chunk);
+                    MethodSpec.Builder bind = MethodSpec.methodBuilder("bind" + chunk)
+                            .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                            .addParameter(commandType, "instance")
+                            .addParameter(Object[].class, "values")
+                            .addException(parseException)
+                            .addCode(assignments.build());
+                    if (unchecked) {
+                        bind.addAnnotation(AnnotationSpec.builder(SuppressWarnings.class)
+                                .addMember("value", "$S", "unchecked").build());
+                    }
+                    bindMethods.add(bind.build());
+                }
+            }
+            build.addStatement("return instance");
+        }
+        MethodSpec.Builder buildMethod = MethodSpec.methodBuilder("build")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .returns(commandType)
+                .addParameter(Object[].class, "values")
+                .addException(parseException)
+                .addCode(build.build());
+        if (unchecked) {
+            buildMethod.addAnnotation(AnnotationSpec.builder(SuppressWarnings.class)
+                    .addMember("value", "$S", "unchecked").build());
+        }
+
+        TypeSpec.Builder parserClass = TypeSpec.classBuilder(typeElement.getSimpleName() + "CommandParser")
+                .addModifiers(Modifier.PUBLIC)
+                .addSuperinterface(ParameterizedTypeName.get(ClassName.get(CommandParser.class), commandType))
+                .addSuperinterface(ParameterizedTypeName.get(ClassName.get(TableParser.Binder.class), commandType))
+                .addJavadoc("Generated table-driven parser for @Command: $L\n", commandName)
+                .addJavadoc("Generated at compile time - zero runtime reflection\n")
+                .addField(FieldSpec.builder(TableParser.class, "TABLE",
+                                Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                        .initializer("new $T($S, $L, $L, $L, $L, $L)", TableParser.class, commandName,
+                                stringExpression(names.toString()), stringExpression(ids.toString()),
+                                stringExpression(kinds.toString()), options.size(), cmdAnnotation.stopAtPositional())
+                        .build());
+        String helpText = buildHelpText(commandName, cmdAnnotation, options, parameters);
+        if (helpText.length() > HELP_CHUNK_CHARS) {
+            parserClass.addField(FieldSpec.builder(String.class, "HELP_TEXT",
+                            Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                    .initializer(stringExpression(helpText))
+                    .build());
+        }
+        for (Map.Entry<String, OptionMetadata> option : options.entrySet()) {
+            if (option.getValue().annotation.converterCacheSize() > 0) {
+                parserClass.addField(generateConverterCacheField(option.getKey(), option.getValue()));
+            }
+        }
+        TypeName resultType = ParameterizedTypeName.get(ClassName.get(ParseResult.class), commandType);
+        return parserClass
+                .addType(generateModelHolder(commandName, cmdAnnotation, options, parameters))
+                .addMethod(generateEntryParseMethod(typeElement))
+                .addMethod(MethodSpec.methodBuilder("parse")
+                        .addAnnotation(Override.class)
+                        .addModifiers(Modifier.PUBLIC)
+                        .returns(resultType)
+                        .addParameter(String[].class, "args")
+                        .addParameter(int.class, "fromIndex")
+                        .addException(parseException)
+                        .addStatement("return TABLE.parse(args, fromIndex, this)")
+                        .build())
+                .addMethod(generateHelpMethod(commandName, cmdAnnotation, options, parameters))
+                .addMethod(generateGetModelMethod())
+                .addMethod(generateSupportsMethod(CommandParser.Capability.OVERRIDES, CommandParser.Capability.REUSE))
+                .addMethods(generateDiffMethods(typeElement, options, parameters))
+                .addMethods(generateFingerprintMethods(typeElement, commandName, options, parameters))
+                .addMethod(MethodSpec.methodBuilder("converter")
+                        .addAnnotation(Override.class)
+                        .addModifiers(Modifier.PUBLIC)
+                        .returns(ParameterizedTypeName.get(ClassName.get(Converter.class),
+                                WildcardTypeName.subtypeOf(Object.class)))
+                        .addParameter(int.class, "slot")
+                        .addCode(converters.build())
+                        .build())
+                .addMethod(buildMethod.build())
+                .addMethods(bindMethods)
+                .build();
+    }
+
+    /**
+     * Generate {@code withOverrides(base, args)}, which parses {@code args} into a copy of
+     * {@code base}, and for classes {@code parseInto(target, args, result)}. Records start from
+     * the base's components; classes from a field-by-field copy, which also resets a reused
+     * target from a default instance.
+     */
+    private List<MethodSpec> generateOverrideMethods(TypeElement typeElement,
+                                                     String commandName,
+                                                     Map<String, OptionMetadata> options,
+                                                     List<ParameterMetadata> parameters) {
+        TypeName commandType = TypeName.get(typeElement.asType());
+        TypeName resultType = ParameterizedTypeName.get(ClassName.get(ParseResult.class), commandType);
+        List<MethodSpec> methods = new ArrayList<>();
+        methods.add(MethodSpec.methodBuilder("withOverrides")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .returns(resultType)
+                .addParameter(commandType, "base")
+                .addParameter(String[].class, "args")
+                .addException(ClassName.get(ParseException.class))
+                .addStatement("$T.requireNonNull(base, $S)", Objects.class, "base")
+                .addCode(generateTracedCall(commandName, resultType, "args.length",
+                        typeElement.getKind() == ElementKind.RECORD
+                                ? "parse(args, 0, $L, base)"
+                                : "parse(args, 0, $L, base, null, null)"))
+                .build());
+        if (typeElement.getKind() == ElementKind.RECORD) {
+            return methods;
+        }
+        TypeName reusableType = ParameterizedTypeName.get(ClassName.get(ReusableParseResult.class), commandType);
+        methods.add(MethodSpec.methodBuilder("parseInto")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .returns(reusableType)
+                .addParameter(commandType, "target")
+                .addParameter(String[].class, "args")
+                .addParameter(reusableType, "result")
+                .addException(ClassName.get(ParseException.class))
+                .addStatement("$T.requireNonNull(target, $S)", Objects.class, "target")
+                .addStatement("$T.requireNonNull(result, $S)", Objects.class, "result")
+                .addStatement("copyFields(DefaultsHolder.DEFAULTS, target)")
+                .addCode(generateTracedCall(commandName, "args.length",
+                        CodeBlock.builder()
+                                .addStatement("parse(args, 0, null, null, target, result)")
+                                .addStatement("return result")
+                                .build(),
+                        CodeBlock.of("parse(args, 0, trace, null, target, result)"),
+                        "result"))
+                .build());
+
+        List<VariableElement> fields = new ArrayList<>();
+        for (OptionMetadata meta : options.values()) {
+            fields.add(meta.element);
+        }
+        for (ParameterMetadata param : parameters) {
+            fields.add(param.element);
+        }
+        CodeBlock.Builder copy = CodeBlock.builder();
+        for (int chunk = 0; chunk * OPTIONS_PER_METHOD < fields.size(); chunk++) {
+            CodeBlock.Builder assignments = CodeBlock.builder();
+            for (VariableElement field : fields.subList(chunk * OPTIONS_PER_METHOD,
+                    Math.min(fields.size(), (chunk + 1) * OPTIONS_PER_METHOD))) {
+                assignments.addStatement("target.$L = source.$L", field.getSimpleName(), field.getSimpleName());
+            }
+            if (fields.size() <= OPTIONS_PER_METHOD) {
+                copy.add(assignments.build());
+            } else {
+                copy.addStatement("copyFields$L(source, target)", chunk);
+                methods.add(MethodSpec.methodBuilder("copyFields" + chunk)
+                        .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                        .addParameter(commandType, "source")
+                        .addParameter(commandType, "target")
+                        .addCode(assignments.build())
+                        .build());
+            }
+        }
+        methods.add(2, MethodSpec.methodBuilder("copyOf")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .returns(commandType)
+                .addParameter(commandType, "base")
+                .addStatement("$T copy = new $T()", commandType, commandType)
+                .addStatement("copyFields(base, copy)")
+                .addStatement("return copy")
+                .build());
+        methods.add(3, MethodSpec.methodBuilder("copyFields")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .addParameter(commandType, "source")
+                .addParameter(commandType, "target")
+                .addCode(copy.build())
+                .build());
+        return methods;
+    }
+
+    /**
+     * Generate {@code diff(previous, current)}, comparing every option and parameter field.
+     * Commands with more than {@link #OPTIONS_PER_METHOD} fields compare them in chunks.
+     */
+    private List<MethodSpec> generateDiffMethods(TypeElement typeElement,
+                                                 Map<String, OptionMetadata> options,
+                                                 List<ParameterMetadata> parameters) {
+        boolean isRecord = typeElement.getKind() == ElementKind.RECORD;
+        TypeName commandType = TypeName.get(typeElement.asType());
+        TypeName changesType = ParameterizedTypeName.get(List.class, OptionChange.class);
+        List<VariableElement> fields = new ArrayList<>();
+        for (OptionMetadata meta : options.values()) {
+            fields.add(meta.element);
+        }
+        for (ParameterMetadata param : parameters) {
+            fields.add(param.element);
+        }
+
+        List<MethodSpec> methods = new ArrayList<>();
+        CodeBlock.Builder diff = CodeBlock.builder()
+                .addStatement("$T changes = new $T<>()", changesType, ArrayList.class);
+        for (int chunk = 0; chunk * OPTIONS_PER_METHOD < fields.size(); chunk++) {
+            CodeBlock.Builder comparisons = CodeBlock.builder();
+            for (VariableElement field : fields.subList(chunk * OPTIONS_PER_METHOD,
+                    Math.min(fields.size(), (chunk + 1) * OPTIONS_PER_METHOD))) {
+                String name = field.getSimpleName().toString();
+                String accessor = isRecord ? name + "()" : name;
+                String previous = "previous." + accessor;
+                String current = "current." + accessor;
+                CodeBlock differs;
+                switch (field.asType().getKind()) {
+                    case DOUBLE: differs = CodeBlock.of("Double.compare($L, $L) != 0", previous, current); break;
+                    case FLOAT: differs = CodeBlock.of("Float.compare($L, $L) != 0", previous, current); break;
+                    default: differs = field.asType().getKind().isPrimitive()
+                            ? CodeBlock.of("$L != $L", previous, current)
+                            : CodeBlock.of("!$T.equals($L, $L)", Objects.class, previous, current);
+                }
+                comparisons.addStatement("if ($L) changes.add(new $T($S, $L, $L))",
+                        differs, OptionChange.class, name, previous, current);
+            }
+            if (fields.size() <= OPTIONS_PER_METHOD) {
+                diff.add(comparisons.build());
+            } else {
+                diff.addStatement("diff$L(previous, current, changes)", chunk);
+                methods.add(MethodSpec.methodBuilder("diff" + chunk)
+                        .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                        .addParameter(commandType, "previous")
+                        .addParameter(commandType, "current")
+                        .addParameter(changesType, "changes")
+                        .addCode(comparisons.build())
+                        .build());
+            }
+        }
+        methods.add(0, MethodSpec.methodBuilder("diff")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .returns(changesType)
+                .addParameter(commandType, "previous")
+                .addParameter(commandType, "current")
+                .addCode(diff.addStatement("return changes").build())
+                .build());
+        return methods;
+    }
+
+    /**
+     * Generate the holder of the default instance that {@code parseInto} resets targets from.
+     */
+    private TypeSpec generateDefaultsHolder(TypeElement typeElement) {
+        TypeName commandType = TypeName.get(typeElement.asType());
+        // Created on first parseInto() call, like the model
+        return TypeSpec.classBuilder("DefaultsHolder")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .addField(FieldSpec.builder(commandType, "DEFAULTS", Modifier.STATIC, Modifier.FINAL)
+                        .initializer("new $T()", commandType)
+                        .build())
+                .build();
+    }
+
+    private TypeSpec generateModelHolder(String commandName,
+                                         Command cmdAnnotation,
+                                         Map<String, OptionMetadata> options,
+                                         List<ParameterMetadata> parameters) {
+        List<CodeBlock> optionModels = new ArrayList<>();
+        for (Map.Entry<String, OptionMetadata> option : options.entrySet()) {
+            Option annotation = option.getValue().annotation;
+            CodeBlock.Builder names = CodeBlock.builder();
+            for (int i = 0; i < annotation.names().length; i++) {
+                names.add(i == 0 ? "$S" : ", $S", annotation.names()[i]);
+            }
+            optionModels.add(CodeBlock.of("new $T($S, $T.of($L), $S, $S, $L, $S, $S, $S)",
+                    OptionModel.class,
+                    option.getKey(),
+                    List.class, names.build(),
+                    TypeName.get(option.getValue().element.asType()).toString(),
+                    annotation.arity().equals("0") ? "0" : "1",
+                    annotation.required(),
+                    annotation.defaultValue().isEmpty() ? null : annotation.defaultValue(),
+                    annotation.description(),
+                    getConverterFqn(option.getValue())));
+        }
+
+        List<ParameterMetadata> sortedParams = new ArrayList<>(parameters);
+        sortedParams.sort(Comparator.comparingInt(p -> p.annotation.index()));
+        CodeBlock.Builder parameterModels = CodeBlock.builder();
+        for (ParameterMetadata param : sortedParams) {
+            parameterModels.add(parameterModels.isEmpty() ? "\n" : ",\n");
+            parameterModels.add("new $T($S, $L, $S, $L, $S)",
+                    ParameterModel.class,
+                    param.element.getSimpleName().toString(),
+                    param.annotation.index(),
+                    TypeName.get(param.element.asType()).toString(),
+                    param.annotation.required(),
+                    param.annotation.description());
+        }
+
+        // Built on first getModel() call, so parsing alone never pays for it
+        TypeSpec.Builder holder = TypeSpec.classBuilder("ModelHolder")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL);
+        CodeBlock optionList;
+        if (optionModels.size() <= OPTIONS_PER_METHOD) {
+            CodeBlock.Builder list = CodeBlock.builder();
+            for (CodeBlock optionModel : optionModels) {
+                list.add(list.isEmpty() ? "\n$L" : ",\n$L", optionModel);
+            }
+            optionList = CodeBlock.of("$T.of($>$L$<)", List.class, list.build());
+        } else {
+            // Keep the static initializer well under the method size limit
+            TypeName listType = ParameterizedTypeName.get(List.class, OptionModel.class);
+            MethodSpec.Builder collect = MethodSpec.methodBuilder("options")
+                    .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                    .returns(listType)
+                    .addStatement("$T options = new $T<>($L)", listType, ArrayList.class, optionModels.size());
+            for (int chunk = 0; chunk * OPTIONS_PER_METHOD < optionModels.size(); chunk++) {
+                MethodSpec.Builder add = MethodSpec.methodBuilder("options" + chunk)
+                        .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                        .addParameter(listType, "options");
+                for (CodeBlock optionModel : optionModels.subList(chunk * OPTIONS_PER_METHOD,
+                        Math.min(optionModels.size(), (chunk + 1) * OPTIONS_PER_METHOD))) {
+                    add.addStatement("options.add($L)", optionModel);
+                }
+                holder.addMethod(add.build());
+                collect.addStatement("options$L(options)", chunk);
+            }
+            holder.addMethod(collect.addStatement("return options").build());
+            optionList = CodeBlock.of("options()");
+        }
+        return holder
+                .addField(FieldSpec.builder(CommandModel.class, "MODEL", Modifier.STATIC, Modifier.FINAL)
+                        .initializer(CodeBlock.builder()
+                                .add("new $T($S, $S, $S,$>$>", CommandModel.class,
+                                        commandName, cmdAnnotation.description(), cmdAnnotation.version())
+                                .add("\n$L,", optionList)
+                                .add("\n$T.of($>$L$<))$<$<", List.class, parameterModels.build())
+                                .build())
+                        .build())
+                .build();
+    }
+
+    private TypeSpec generateStandaloneClass(TypeElement typeElement,
+                                             String commandName,
+                                             Command cmdAnnotation,
+                                             Map<String, OptionMetadata> options,
+                                             List<ParameterMetadata> parameters,
+                                             List<OptionGroupMetadata> groups) {
+        TypeName commandType = TypeName.get(typeElement.asType());
+        Set<String> optionNames = new HashSet<>();
+        for (OptionMetadata meta : options.values()) {
+            optionNames.addAll(Arrays.asList(meta.annotation.names()));
+        }
+
+        TypeSpec.Builder cliClass = TypeSpec.classBuilder(typeElement.getSimpleName() + "Cli")
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addJavadoc("Generated standalone parser for @Command: $L\n", commandName)
+                .addJavadoc("Self-contained: no reference to the CLI-Gen runtime\n")
+                .addField(FieldSpec.builder(String.class, "HELP", Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                        .initializer(stringExpression(buildHelpText(commandName, cmdAnnotation, options, parameters)))
+                        .build())
+                .addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PRIVATE).build())
+                .addFields(generatePatternFields(options, parameters));
+
+        // Help and version flags are only recognized as the first argument, like in CommandDispatcher
+        CodeBlock.Builder flags = CodeBlock.builder().beginControlFlow("if (args.length > 0)");
+        List<String> helpFlags = new ArrayList<>();
+        for (String flag : List.of("--help", "-h")) {
+            if (!optionNames.contains(flag)) {
+                helpFlags.add("args[0].equals(\"" + flag + "\")");
+            }
+        }
+        if (!helpFlags.isEmpty()) {
+            flags.beginControlFlow("if ($L)", String.join(" || ", helpFlags))
+                    .addStatement("$T.out.print(HELP)", System.class)
+                    .addStatement("$T.exit(0)", System.class)
+                    .endControlFlow();
+        }
+        if (!cmdAnnotation.version().isEmpty() && !optionNames.contains("--version")) {
+            cliClass.addField(FieldSpec.builder(String.class, "VERSION", Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                    .initializer("$S", cmdAnnotation.version())
+                    .build());
+            flags.beginControlFlow("if (args[0].equals($S))", "--version")
+                    .addStatement("$T.out.println($S + VERSION)", System.class, commandName + " ")
+                    .addStatement("$T.exit(0)", System.class)
+                    .endControlFlow();
+        }
+        flags.endControlFlow();
+
+        return cliClass
+                .addMethod(MethodSpec.methodBuilder("parse")
+                        .addJavadoc("Parse {@code args}, ignoring positional arguments that are not parameters.\n")
+                        .addJavadoc("\n@throws IllegalArgumentException if the arguments are invalid.\n")
+                        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                        .returns(commandType)
+                        .addParameter(String[].class, "args")
+                        .addStatement("return parse(args, 0, new $T<>())", ArrayList.class)
+                        .build())
+                .addMethod(MethodSpec.methodBuilder("parse")
+                        .addJavadoc("Parse {@code args}, adding positional arguments that are not parameters to {@code remainingArgs}.\n")
+                        .addJavadoc("\n@throws IllegalArgumentException if the arguments are invalid.\n")
+                        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                        .returns(commandType)
+                        .addParameter(String[].class, "args")
+                        .addParameter(ParameterizedTypeName.get(List.class, String.class), "remainingArgs")
+                        .addStatement("return parse(args, 0, remainingArgs)")
+                        .build())
+                .addMethod(MethodSpec.methodBuilder("parseOrExit")
+                        .addJavadoc("Entry point for {@code main}: prints help or version and exits if asked to,\n")
+                        .addJavadoc("or prints the error and exits with status 2 if the arguments are invalid.\n")
+                        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                        .returns(commandType)
+                        .addParameter(String[].class, "args")
+                        .addCode(flags.build())
+                        .beginControlFlow("try")
+                        .addStatement("return parse(args)")
+                        .nextControlFlow("catch ($T e)", IllegalArgumentException.class)
+                        .addStatement("$T.err.println($S + e.getMessage())", System.class, "ERROR: ")
+                        .addStatement("$T.err.println($S)", System.class, "Use --help for usage.")
+                        .addStatement("$T.exit(2)", System.class)
+                        .addStatement("return null")
+                        .endControlFlow()
+                        .build())
+                .addMethods(generateParseMethod(typeElement, typeElement.getSimpleName().toString(),
+                        options, parameters, groups, cmdAnnotation))
+                .build();
+    }
+
+    private FieldSpec generateConverterCacheField(String fieldName, OptionMetadata meta) {
+        String converterFqn = getConverterFqn(meta);
+        TypeName valueType = TypeName.get(meta.element.asType()).box();
+        return FieldSpec.builder(
+                        ParameterizedTypeName.get(ClassName.get(ConverterCache.class), valueType),
+                        converterCacheFieldName(fieldName),
+                        Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .initializer("$T.shared($L.class, $L, $L::new)",
+                        ConverterCache.class, converterFqn, meta.annotation.converterCacheSize(), converterFqn)
+                .build();
+    }
+
+    private static String converterCacheFieldName(String fieldName) {
+        return fieldName.replaceAll("([a-z0-9])([A-Z])", "$1_$2").toUpperCase() + "_CONVERTER_CACHE";
+    }
+
+    /**
+     * Generate a pre-compiled regex for every {@link Pattern} constraint, so matching a value
+     * does not compile the expression again on each parse.
+     */
+    private List<FieldSpec> generatePatternFields(Map<String, OptionMetadata> options,
+                                                  List<ParameterMetadata> parameters) {
+        List<Element> elements = new ArrayList<>();
+        for (OptionMetadata meta : options.values()) {
+            elements.add(meta.element);
+        }
+        for (ParameterMetadata param : parameters) {
+            elements.add(param.element);
+        }
+        List<FieldSpec> fields = new ArrayList<>();
+        for (Element element : elements) {
+            Pattern pattern = element.getAnnotation(Pattern.class);
+            if (pattern != null) {
+                fields.add(FieldSpec.builder(java.util.regex.Pattern.class,
+                                patternFieldName(element.getSimpleName().toString()),
+                                Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                        .initializer("$T.compile($S)", java.util.regex.Pattern.class, pattern.value())
+                        .build());
+            }
+        }
+        return fields;
+    }
+
+    private static String patternFieldName(String fieldName) {
+        return fieldName.replaceAll("([a-z0-9])([A-Z])", "$1_$2").toUpperCase() + "_PATTERN";
+    }
+
+    /**
+     * Check the constraint annotations of an option or parameter against its type.
+     *
+     * @param valueless whether the member is a flag or map option, which cannot have constraints.
+     */
+    private boolean validateConstraints(VariableElement member, String label, boolean valueless) {
+        Range range = member.getAnnotation(Range.class);
+        Pattern pattern = member.getAnnotation(Pattern.class);
+        boolean constrained = range != null || pattern != null
+                || member.getAnnotation(Positive.class) != null || member.getAnnotation(Existing.class) != null;
+        if (!constrained) {
+            return true;
+        }
+        String typeName = member.asType().toString();
+        if (valueless) {
+            error("Constraints on " + label + " require an option with a single value", member);
+            return false;
+        }
+        if ((range != null || member.getAnnotation(Positive.class) != null) && !NUMERIC_TYPES.contains(typeName)) {
+            error((range != null ? "@Range" : "@Positive") + " on " + label + " requires a numeric type", member);
+            return false;
+        }
+        if (range != null && range.min() > range.max()) {
+            error("@Range on " + label + " has min " + range.min() + " greater than max " + range.max(), member);
+            return false;
+        }
+        if (pattern != null) {
+            if (!typeName.equals("java.lang.String")) {
+                error("@Pattern on " + label + " requires a String", member);
+                return false;
+            }
+            try {
+                java.util.regex.Pattern.compile(pattern.value());
+            } catch (java.util.regex.PatternSyntaxException e) {
+                error("Invalid @Pattern on " + label + ": " + e.getDescription(), member);
+                return false;
+            }
+        }
+        if (member.getAnnotation(Existing.class) != null && !EXISTING_TYPES.contains(typeName)) {
+            error("@Existing on " + label + " requires a String, Path or File", member);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Generate the checks of the constraint annotations on a converted value, in declaration
+     * order of the annotation kinds: range, sign, pattern, existence.
+     */
+    private CodeBlock generateConstraintChecks(Element element, String label, String value, ClassName failure) {
+        CodeBlock.Builder code = CodeBlock.builder();
+        // Converters may return null for a boxed field; null is left to the command to reject
+        String guard = element.asType().getKind().isPrimitive() ? "" : value + " != null && ";
+        Range range = element.getAnnotation(Range.class);
+        if (range != null) {
+            boolean hasMin = range.min() != Long.MIN_VALUE;
+            boolean hasMax = range.max() != Long.MAX_VALUE;
+            String condition;
+            String expectation;
+            if (hasMin && hasMax) {
+                condition = "(" + value + " < " + range.min() + "L || " + value + " > " + range.max() + "L)";
+                expectation = "between " + range.min() + " and " + range.max();
+            } else if (hasMin) {
+                condition = value + " < " + range.min() + "L";
+                expectation = "at least " + range.min();
+            } else {
+                condition = value + " > " + range.max() + "L";
+                expectation = "at most " + range.max();
+            }
+            if (hasMin || hasMax) {
+                code.beginControlFlow("if ($L$L)", guard, condition)
+                        .addStatement("throw new $T($S + $L)", failure, label + " must be " + expectation + ", got ", value)
+                        .endControlFlow();
+            }
+        }
+        if (element.getAnnotation(Positive.class) != null) {
+            code.beginControlFlow("if ($L$L <= 0)", guard, value)
+                    .addStatement("throw new $T($S + $L)", failure, label + " must be positive, got ", value)
+                    .endControlFlow();
+        }
+        Pattern pattern = element.getAnnotation(Pattern.class);
+        if (pattern != null) {
+            code.beginControlFlow("if ($L!$L.matcher($L).matches())", guard,
+                            patternFieldName(element.getSimpleName().toString()), value)
+                    .addStatement("throw new $T($S + $L)", failure,
+                            label + " must match " + pattern.value() + ", got ", value)
+                    .endControlFlow();
+        }
+        if (element.getAnnotation(Existing.class) != null) {
+            String typeName = element.asType().toString();
+            CodeBlock exists = typeName.equals("java.io.File")
+                    ? CodeBlock.of("$L.exists()", value)
+                    : typeName.equals("java.nio.file.Path")
+                    ? CodeBlock.of("$T.exists($L)", ClassName.get("java.nio.file", "Files"), value)
+                    : CodeBlock.of("$T.exists($T.of($L))", ClassName.get("java.nio.file", "Files"),
+                    ClassName.get("java.nio.file", "Path"), value);
+            code.beginControlFlow("if ($L!$L)", guard, exists)
+                    .addStatement("throw new $T($S + $L)", failure, label + " refers to a missing file: ", value)
+                    .endControlFlow();
+        }
+        return code.build();
+    }
+
+    private FieldSpec generateSuggestionField(Map<String, OptionMetadata> options) {
+        List<String> names = new ArrayList<>();
+        for (OptionMetadata meta : options.values()) {
+            names.addAll(Arrays.asList(meta.annotation.names()));
+        }
+
+        // Sort and bucket the names by length now, so the parser only stores two constant arrays
+        String[] namesByLength = SuggestionIndex.sortByLength(names);
+        int[] lengthOffsets = SuggestionIndex.lengthOffsets(namesByLength);
+
+        CodeBlock.Builder namesArray = CodeBlock.builder();
+        if (namesByLength.length > NAMES_PER_METHOD) {
+            // An array initializer costs about eight bytes of <clinit> per name; one split constant does not grow
+            namesArray.add("($L).split($S)", stringExpression(String.join("\n", namesByLength)), "\n");
+        } else {
+            namesArray.add("new $T[] {", String.class);
+            for (int i = 0; i < namesByLength.length; i++) {
+                namesArray.add(i == 0 ? "$S" : ", $S", namesByLength[i]);
+            }
+            namesArray.add("}");
+        }
+        CodeBlock.Builder offsetsArray = CodeBlock.builder();
+        for (int i = 0; i < lengthOffsets.length; i++) {
+            offsetsArray.add(i == 0 ? "$L" : ", $L", lengthOffsets[i]);
+        }
+
+        return FieldSpec.builder(SuggestionIndex.class, "OPTION_SUGGESTIONS",
+                        Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .initializer("new $T($L, new int[] {$L})",
+                        SuggestionIndex.class, namesArray.build(), offsetsArray.build())
+                .build();
+    }
+
+    private MethodSpec generateEntryParseMethod(TypeElement typeElement) {
+        return MethodSpec.methodBuilder("parse")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .returns(ParameterizedTypeName.get(
+                        ClassName.get(ParseResult.class),
+                        TypeName.get(typeElement.asType())
+                ))
+                .addParameter(String[].class, "args")
+                .addException(ClassName.get(ParseException.class))
+                .addStatement("return parse(args, 0)")
                 .build();
+    }
 
-        processingEnv.getMessager().printMessage(
-                Diagnostic.Kind.NOTE,
-                "[CLI-GEN] Writing generated parser: " + packageName + "." + parserClassName
+    private MethodSpec generateTracedParseMethod(TypeElement typeElement, String commandName) {
+        TypeName resultType = ParameterizedTypeName.get(
+                ClassName.get(ParseResult.class),
+                TypeName.get(typeElement.asType())
         );
+        CodeBlock code = generateTracedCall(commandName, resultType,
+                "args.length - fromIndex", typeElement.getKind() == ElementKind.RECORD
+                        ? "parse(args, fromIndex, $L, null)"
+                        : "parse(args, fromIndex, $L, null, null, null)");
 
-        javaFile.writeTo(processingEnv.getFiler());
+        return MethodSpec.methodBuilder("parse")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .returns(resultType)
+                .addParameter(String[].class, "args")
+                .addParameter(int.class, "fromIndex")
+                .addException(ClassName.get(ParseException.class))
+                .addCode(code)
+                .build();
     }
 
-    private TypeSpec generateParserClass(TypeElement typeElement,
-                                         String commandName,
-                                         Command cmdAnnotation,
-                                         Map<String, OptionMetadata> options,
-                                         List<ParameterMetadata> parameters) {
-
-        String simpleClassName = typeElement.getSimpleName().toString();
-        String parserClassName = simpleClassName + "CommandParser";
-
-        // Generate parse() method
-        MethodSpec parseMethod = generateParseMethod(
-                typeElement, simpleClassName, options, parameters, cmdAnnotation
-        );
-
-        // Generate getHelpText() method
-        MethodSpec helpMethod = generateHelpMethod(commandName, cmdAnnotation, options, parameters);
+    /**
+     * Generate code returning {@code call}, a parse call taking the trace as its {@code $L} argument.
+     */
+    private CodeBlock generateTracedCall(String commandName, TypeName resultType, String tokens, String call) {
+        return generateTracedCall(commandName, tokens,
+                CodeBlock.builder().addStatement("return " + call, "null").build(),
+                CodeBlock.of("$T parsed = " + call, resultType, "trace"),
+                "parsed");
+    }
 
-        // Build the parser class
-        return TypeSpec.classBuilder(parserClassName)
-                .addModifiers(Modifier.PUBLIC)
-                .addSuperinterface(
-                        ParameterizedTypeName.get(
-                                ClassName.get(CommandParser.class),
-                                ClassName.get(typeElement)
-                        )
-                )
-                .addJavadoc("Generated parser for @Command: $L\n", commandName)
-                .addJavadoc("Generated at compile time - zero runtime reflection\n")
-                .addMethod(parseMethod)
-                .addMethod(helpMethod)
+    /**
+     * Run {@code untraced} when no trace is active, or else the {@code traced} statement followed
+     * by returning {@code returned}, ending the trace either way.
+     */
+    private CodeBlock generateTracedCall(String commandName, String tokens, CodeBlock untraced, CodeBlock traced,
+                                         String returned) {
+        ClassName traceClass = ClassName.get(ParseTrace.class);
+        return CodeBlock.builder()
+                .addStatement("$T trace = $T.begin($S, $L)", traceClass, traceClass, commandName, tokens)
+                .beginControlFlow("if (trace == null)")
+                .add(untraced)
+                .endControlFlow()
+                .beginControlFlow("try")
+                .addStatement(traced)
+                .addStatement("trace.end(null)")
+                .addStatement("return $L", returned)
+                .nextControlFlow("catch ($T | $T e)", ClassName.get(ParseException.class), RuntimeException.class)
+                .addStatement("trace.end(e)")
+                .addStatement("throw e")
+                .endControlFlow()
                 .build();
     }
 
-    private MethodSpec generateParseMethod(TypeElement typeElement,
+    private List<MethodSpec> generateParseMethod(TypeElement typeElement,
                                            String commandClassName,
                                            Map<String, OptionMetadata> options,
                                            List<ParameterMetadata> parameters,
+                                           List<OptionGroupMetadata> groups,
                                            Command cmdAnnotation) {
         processingEnv.getMessager().printMessage(
                 Diagnostic.Kind.NOTE,
@@ -179,7 +1748,11 @@ public class CliAnnotationProcessor extends AbstractProcessor {
         );
 
         CodeBlock.Builder codeBuilder = CodeBlock.builder();
+        List<MethodSpec> helpers = new ArrayList<>();
         boolean isRecord = typeElement.getKind().name().equals("RECORD");
+        // Standalone parsers must not reference the runtime, so they report errors with JDK exceptions
+        boolean standalone = cmdAnnotation.standalone();
+        ClassName failure = standalone ? ClassName.get(IllegalArgumentException.class) : ClassName.get(ParseException.class);
 
         // 1. Initialize variables
         if (isRecord) {
@@ -195,17 +1768,73 @@ public class CliAnnotationProcessor extends AbstractProcessor {
                         var.getSimpleName().toString(),
                         getDefaultValue(var.asType()));
             }
-        } else {
+            if (!standalone) {
+                // Overrides start from the base's values, so only the given tokens are converted again
+                codeBuilder.beginControlFlow("if (base != null)");
+                for (Element component : components) {
+                    codeBuilder.addStatement("$L = base.$L()", component.getSimpleName(), component.getSimpleName());
+                }
+                codeBuilder.endControlFlow();
+            }
+        } else if (standalone) {
             codeBuilder.addStatement("$L instance = new $L()",
                     commandClassName, commandClassName);
+        } else {
+            codeBuilder.addStatement("$L instance = target != null ? target : base != null ? copyOf(base) : new $L()",
+                    commandClassName, commandClassName);
         }
 
-        codeBuilder.addStatement("$T remainingArgs = new $T<>()",
-                List.class, ArrayList.class);
-        codeBuilder.addStatement("int idx = 0");
+        if (!standalone && isRecord) {
+            codeBuilder.addStatement("$T remainingArgs = new $T<>()",
+                    List.class, ArrayList.class);
+        } else if (!standalone) {
+            codeBuilder.addStatement("$T remainingArgs = result != null ? result.reuseRemainingArgs() : new $T<>()",
+                    ParameterizedTypeName.get(List.class, String.class), ArrayList.class);
+        }
+        codeBuilder.addStatement("int idx = fromIndex");
+        if (!groups.isEmpty()) {
+            codeBuilder.addStatement("long seen = 0L");
+        }
+
+        // I/O-bound conversions run in the background and are collected after the loop
+        ClassName asyncClass = ClassName.get(AsyncConversions.class);
+        List<String> ioBoundFields = new ArrayList<>();
+        for (Map.Entry<String, OptionMetadata> option : options.entrySet()) {
+            if (option.getValue().annotation.ioBound()) {
+                ioBoundFields.add(option.getKey());
+            }
+        }
+        if (!ioBoundFields.isEmpty()) {
+            codeBuilder.addStatement("$T async = null", asyncClass);
+            for (String fieldName : ioBoundFields) {
+                codeBuilder.addStatement("$T $L = null",
+                        ParameterizedTypeName.get(asyncClass.nestedClass("Pending"),
+                                TypeName.get(options.get(fieldName).element.asType()).box()),
+                        fieldName + "Pending");
+            }
+        }
+
+        // Map options collect their entries in locals, sized on the first entry and stored after the loop
+        List<String> mapFields = new ArrayList<>();
+        for (Map.Entry<String, OptionMetadata> option : options.entrySet()) {
+            OptionMetadata meta = option.getValue();
+            if (meta.mapValueType != null) {
+                mapFields.add(option.getKey());
+                codeBuilder.addStatement("$T $L = null",
+                        ParameterizedTypeName.get(ClassName.get(LinkedHashMap.class),
+                                ClassName.get(String.class), TypeName.get(meta.mapValueType)),
+                        option.getKey() + "Entries");
+                helpers.add(generateMapCountMethod(option.getKey(), meta));
+            }
+        }
 
         // 2. Parsing loop
         codeBuilder.addStatement("int posIdx = 0");
+        // After "--" every token is positional; tokens beyond the parameters are the passthrough tail
+        codeBuilder.addStatement("boolean optionsEnded = false");
+        if (!standalone) {
+            codeBuilder.addStatement("int passthrough = args.length");
+        }
         codeBuilder.beginControlFlow("while (idx < args.length)");
         codeBuilder.addStatement("$T arg = args[idx]", String.class);
 
@@ -213,37 +1842,103 @@ public class CliAnnotationProcessor extends AbstractProcessor {
 
         // 3. Generate handlers
         boolean firstArgCondition = true;
-        
-        // Options
-        for (String fieldName : options.keySet()) {
-            OptionMetadata meta = options.get(fieldName);
-            String[] names = meta.annotation.names();
 
-            CodeBlock.Builder conditionBuilder = CodeBlock.builder();
-            for (int i = 0; i < names.length; i++) {
-                if (i > 0) conditionBuilder.add(" || ");
-                conditionBuilder.add("arg.equals($S)", names[i]);
+        // Options: names are mapped to an id by optionId(), and each option is handled in its own
+        // method, so the loop stays small enough for the JIT no matter how many options there are
+        if (!options.isEmpty()) {
+            List<String> optionFields = new ArrayList<>(options.keySet());
+            helpers.addAll(generateOptionIdMethods(options));
+            Set<String> scanners = new TreeSet<>();
+            for (OptionMetadata meta : options.values()) {
+                if (meta.scanner != null && meta.handlers == null) {
+                    scanners.add(meta.scanner);
+                }
+            }
+            if (!scanners.isEmpty()) {
+                helpers.add(generateUnitErrorMethod(failure));
             }
+            if (scanners.contains("parseByteSize")) {
+                helpers.add(generateByteSizeScanner(failure));
+            }
+            if (scanners.contains("parseDuration")) {
+                helpers.add(generateDurationScanner(failure));
+            }
+            codeBuilder.addStatement("int option = optionsEnded ? -1 : optionId(arg)");
+            codeBuilder.beginControlFlow("if (option >= 0)");
+            firstArgCondition = false;
 
-            if (firstArgCondition) {
-                codeBuilder.beginControlFlow("if ($L)", conditionBuilder.build());
-                firstArgCondition = false;
-            } else {
-                codeBuilder.nextControlFlow("else if ($L)", conditionBuilder.build());
+            // Class commands with many options dispatch through chunks of OPTIONS_PER_METHOD ids
+            boolean chunked = !isRecord && options.size() > OPTIONS_PER_METHOD;
+            codeBuilder.beginControlFlow("switch (option)");
+            for (int id = 0; id < optionFields.size(); id++) {
+                String fieldName = optionFields.get(id);
+                OptionMetadata meta = options.get(fieldName);
+                if (meta.annotation.ioBound() || meta.mapValueType != null) {
+                    // Pending conversions and map entries are locals of parse, so they are handled here
+                    codeBuilder.add("case $L:\n$>", id);
+                    codeBuilder.add(meta.mapValueType != null
+                            ? generateMapEntryCode(fieldName, meta, failure, null)
+                            : generateOptionHandlerCode(cmdAnnotation.name(), target, fieldName, meta, failure));
+                    codeBuilder.addStatement("break").add("$<");
+                } else if (!chunked) {
+                    codeBuilder.add("case $L:\n$>", id);
+                    codeBuilder.add(generateOptionCase(typeElement, fieldName, meta, failure, standalone, helpers));
+                    codeBuilder.addStatement("break").add("$<");
+                }
+            }
+            if (chunked) {
+                codeBuilder.add("default:\n$>");
+                codeBuilder.beginControlFlow("switch (option / $L)", OPTIONS_PER_METHOD);
+                for (int chunk = 0; chunk * OPTIONS_PER_METHOD < optionFields.size(); chunk++) {
+                    String dispatchName = "dispatchOptions" + chunk;
+                    codeBuilder.add("case $L:\n$>", chunk);
+                    codeBuilder.addStatement(standalone
+                            ? "idx = $L(instance, option, args, idx)"
+                            : "idx = $L(instance, option, args, idx, trace)", dispatchName);
+                    codeBuilder.addStatement("break").add("$<");
+                    helpers.add(generateOptionDispatchMethod(typeElement, dispatchName, options, optionFields,
+                            chunk * OPTIONS_PER_METHOD, failure, standalone, helpers));
+                }
+                codeBuilder.endControlFlow();
+                codeBuilder.add("$<");
             }
+            codeBuilder.endControlFlow();
 
-            codeBuilder.add(generateOptionHandlerCode(target, fieldName, meta));
+            if (!groups.isEmpty()) {
+                codeBuilder.beginControlFlow("switch (option)");
+                for (int id = 0; id < optionFields.size(); id++) {
+                    OptionMetadata meta = options.get(optionFields.get(id));
+                    if (meta.groupBit >= 0) {
+                        codeBuilder.add("case $L:\n$>", id);
+                        codeBuilder.addStatement("seen |= 0x$LL", Long.toHexString(1L << meta.groupBit));
+                        codeBuilder.addStatement("break").add("$<");
+                    }
+                }
+                codeBuilder.endControlFlow();
+            }
             codeBuilder.addStatement("idx++");
         }
 
         // Positional parameters
         if (firstArgCondition) {
-            codeBuilder.beginControlFlow("if (!arg.startsWith($S))", "-");
-            firstArgCondition = false;
+            codeBuilder.beginControlFlow("if (optionsEnded || !arg.startsWith($S))", "-");
         } else {
-            codeBuilder.nextControlFlow("else if (!arg.startsWith($S))", "-");
+            codeBuilder.nextControlFlow("else if (optionsEnded || !arg.startsWith($S))", "-");
         }
-        
+        if (cmdAnnotation.stopAtPositional()) {
+            codeBuilder.addStatement("optionsEnded = true");
+        }
+        // Standalone parsers have no ParseResult, so their passthrough tail goes to remainingArgs
+        CodeBlock extraPositional = standalone
+                ? CodeBlock.builder().addStatement("remainingArgs.add(arg)").build()
+                : CodeBlock.builder()
+                        .beginControlFlow("if (optionsEnded)")
+                        .addStatement("passthrough = idx")
+                        .addStatement("break")
+                        .endControlFlow()
+                        .addStatement("remainingArgs.add(arg)")
+                        .build();
+
         if (!parameters.isEmpty()) {
             boolean firstParam = true;
             List<ParameterMetadata> sortedParams = new ArrayList<>(parameters);
@@ -259,27 +1954,124 @@ public class CliAnnotationProcessor extends AbstractProcessor {
                     codeBuilder.nextControlFlow("else if (posIdx == $L)", pIdx);
                 }
                 codeBuilder.addStatement(FieldTypeAnalyzer.getConversionCode(target, fieldName, "arg", param.element.asType()));
+                codeBuilder.add(generateConstraintChecks(param.element, "Parameter " + fieldName,
+                        (isRecord ? "" : "instance.") + fieldName, failure));
             }
             codeBuilder.nextControlFlow("else");
-            codeBuilder.addStatement("remainingArgs.add(arg)");
+            codeBuilder.add(extraPositional);
             codeBuilder.endControlFlow();
             codeBuilder.addStatement("posIdx++");
         } else {
-            codeBuilder.addStatement("remainingArgs.add(arg)");
+            codeBuilder.add(extraPositional);
+        }
+        codeBuilder.addStatement("idx++");
+
+        // Map entries attached to the option name: -Dkey=value, --define=key=value
+        for (String fieldName : mapFields) {
+            OptionMetadata meta = options.get(fieldName);
+            for (String name : meta.annotation.names()) {
+                String prefix = mapEntryPrefix(name);
+                codeBuilder.nextControlFlow("else if (arg.startsWith($S))", prefix);
+                codeBuilder.add(generateMapEntryCode(fieldName, meta, failure, prefix));
+                if (meta.groupBit >= 0) {
+                    codeBuilder.addStatement("seen |= 0x$LL", Long.toHexString(1L << meta.groupBit));
+                }
+                codeBuilder.addStatement("idx++");
+            }
         }
+
+        codeBuilder.nextControlFlow("else if (arg.equals($S))", "--");
+        codeBuilder.addStatement("optionsEnded = true");
         codeBuilder.addStatement("idx++");
 
         // Unknown options
         codeBuilder.nextControlFlow("else");
-        codeBuilder.addStatement("throw new $T($S + arg)",
-                ClassName.get(ParseException.class),
-                "Unknown option: "
-        );
+        if (standalone) {
+            codeBuilder.addStatement("throw new $T($S + arg)", failure, "Unknown option: ");
+        } else {
+            codeBuilder.addStatement("throw new $T($S + arg + OPTION_SUGGESTIONS.didYouMean(arg))",
+                    ClassName.get(ParseException.class),
+                    "Unknown option: "
+            );
+        }
         codeBuilder.endControlFlow(); // end if/else chain
 
         codeBuilder.endControlFlow(); // end while loop
 
+        for (String fieldName : mapFields) {
+            codeBuilder.addStatement("if ($LEntries != null) $L$L = $LEntries",
+                    fieldName, isRecord ? "" : "instance.", fieldName, fieldName);
+        }
+
+        if (!ioBoundFields.isEmpty()) {
+            codeBuilder.beginControlFlow("if (async != null)");
+            codeBuilder.addStatement("async.await(trace)");
+            for (String fieldName : ioBoundFields) {
+                OptionMetadata meta = options.get(fieldName);
+                CodeBlock checks = generateConstraintChecks(meta.element, "Option " + meta.annotation.names()[0],
+                        (isRecord ? "" : "instance.") + fieldName, failure);
+                if (checks.isEmpty()) {
+                    codeBuilder.addStatement("if ($LPending != null) $L$L = $LPending.get()",
+                            fieldName, isRecord ? "" : "instance.", fieldName, fieldName);
+                } else {
+                    codeBuilder.beginControlFlow("if ($LPending != null)", fieldName)
+                            .addStatement("$L$L = $LPending.get()", isRecord ? "" : "instance.", fieldName, fieldName)
+                            .add(checks)
+                            .endControlFlow();
+                }
+            }
+            codeBuilder.endControlFlow();
+        }
+
         // 4. Generate validation for required options and parameters
+        if (!standalone) {
+            codeBuilder.addStatement("if (trace != null) trace.validationStarted()");
+        }
+        if (!standalone && !groups.isEmpty()) {
+            // Options the base set count as given, so overriding one option of a group is checked against the rest
+            codeBuilder.beginControlFlow("if (base != null)");
+            for (Map.Entry<String, OptionMetadata> option : options.entrySet()) {
+                OptionMetadata meta = option.getValue();
+                if (meta.groupBit < 0) {
+                    continue;
+                }
+                String value = (isRecord ? "" : "instance.") + option.getKey();
+                String defaultValue = isRecord
+                        ? getDefaultValue(meta.element.asType())
+                        : "DefaultsHolder.DEFAULTS." + option.getKey();
+                String bit = "0x" + Long.toHexString(1L << meta.groupBit) + "L";
+                if (meta.element.asType().getKind().isPrimitive()) {
+                    codeBuilder.addStatement("if ($L != $L) seen |= $L", value, defaultValue, bit);
+                } else {
+                    codeBuilder.addStatement("if (!$T.equals($L, $L)) seen |= $L", Objects.class, value, defaultValue, bit);
+                }
+            }
+            codeBuilder.endControlFlow();
+        }
+        for (OptionGroupMetadata group : groups) {
+            String mask = "0x" + Long.toHexString(group.mask) + "L";
+            String names = String.join(", ", group.annotation.options());
+            switch (group.annotation.type()) {
+                case EXCLUSIVE:
+                    codeBuilder.beginControlFlow("if ($T.bitCount(seen & $L) > 1)", Long.class, mask);
+                    codeBuilder.addStatement("throw new $T($S)", failure,
+                            "Options " + names + " are mutually exclusive");
+                    break;
+                case CO_REQUIRED:
+                    codeBuilder.beginControlFlow("if ((seen & $L) != 0 && (seen & $L) != $L)", mask, mask, mask);
+                    codeBuilder.addStatement("throw new $T($S)", failure,
+                            "Options " + names + " must be given together");
+                    break;
+                case AT_LEAST_ONE:
+                    // A base command already satisfied the group
+                    codeBuilder.beginControlFlow(standalone ? "if ((seen & $L) == 0)" : "if (base == null && (seen & $L) == 0)", mask);
+                    codeBuilder.addStatement("throw new $T($S)", failure,
+                            "At least one of " + names + " must be given");
+                    break;
+            }
+            codeBuilder.endControlFlow();
+        }
+        List<CodeBlock> requiredChecks = new ArrayList<>();
         for (String fieldName : options.keySet()) {
             OptionMetadata meta = options.get(fieldName);
             if (meta.annotation.required()) {
@@ -288,14 +2080,34 @@ public class CliAnnotationProcessor extends AbstractProcessor {
 
                 // Check if null (works for objects)
                 if (isObjectType(type)) {
-                    codeBuilder.beginControlFlow("if ($L == null)", isRecord ? fieldName : "instance." + fieldName);
-                    codeBuilder.addStatement("throw new $T($S)",
-                            ClassName.get(ParseException.class),
-                            "Required option not provided: " + meta.annotation.names()[0]
-                    );
-                    codeBuilder.endControlFlow();
+                    requiredChecks.add(CodeBlock.builder()
+                            .beginControlFlow("if ($L == null)", isRecord ? fieldName : "instance." + fieldName)
+                            .addStatement("throw new $T($S)",
+                                    failure,
+                                    "Required option not provided: " + meta.annotation.names()[0]
+                            )
+                            .endControlFlow()
+                            .build());
+                }
+            }
+        }
+        if (!isRecord && requiredChecks.size() > OPTIONS_PER_METHOD) {
+            for (int chunk = 0; chunk * OPTIONS_PER_METHOD < requiredChecks.size(); chunk++) {
+                String checkName = "checkRequiredOptions" + chunk;
+                codeBuilder.addStatement("$L(instance)", checkName);
+                MethodSpec.Builder check = MethodSpec.methodBuilder(checkName)
+                        .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                        .addParameter(TypeName.get(typeElement.asType()), "instance");
+                if (!standalone) {
+                    check.addException(failure);
                 }
+                requiredChecks.subList(chunk * OPTIONS_PER_METHOD,
+                                Math.min(requiredChecks.size(), (chunk + 1) * OPTIONS_PER_METHOD))
+                        .forEach(check::addCode);
+                helpers.add(check.build());
             }
+        } else {
+            requiredChecks.forEach(codeBuilder::add);
         }
 
         for (ParameterMetadata param : parameters) {
@@ -305,7 +2117,7 @@ public class CliAnnotationProcessor extends AbstractProcessor {
                 if (isObjectType(type)) {
                     codeBuilder.beginControlFlow("if ($L == null)", isRecord ? fieldName : "instance." + fieldName);
                     codeBuilder.addStatement("throw new $T($S)",
-                            ClassName.get(ParseException.class),
+                            failure,
                             "Required parameter not provided: " + fieldName
                     );
                     codeBuilder.endControlFlow();
@@ -325,13 +2137,37 @@ public class CliAnnotationProcessor extends AbstractProcessor {
                     commandClassName, commandClassName, argsList);
         }
 
-        codeBuilder.addStatement("return new $T<>(instance, remainingArgs)",
-                ClassName.get(ParseResult.class)
-        );
+        List<MethodSpec> methods = new ArrayList<>();
+        if (standalone) {
+            methods.add(MethodSpec.methodBuilder("parse")
+                    .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                    .returns(TypeName.get(typeElement.asType()))
+                    .addParameter(String[].class, "args")
+                    .addParameter(int.class, "fromIndex")
+                    .addParameter(ParameterizedTypeName.get(List.class, String.class), "remainingArgs")
+                    .addCode(codeBuilder.addStatement("return instance").build())
+                    .build());
+            methods.addAll(helpers);
+            warnAboutMethodSizes(typeElement, methods);
+            return methods;
+        }
 
-        return MethodSpec.methodBuilder("parse")
-                .addAnnotation(Override.class)
-                .addModifiers(Modifier.PUBLIC)
+        if (isRecord) {
+            codeBuilder.addStatement("return new $T<>(instance, remainingArgs, args, passthrough)",
+                    ClassName.get(ParseResult.class)
+            );
+        } else {
+            // parseInto returns the result it passed in
+            codeBuilder.beginControlFlow("if (result != null)")
+                    .addStatement("result.reuse(instance, args, passthrough)")
+                    .addStatement("return null")
+                    .endControlFlow()
+                    .addStatement("return new $T<>(instance, remainingArgs, args, passthrough)",
+                            ClassName.get(ParseResult.class));
+        }
+
+        MethodSpec.Builder parse = MethodSpec.methodBuilder("parse")
+                .addModifiers(Modifier.PRIVATE)
                 .returns(
                         ParameterizedTypeName.get(
                                 ClassName.get(ParseResult.class),
@@ -339,13 +2175,293 @@ public class CliAnnotationProcessor extends AbstractProcessor {
                         )
                 )
                 .addParameter(String[].class, "args")
+                .addParameter(int.class, "fromIndex")
+                .addParameter(ParseTrace.class, "trace")
+                .addParameter(TypeName.get(typeElement.asType()), "base");
+        if (!isRecord) {
+            // Set by parseInto to fill the caller's command and result instead of new ones
+            parse.addParameter(TypeName.get(typeElement.asType()), "target")
+                    .addParameter(ParameterizedTypeName.get(ClassName.get(ReusableParseResult.class),
+                            TypeName.get(typeElement.asType())), "result");
+        }
+        methods.add(parse
                 .addException(
                         ClassName.get(ParseException.class)
                 )
                 .addCode(codeBuilder.build())
+                .build());
+        methods.addAll(helpers);
+        warnAboutMethodSizes(typeElement, methods);
+        return methods;
+    }
+
+    /**
+     * Generate {@code optionId(String)}, mapping every option name to the index of its option
+     * in declaration order, or to -1. Large sets of names are bucketed by hash code into
+     * several string switches of about {@link #NAMES_PER_METHOD} names.
+     */
+    private List<MethodSpec> generateOptionIdMethods(Map<String, OptionMetadata> options) {
+        Map<String, Integer> ids = new LinkedHashMap<>();
+        int id = 0;
+        for (OptionMetadata meta : options.values()) {
+            for (String name : meta.annotation.names()) {
+                ids.put(name, id);
+            }
+            id++;
+        }
+
+        List<MethodSpec> methods = new ArrayList<>();
+        if (ids.size() <= NAMES_PER_METHOD) {
+            methods.add(generateOptionIdSwitch("optionId", ids));
+            return methods;
+        }
+
+        int buckets = Integer.highestOneBit((ids.size() * 2 - 1) / NAMES_PER_METHOD) * 2;
+        List<Map<String, Integer>> bucketIds = new ArrayList<>();
+        for (int i = 0; i < buckets; i++) {
+            bucketIds.add(new LinkedHashMap<>());
+        }
+        for (Map.Entry<String, Integer> entry : ids.entrySet()) {
+            bucketIds.get(entry.getKey().hashCode() & (buckets - 1)).put(entry.getKey(), entry.getValue());
+        }
+
+        CodeBlock.Builder lookup = CodeBlock.builder().beginControlFlow("switch (arg.hashCode() & $L)", buckets - 1);
+        for (int i = 0; i < buckets; i++) {
+            if (bucketIds.get(i).isEmpty()) {
+                continue;
+            }
+            lookup.add("case $L:\n$>", i).addStatement("return optionId$L(arg)", i).add("$<");
+            methods.add(generateOptionIdSwitch("optionId" + i, bucketIds.get(i)));
+        }
+        lookup.add("default:\n$>").addStatement("return -1").add("$<").endControlFlow();
+        methods.add(0, MethodSpec.methodBuilder("optionId")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .returns(int.class)
+                .addParameter(String.class, "arg")
+                .addCode(lookup.build())
+                .build());
+        return methods;
+    }
+
+    private static MethodSpec generateOptionIdSwitch(String methodName, Map<String, Integer> ids) {
+        CodeBlock.Builder lookup = CodeBlock.builder().beginControlFlow("switch (arg)");
+        for (Map.Entry<String, Integer> entry : ids.entrySet()) {
+            lookup.add("case $S:\n$>", entry.getKey()).addStatement("return $L", entry.getValue()).add("$<");
+        }
+        lookup.add("default:\n$>").addStatement("return -1").add("$<").endControlFlow();
+        return MethodSpec.methodBuilder(methodName)
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .returns(int.class)
+                .addParameter(String.class, "arg")
+                .addCode(lookup.build())
                 .build();
     }
 
+    /**
+     * Generate the body of a {@code case} handling one option that is not I/O-bound. Options
+     * taking a value are converted in their own method, added to {@code helpers}: class
+     * commands pass the instance and get back the index, records get back the value.
+     */
+    private CodeBlock generateOptionCase(TypeElement typeElement, String fieldName, OptionMetadata meta,
+                                         ClassName failure, boolean standalone, List<MethodSpec> helpers) {
+        boolean isRecord = typeElement.getKind() == ElementKind.RECORD;
+        String commandName = typeElement.getAnnotation(Command.class).name();
+        if (meta.annotation.arity().equals("0")) {
+            return generateOptionHandlerCode(commandName, isRecord ? null : "instance", fieldName, meta, failure);
+        }
+
+        String methodName = "parse" + capitalizeFirst(fieldName) + (isRecord ? "Value" : "");
+        if (meta.handlers != null) {
+            return CodeBlock.of("idx = $T.$L(instance, args, idx, trace);\n", meta.handlers, methodName);
+        }
+        String arguments = standalone ? "args, idx" : "args, idx, trace";
+        MethodSpec.Builder method = MethodSpec.methodBuilder(methodName)
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC);
+        CodeBlock call;
+        if (isRecord) {
+            TypeName type = TypeName.get(meta.element.asType());
+            method.returns(type)
+                    .addStatement("$T $L", type, fieldName)
+                    .addCode(generateOptionHandlerCode(commandName, null, fieldName, meta, failure, false))
+                    .addStatement("return $L", fieldName);
+            call = CodeBlock.builder()
+                    .addStatement("$L = $L($L)", fieldName, methodName, arguments)
+                    .addStatement("idx++")
+                    .build();
+        } else {
+            method.returns(int.class)
+                    .addParameter(TypeName.get(typeElement.asType()), "instance")
+                    .addCode(generateOptionHandlerCode(commandName, "instance", fieldName, meta, failure))
+                    .addStatement("return idx");
+            call = CodeBlock.of("idx = $L(instance, $L);\n", methodName, arguments);
+        }
+        method.addParameter(String[].class, "args").addParameter(int.class, "idx");
+        if (!standalone) {
+            method.addParameter(ParseTrace.class, "trace").addException(failure);
+        }
+        helpers.add(method.build());
+        return call;
+    }
+
+    /**
+     * Generate {@code dispatchOptionsN}, handling the options with ids from {@code firstId}
+     * to {@code firstId + OPTIONS_PER_METHOD - 1} of a class command.
+     */
+    private MethodSpec generateOptionDispatchMethod(TypeElement typeElement, String methodName,
+                                                   Map<String, OptionMetadata> options, List<String> optionFields,
+                                                   int firstId, ClassName failure, boolean standalone,
+                                                   List<MethodSpec> helpers) {
+        CodeBlock.Builder dispatch = CodeBlock.builder().beginControlFlow("switch (option)");
+        for (int id = firstId; id < Math.min(optionFields.size(), firstId + OPTIONS_PER_METHOD); id++) {
+            OptionMetadata meta = options.get(optionFields.get(id));
+            if (meta.annotation.ioBound() || meta.mapValueType != null) {
+                continue;
+            }
+            dispatch.add("case $L:\n$>", id)
+                    .add(generateOptionCase(typeElement, optionFields.get(id), meta, failure, standalone, helpers))
+                    .addStatement("break")
+                    .add("$<");
+        }
+        dispatch.endControlFlow().addStatement("return idx");
+
+        MethodSpec.Builder method = MethodSpec.methodBuilder(methodName)
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .returns(int.class)
+                .addParameter(TypeName.get(typeElement.asType()), "instance")
+                .addParameter(int.class, "option")
+                .addParameter(String[].class, "args")
+                .addParameter(int.class, "idx");
+        if (!standalone) {
+            method.addParameter(ParseTrace.class, "trace").addException(failure);
+        }
+        return method.addCode(dispatch.build()).build();
+    }
+
+    /**
+     * Warn about generated methods whose bytecode is likely to exceed {@link #HUGE_METHOD_LIMIT},
+     * so they are never JIT-compiled, or to come close to {@link #MAX_METHOD_SIZE}.
+     */
+    private void warnAboutMethodSizes(TypeElement typeElement, List<MethodSpec> methods) {
+        for (MethodSpec method : methods) {
+            int estimate = estimateBytecodeSize(method.code);
+            if (estimate > MAX_METHOD_SIZE * 4 / 5) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                        "[CLI-GEN] Generated method " + method.name + " is about " + estimate
+                                + " bytes of bytecode, close to the " + MAX_METHOD_SIZE + "-byte method size limit",
+                        typeElement);
+            } else if (estimate > HUGE_METHOD_LIMIT * 4 / 5) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                        "[CLI-GEN] Generated method " + method.name + " is about " + estimate
+                                + " bytes of bytecode; methods over HugeMethodLimit (" + HUGE_METHOD_LIMIT
+                                + " bytes) are not JIT-compiled",
+                        typeElement);
+            }
+        }
+    }
+
+    /**
+     * Rough bytecode size of generated code: javac emits about one byte per three characters
+     * of the statements this processor generates, string literals aside, and about 20 bytes
+     * per label of a string switch for the hash lookup and the {@code equals} check.
+     */
+    static int estimateBytecodeSize(CodeBlock code) {
+        String source = code.toString().replaceAll("\"(\\\\.|[^\"\\\\])*\"", "\"\"");
+        int size = 0;
+        int stringLabels = 0;
+        for (String line : source.split("\n")) {
+            String statement = line.strip();
+            size += statement.length();
+            if (statement.startsWith("case \"")) {
+                stringLabels++;
+            }
+        }
+        return size / 3 + stringLabels * 20;
+    }
+
+    /**
+     * Resolve the {@link OptionGroup}s of a command and assign every grouped option a bit
+     * of the {@code seen} mask. Returns {@code null} after reporting an error if a group
+     * names an unknown option or contradicts another group or a required option.
+     */
+    private List<OptionGroupMetadata> resolveOptionGroups(TypeElement typeElement, Map<String, OptionMetadata> options) {
+        Map<String, String> fieldsByName = new HashMap<>();
+        for (Map.Entry<String, OptionMetadata> option : options.entrySet()) {
+            for (String name : option.getValue().annotation.names()) {
+                fieldsByName.put(name, option.getKey());
+            }
+        }
+
+        List<OptionGroupMetadata> groups = new ArrayList<>();
+        int nextBit = 0;
+        for (OptionGroup annotation : typeElement.getAnnotationsByType(OptionGroup.class)) {
+            int minimumSize = annotation.type() == OptionGroup.Type.AT_LEAST_ONE ? 1 : 2;
+            if (annotation.options().length < minimumSize) {
+                error("@OptionGroup of type " + annotation.type() + " needs at least " + minimumSize + " options", typeElement);
+                return null;
+            }
+            long mask = 0;
+            for (String name : annotation.options()) {
+                String fieldName = fieldsByName.get(name);
+                if (fieldName == null) {
+                    error("@OptionGroup refers to unknown option " + name, typeElement);
+                    return null;
+                }
+                OptionMetadata meta = options.get(fieldName);
+                if (meta.groupBit < 0) {
+                    if (nextBit == Long.SIZE) {
+                        error("At most " + Long.SIZE + " options can be grouped", typeElement);
+                        return null;
+                    }
+                    meta.groupBit = nextBit++;
+                }
+                if ((mask & 1L << meta.groupBit) != 0) {
+                    error("@OptionGroup lists option " + name + " more than once", typeElement);
+                    return null;
+                }
+                mask |= 1L << meta.groupBit;
+            }
+            groups.add(new OptionGroupMetadata(annotation, mask));
+        }
+
+        // Options that must always be given: required ones and everything co-required with them
+        long required = 0;
+        for (OptionMetadata meta : options.values()) {
+            if (meta.groupBit >= 0 && meta.annotation.required()) {
+                required |= 1L << meta.groupBit;
+            }
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (OptionGroupMetadata group : groups) {
+                if (group.annotation.type() == OptionGroup.Type.CO_REQUIRED
+                        && (required & group.mask) != 0 && (required & group.mask) != group.mask) {
+                    required |= group.mask;
+                    changed = true;
+                }
+            }
+        }
+
+        for (OptionGroupMetadata exclusive : groups) {
+            if (exclusive.annotation.type() != OptionGroup.Type.EXCLUSIVE) {
+                continue;
+            }
+            String names = String.join(", ", exclusive.annotation.options());
+            for (OptionGroupMetadata other : groups) {
+                if (other.annotation.type() == OptionGroup.Type.CO_REQUIRED
+                        && Long.bitCount(exclusive.mask & other.mask) > 1) {
+                    error("Options " + names + " cannot be both mutually exclusive and co-required", typeElement);
+                    return null;
+                }
+            }
+            if (Long.bitCount(exclusive.mask & required) > 1) {
+                error("@OptionGroup makes required options " + names + " mutually exclusive", typeElement);
+                return null;
+            }
+        }
+        return groups;
+    }
+
     private String getDefaultValue(TypeMirror type) {
         switch (type.getKind()) {
             case BOOLEAN: return "false";
@@ -360,7 +2476,13 @@ public class CliAnnotationProcessor extends AbstractProcessor {
         }
     }
 
-    private CodeBlock generateOptionHandlerCode(String target, String fieldName, OptionMetadata meta) {
+    private CodeBlock generateOptionHandlerCode(String commandName, String target, String fieldName,
+                                                OptionMetadata meta, ClassName failure) {
+        return generateOptionHandlerCode(commandName, target, fieldName, meta, failure, true);
+    }
+
+    private CodeBlock generateOptionHandlerCode(String commandName, String target, String fieldName,
+                                                OptionMetadata meta, ClassName failure, boolean consumeValue) {
         String arity = meta.annotation.arity();
         boolean takesValue = !arity.equals("0");
         CodeBlock.Builder code = CodeBlock.builder();
@@ -368,28 +2490,64 @@ public class CliAnnotationProcessor extends AbstractProcessor {
         if (takesValue) {
             code.beginControlFlow("if (idx + 1 >= args.length)");
             code.addStatement("throw new $T($S)",
-                    ClassName.get(ParseException.class),
+                    failure,
                     "Option " + meta.annotation.names()[0] + " requires an argument"
             );
             code.endControlFlow();
 
             String converterFqn = getConverterFqn(meta);
-            if (converterFqn != null) {
+            if (meta.annotation.ioBound()) {
+                code.addStatement("if (async == null) async = new $T($S)",
+                        ClassName.get(AsyncConversions.class), commandName);
+                code.addStatement("$LPending = async.submit($S, $S, $L, args[idx + 1])",
+                        fieldName, meta.annotation.names()[0], converterFqn,
+                        meta.annotation.converterCacheSize() > 0
+                                ? converterCacheFieldName(fieldName)
+                                : CodeBlock.of("new $L()", converterFqn));
+            } else if (converterFqn != null) {
+                code.addStatement("if (trace != null) trace.conversionStarted($S, $S)",
+                        meta.annotation.names()[0], converterFqn);
                 code.beginControlFlow("try");
-                code.addStatement("$L$L = (($T<? extends $T>) new $L()).convert(args[idx + 1])",
-                        (target == null || target.isEmpty()) ? "" : target + ".",
-                        fieldName,
-                        ClassName.get("com.github.asm0dey.cligen.runtime", "Converter"),
-                        TypeName.get(meta.element.asType()),
-                        converterFqn);
+                if (meta.annotation.converterCacheSize() > 0) {
+                    code.addStatement("$L$L = $L.convert(args[idx + 1])",
+                            (target == null || target.isEmpty()) ? "" : target + ".",
+                            fieldName,
+                            converterCacheFieldName(fieldName));
+                } else {
+                    code.addStatement("$L$L = (($T<? extends $T>) new $L()).convert(args[idx + 1])",
+                            (target == null || target.isEmpty()) ? "" : target + ".",
+                            fieldName,
+                            ClassName.get("com.github.asm0dey.cligen.runtime", "Converter"),
+                            TypeName.get(meta.element.asType()),
+                            converterFqn);
+                }
                 code.nextControlFlow("catch (Exception e)");
+                code.addStatement("if (trace != null) trace.conversionFailed(e)");
                 code.addStatement("throw new $T(\"Failed to convert option $L: \" + e.getMessage())",
                         ClassName.get(ParseException.class), meta.annotation.names()[0]);
                 code.endControlFlow();
+                code.addStatement("if (trace != null) trace.conversionSucceeded()");
             } else {
-                code.addStatement(FieldTypeAnalyzer.getConversionCode(target, fieldName, "args[idx + 1]", meta.element.asType()));
+                String prefix = (target == null || target.isEmpty()) ? "" : target + ".";
+                if ("parseByteSize".equals(meta.scanner)) {
+                    boolean isInt = meta.element.asType().toString().matches("int|java\\.lang\\.Integer");
+                    code.addStatement("$L$L = $LparseByteSize($S, args[idx + 1], $L)", prefix, fieldName,
+                            isInt ? "(int) " : "", meta.annotation.names()[0],
+                            isInt ? "Integer.MAX_VALUE" : "Long.MAX_VALUE");
+                } else if ("parseDuration".equals(meta.scanner)) {
+                    code.addStatement("$L$L = parseDuration($S, args[idx + 1])", prefix, fieldName,
+                            meta.annotation.names()[0]);
+                } else {
+                    code.addStatement(FieldTypeAnalyzer.getConversionCode(target, fieldName, "args[idx + 1]", meta.element.asType()));
+                }
+            }
+            if (!meta.annotation.ioBound()) {
+                code.add(generateConstraintChecks(meta.element, "Option " + meta.annotation.names()[0],
+                        ((target == null || target.isEmpty()) ? "" : target + ".") + fieldName, failure));
+            }
+            if (consumeValue) {
+                code.addStatement("idx++");
             }
-            code.addStatement("idx++");
         } else {
             code.addStatement("$L$L = true", (target == null || target.isEmpty()) ? "" : target + ".", fieldName);
         }
@@ -397,6 +2555,264 @@ public class CliAnnotationProcessor extends AbstractProcessor {
         return code.build();
     }
 
+    /**
+     * Generate the code adding one entry of a map option. With a {@code prefix}, the entry is
+     * attached to the option name in {@code arg}; without one, it is the next argument, which
+     * is consumed. The key ends at the first {@code =}, and both halves are cut out of the
+     * argument directly, so an entry costs two substrings and the value conversion.
+     */
+    private CodeBlock generateMapEntryCode(String fieldName, OptionMetadata meta, ClassName failure, String prefix) {
+        String entries = fieldName + "Entries";
+        String separator = fieldName + "Separator";
+        String entry = prefix == null ? "args[idx + 1]" : "arg";
+        int start = prefix == null ? 0 : prefix.length();
+        CodeBlock.Builder code = CodeBlock.builder();
+        if (prefix == null) {
+            code.beginControlFlow("if (idx + 1 >= args.length)")
+                    .addStatement("throw new $T($S)", failure,
+                            "Option " + meta.annotation.names()[0] + " requires an argument")
+                    .endControlFlow();
+        }
+        code.beginControlFlow("if ($L == null)", entries)
+                .addStatement("$L = new $T<>($L(args, idx) * 4 / 3 + 1)",
+                        entries, LinkedHashMap.class, "count" + capitalizeFirst(fieldName) + "Entries")
+                .endControlFlow();
+        code.addStatement("int $L = $L.indexOf('=', $L)", separator, entry, start);
+        code.beginControlFlow("if ($L <= $L)", separator, start)
+                .addStatement("throw new $T($S + $L)", failure,
+                        "Option " + meta.annotation.names()[0] + " expects key=value, got: ", entry)
+                .endControlFlow();
+        code.addStatement("$L.put($L.substring($L, $L), $L)", entries, entry, start, separator,
+                FieldTypeAnalyzer.getConversionExpression(entry + ".substring(" + separator + " + 1)",
+                        meta.mapValueType));
+        if (prefix == null) {
+            code.addStatement("idx++");
+        }
+        return code.build();
+    }
+
+    /**
+     * Generate {@code countXxxEntries(args, from)}, counting the entries of a map option from
+     * {@code from} up to {@code --}, so its map is allocated once with the right capacity.
+     */
+    private MethodSpec generateMapCountMethod(String fieldName, OptionMetadata meta) {
+        List<String> separate = new ArrayList<>();
+        List<String> attached = new ArrayList<>();
+        for (String name : meta.annotation.names()) {
+            separate.add("arg.equals(\"" + name + "\")");
+            attached.add("arg.startsWith(\"" + mapEntryPrefix(name) + "\")");
+        }
+        return MethodSpec.methodBuilder("count" + capitalizeFirst(fieldName) + "Entries")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .returns(int.class)
+                .addParameter(String[].class, "args")
+                .addParameter(int.class, "from")
+                .addStatement("int count = 0")
+                .beginControlFlow("for (int i = from; i < args.length; i++)")
+                .addStatement("$T arg = args[i]", String.class)
+                .beginControlFlow("if (arg.equals($S))", "--")
+                .addStatement("break")
+                .nextControlFlow("else if ($L)", String.join(" || ", separate))
+                .addStatement("count++")
+                .addStatement("i++")
+                .nextControlFlow("else if ($L)", String.join(" || ", attached))
+                .addStatement("count++")
+                .endControlFlow()
+                .endControlFlow()
+                .addStatement("return count")
+                .build();
+    }
+
+    private MethodSpec generateUnitErrorMethod(ClassName failure) {
+        return MethodSpec.methodBuilder("unitError")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .returns(failure)
+                .addParameter(String.class, "kind")
+                .addParameter(String.class, "option")
+                .addParameter(String.class, "value")
+                .addParameter(int.class, "index")
+                .addParameter(String.class, "problem")
+                .addStatement("return new $T($S + kind + $S + value + $S + option + $S + problem + $S + (index + 1))",
+                        failure, "Invalid ", " \"", "\" for option ", ": ", " at position ")
+                .build();
+    }
+
+    /**
+     * Generate {@code parseByteSize(option, value, max)}, scanning digits and a decimal or
+     * binary unit without building any intermediate string, and checking every step
+     * against {@code max}.
+     */
+    private MethodSpec generateByteSizeScanner(ClassName failure) {
+        String kind = "byte size";
+        return MethodSpec.methodBuilder("parseByteSize")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .returns(long.class)
+                .addParameter(String.class, "option")
+                .addParameter(String.class, "value")
+                .addParameter(long.class, "max")
+                .addException(failure)
+                .addStatement("int length = value.length()")
+                .addStatement("int pos = 0")
+                .addStatement("long number = 0")
+                .beginControlFlow("while (pos < length && value.charAt(pos) >= '0' && value.charAt(pos) <= '9')")
+                .addStatement("int digit = value.charAt(pos) - '0'")
+                .beginControlFlow("if (number > (max - digit) / 10)")
+                .addStatement("throw unitError($S, option, value, pos, $S)", kind, "value is too large")
+                .endControlFlow()
+                .addStatement("number = number * 10 + digit")
+                .addStatement("pos++")
+                .endControlFlow()
+                .beginControlFlow("if (pos == 0)")
+                .addStatement("throw unitError($S, option, value, 0, length == 0 ? $S : $S)",
+                        kind, "expected a number", "expected a digit")
+                .endControlFlow()
+                .addStatement("int unitStart = pos")
+                .addStatement("int exponent = 0")
+                .beginControlFlow("if (pos < length)")
+                .beginControlFlow("switch (value.charAt(pos))")
+                .addCode("case 'k':\ncase 'K':\n$>").addStatement("exponent = 1").addStatement("break").addCode("$<")
+                .addCode("case 'M':\n$>").addStatement("exponent = 2").addStatement("break").addCode("$<")
+                .addCode("case 'G':\n$>").addStatement("exponent = 3").addStatement("break").addCode("$<")
+                .addCode("case 'T':\n$>").addStatement("exponent = 4").addStatement("break").addCode("$<")
+                .addCode("case 'P':\n$>").addStatement("exponent = 5").addStatement("break").addCode("$<")
+                .addCode("case 'E':\n$>").addStatement("exponent = 6").addStatement("break").addCode("$<")
+                .addCode("case 'B':\n$>").addStatement("break").addCode("$<")
+                .addCode("default:\n$>")
+                .addStatement("throw unitError($S, option, value, pos, $S + value.charAt(pos) + $S)",
+                        kind, "unknown unit '", "'")
+                .addCode("$<")
+                .endControlFlow()
+                .endControlFlow()
+                .addStatement("long factor = 1")
+                .beginControlFlow("if (exponent > 0)")
+                .addStatement("pos++")
+                .beginControlFlow("if (pos < length && value.charAt(pos) == 'i')")
+                .addStatement("factor = 1L << (10 * exponent)")
+                .addStatement("pos++")
+                .nextControlFlow("else")
+                .beginControlFlow("for (int i = 0; i < exponent; i++)")
+                .addStatement("factor *= 1000")
+                .endControlFlow()
+                .endControlFlow()
+                .beginControlFlow("if (pos == length || value.charAt(pos) != 'B')")
+                .addStatement("throw unitError($S, option, value, pos, $S)", kind, "expected 'B'")
+                .endControlFlow()
+                .endControlFlow()
+                .beginControlFlow("if (pos < length && value.charAt(pos) == 'B')")
+                .addStatement("pos++")
+                .endControlFlow()
+                .beginControlFlow("if (pos < length)")
+                .addStatement("throw unitError($S, option, value, pos, $S + value.charAt(pos) + $S)",
+                        kind, "unexpected '", "'")
+                .endControlFlow()
+                .beginControlFlow("if (number > max / factor)")
+                .addStatement("throw unitError($S, option, value, unitStart, $S)", kind, "value is too large")
+                .endControlFlow()
+                .addStatement("return number * factor")
+                .build();
+    }
+
+    /**
+     * Generate {@code parseDuration(option, value)}, scanning amounts and units into whole
+     * seconds and nanoseconds without building any intermediate string or {@link java.time.Duration}.
+     */
+    private MethodSpec generateDurationScanner(ClassName failure) {
+        String kind = "duration";
+        return MethodSpec.methodBuilder("parseDuration")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .returns(java.time.Duration.class)
+                .addParameter(String.class, "option")
+                .addParameter(String.class, "value")
+                .addException(failure)
+                .addStatement("int length = value.length()")
+                .beginControlFlow("if (length == 0)")
+                .addStatement("throw unitError($S, option, value, 0, $S)", kind, "expected a number")
+                .endControlFlow()
+                .addStatement("int pos = 0")
+                .addStatement("long seconds = 0")
+                .addStatement("long nanos = 0")
+                .beginControlFlow("while (pos < length)")
+                .addStatement("int start = pos")
+                .addStatement("long amount = 0")
+                .beginControlFlow("while (pos < length && value.charAt(pos) >= '0' && value.charAt(pos) <= '9')")
+                .addStatement("int digit = value.charAt(pos) - '0'")
+                .beginControlFlow("if (amount > (Long.MAX_VALUE - digit) / 10)")
+                .addStatement("throw unitError($S, option, value, pos, $S)", kind, "value is too large")
+                .endControlFlow()
+                .addStatement("amount = amount * 10 + digit")
+                .addStatement("pos++")
+                .endControlFlow()
+                .beginControlFlow("if (pos == start)")
+                .addStatement("throw unitError($S, option, value, pos, $S + value.charAt(pos) + $S)",
+                        kind, "expected a digit, found '", "'")
+                .endControlFlow()
+                .beginControlFlow("if (pos == length)")
+                .addStatement("throw unitError($S, option, value, pos, $S)", kind, "missing unit")
+                .endControlFlow()
+                .addStatement("int unitStart = pos")
+                .addStatement("char unit = value.charAt(pos++)")
+                .addStatement("boolean subSecond = pos < length && value.charAt(pos) == 's' && unit != 's'")
+                .addStatement("long unitSeconds = 0")
+                .addStatement("long unitNanos = 0")
+                .beginControlFlow("switch (unit)")
+                .addCode("case 'd':\n$>").addStatement("unitSeconds = 86400").addStatement("break").addCode("$<")
+                .addCode("case 'h':\n$>").addStatement("unitSeconds = 3600").addStatement("break").addCode("$<")
+                .addCode("case 'm':\n$>").addStatement("unitSeconds = subSecond ? 0 : 60")
+                .addStatement("unitNanos = subSecond ? 1_000_000 : 0").addStatement("break").addCode("$<")
+                .addCode("case 's':\n$>").addStatement("unitSeconds = 1").addStatement("break").addCode("$<")
+                .addCode("case 'u':\n$>").addStatement("unitNanos = subSecond ? 1_000 : 0").addStatement("break").addCode("$<")
+                .addCode("case 'n':\n$>").addStatement("unitNanos = subSecond ? 1 : 0").addStatement("break").addCode("$<")
+                .addCode("default:\n$>").addStatement("break").addCode("$<")
+                .endControlFlow()
+                .beginControlFlow("if (unitSeconds == 0 && unitNanos == 0)")
+                .addStatement("throw unitError($S, option, value, unitStart, $S + unit + $S)",
+                        kind, "unknown unit '", "'")
+                .endControlFlow()
+                .beginControlFlow("if (unitNanos > 0)")
+                .addStatement("pos++")
+                .addStatement("long perSecond = 1_000_000_000L / unitNanos")
+                .addStatement("nanos += amount % perSecond * unitNanos")
+                .addStatement("amount /= perSecond")
+                .addStatement("unitSeconds = 1")
+                .endControlFlow()
+                .beginControlFlow("if (amount > (Long.MAX_VALUE - seconds) / unitSeconds)")
+                .addStatement("throw unitError($S, option, value, start, $S)", kind, "duration is too long")
+                .endControlFlow()
+                .addStatement("seconds += amount * unitSeconds")
+                .endControlFlow()
+                .beginControlFlow("if (nanos / 1_000_000_000L > Long.MAX_VALUE - seconds)")
+                .addStatement("throw unitError($S, option, value, 0, $S)", kind, "duration is too long")
+                .endControlFlow()
+                .addStatement("return $T.ofSeconds(seconds, nanos)", java.time.Duration.class)
+                .build();
+    }
+
+    /**
+     * Prefix of a map entry attached to an option name: {@code -Dkey=value} for short names,
+     * {@code --define=key=value} for long ones.
+     */
+    private static String mapEntryPrefix(String name) {
+        return name.length() == 2 ? name : name + "=";
+    }
+
+    private boolean isMap(TypeMirror type) {
+        return type.getKind() == TypeKind.DECLARED
+                && ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().contentEquals("java.util.Map");
+    }
+
+    private TypeMirror converterType(VariableElement field) {
+        Option option = field.getAnnotation(Option.class);
+        if (option == null) {
+            return null;
+        }
+        try {
+            option.converter();
+            return null;
+        } catch (MirroredTypeException mte) {
+            return "java.lang.Void".equals(mte.getTypeMirror().toString()) ? null : mte.getTypeMirror();
+        }
+    }
+
     private String getConverterFqn(OptionMetadata meta) {
         try {
             Class<?> cls = meta.annotation.converter();
@@ -414,6 +2830,40 @@ public class CliAnnotationProcessor extends AbstractProcessor {
                                           Map<String, OptionMetadata> options,
                                           List<ParameterMetadata> parameters) {
 
+        String helpText = buildHelpText(commandName, cmdAnnotation, options, parameters);
+        return MethodSpec.methodBuilder("getHelpText")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .returns(String.class)
+                .addStatement(helpText.length() > HELP_CHUNK_CHARS ? CodeBlock.of("return HELP_TEXT")
+                        : CodeBlock.of("return $S", helpText))
+                .build();
+    }
+
+    /**
+     * A string expression for {@code text}. Text too long for one class file constant is
+     * split into several constants joined when the class is initialized.
+     */
+    private static CodeBlock stringExpression(String text) {
+        if (text.length() <= HELP_CHUNK_CHARS) {
+            return CodeBlock.of("$S", text);
+        }
+        CodeBlock.Builder parts = CodeBlock.builder().add("$T.join($S", String.class, "");
+        for (int start = 0; start < text.length(); ) {
+            int end = Math.min(text.length(), start + HELP_CHUNK_CHARS);
+            if (end < text.length() && Character.isHighSurrogate(text.charAt(end - 1))) {
+                end--;
+            }
+            parts.add(",\n$S", text.substring(start, end));
+            start = end;
+        }
+        return parts.add(")").build();
+    }
+
+    private String buildHelpText(String commandName,
+                                 Command cmdAnnotation,
+                                 Map<String, OptionMetadata> options,
+                                 List<ParameterMetadata> parameters) {
         // FIX: Build help text properly without escaped newlines
         StringBuilder helpText = new StringBuilder();
         helpText.append(commandName).append(" - ").append(cmdAnnotation.description());
@@ -440,13 +2890,7 @@ public class CliAnnotationProcessor extends AbstractProcessor {
         }
 
         helpText.append("\n");
-
-        return MethodSpec.methodBuilder("getHelpText")
-                .addAnnotation(Override.class)
-                .addModifiers(Modifier.PUBLIC)
-                .returns(String.class)
-                .addStatement("return $S", helpText.toString())
-                .build();
+        return helpText.toString();
     }
 
     private String capitalizeFirst(String str) {
@@ -469,6 +2913,14 @@ public class CliAnnotationProcessor extends AbstractProcessor {
     static class OptionMetadata {
         Option annotation;
         VariableElement element;
+        /** Bit of this option in the generated {@code seen} mask, or -1 if it is in no group. */
+        int groupBit = -1;
+        /** Value type of a {@code Map<String, V>} option, or {@code null} for other options. */
+        TypeMirror mapValueType;
+        /** Generated unit scanner converting the value, {@code parseByteSize} or {@code parseDuration}, or {@code null}. */
+        String scanner;
+        /** Shared option handlers of the superclass declaring this option, or {@code null} if the parser handles it. */
+        ClassName handlers;
 
         OptionMetadata(Option annotation, VariableElement element) {
             this.annotation = annotation;
@@ -476,6 +2928,16 @@ public class CliAnnotationProcessor extends AbstractProcessor {
         }
     }
 
+    static class OptionGroupMetadata {
+        OptionGroup annotation;
+        long mask;
+
+        OptionGroupMetadata(OptionGroup annotation, long mask) {
+            this.annotation = annotation;
+            this.mask = mask;
+        }
+    }
+
     static class ParameterMetadata {
         Parameters annotation;
         VariableElement element;
@@ -0,0 +1,331 @@
+package com.github.asm0dey.cligen;
+
+import com.github.asm0dey.cligen.runtime.BinaryFormat;
+import com.github.asm0dey.cligen.runtime.CommandCodec;
+import com.squareup.javapoet.*;
+
+import javax.lang.model.element.*;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates a {@link CommandCodec} implementation for a command class or record.
+ * <p>
+ * Fields are written in declaration order after a header carrying a hash of the field
+ * names and types and the constants of enum fields, so a decoder built from a different version of the command rejects
+ * the input instead of misreading it. Options converted by a {@link com.github.asm0dey.cligen.runtime.ValueCodec}
+ * are written by an instance of their converter.
+ */
+final class CodecGenerator {
+    private static final Set<String> BOXED_TYPES = Set.of(
+            "java.lang.Boolean", "java.lang.Byte", "java.lang.Short", "java.lang.Character",
+            "java.lang.Integer", "java.lang.Long", "java.lang.Float", "java.lang.Double");
+
+    private final javax.lang.model.util.Types types;
+
+    CodecGenerator(javax.lang.model.util.Types types) {
+        this.types = types;
+    }
+
+    /**
+     * Find the first field whose type has no binary encoding, or {@code null} if all are supported.
+     *
+     * @param valueCodecs the converter of every field converted by a {@code ValueCodec}.
+     */
+    VariableElement findUnsupportedField(List<VariableElement> fields, Map<VariableElement, TypeMirror> valueCodecs) {
+        for (VariableElement field : fields) {
+            TypeMirror type = field.asType();
+            if (!type.getKind().isPrimitive() && !isString(type) && !isEnum(type) && !isBoxed(type)
+                    && !isDuration(type) && !isPath(type) && !isFile(type) && !isStringMap(type)
+                    && !valueCodecs.containsKey(field)) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    TypeSpec generate(TypeElement typeElement, String commandName, List<VariableElement> fields,
+                      Map<VariableElement, TypeMirror> valueCodecs) {
+        boolean isRecord = typeElement.getKind() == ElementKind.RECORD;
+        ClassName commandType = ClassName.get(typeElement);
+        String codecClassName = typeElement.getSimpleName() + "CommandCodec";
+
+        TypeSpec.Builder codec = TypeSpec.classBuilder(codecClassName)
+                .addModifiers(Modifier.PUBLIC)
+                .addSuperinterface(ParameterizedTypeName.get(ClassName.get(CommandCodec.class), commandType))
+                .addJavadoc("Generated binary codec for @Command: $L\n", commandName)
+                .addJavadoc("Generated at compile time - zero runtime reflection\n")
+                .addField(FieldSpec.builder(int.class, "SCHEMA_HASH",
+                                Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                        .initializer("0x$L", Integer.toHexString(schemaHash(fields)))
+                        .build());
+
+        CodeBlock.Builder encode = CodeBlock.builder()
+                .addStatement("$T.writeHeader(out, SCHEMA_HASH)", BinaryFormat.class);
+        CodeBlock.Builder decode = CodeBlock.builder()
+                .addStatement("$T.readHeader(in, SCHEMA_HASH, $S)", BinaryFormat.class, commandName);
+        if (!isRecord) {
+            decode.addStatement("$T command = new $T()", commandType, commandType);
+        }
+
+        for (VariableElement field : fields) {
+            String name = field.getSimpleName().toString();
+            TypeMirror type = field.asType();
+            String getter = isRecord ? "command." + name + "()" : "command." + name;
+
+            if (valueCodecs.containsKey(field)) {
+                String valueCodec = name.toUpperCase() + "_CODEC";
+                TypeName converterType = TypeName.get(valueCodecs.get(field));
+                codec.addField(FieldSpec.builder(converterType, valueCodec,
+                                Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                        .initializer("new $T()", converterType)
+                        .build());
+                String value = name + "Value";
+                encode.addStatement("$T $L = $L", TypeName.get(type), value, getter);
+                encode.addStatement("out.writeBoolean($L != null)", value);
+                encode.beginControlFlow("if ($L != null)", value);
+                encode.addStatement("$L.encode($L, out)", valueCodec, value);
+                encode.endControlFlow();
+                assign(decode, isRecord, type, name,
+                        CodeBlock.of("in.readBoolean() ? $L.decode(in) : null", valueCodec));
+            } else if (isEnum(type)) {
+                String constants = name.toUpperCase() + "_CONSTANTS";
+                TypeName enumType = TypeName.get(type);
+                codec.addField(FieldSpec.builder(ArrayTypeName.of(enumType), constants,
+                                Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                        .initializer("$T.values()", enumType)
+                        .build());
+                encode.addStatement("$T.writeEnum(out, $L)", BinaryFormat.class, getter);
+                assign(decode, isRecord, type, name, CodeBlock.of("$T.readEnum(in, $L)", BinaryFormat.class, constants));
+            } else if (isString(type)) {
+                encode.addStatement("$T.writeString(out, $L)", BinaryFormat.class, getter);
+                assign(decode, isRecord, type, name, CodeBlock.of("$T.readString(in)", BinaryFormat.class));
+            } else if (isPath(type) || isFile(type)) {
+                String path = name + "Path";
+                encode.addStatement("$T.writeString(out, $L == null ? null : $L.toString())",
+                        BinaryFormat.class, getter, getter);
+                decode.addStatement("$T $L = $T.readString(in)", String.class, path, BinaryFormat.class);
+                assign(decode, isRecord, type, name, isPath(type)
+                        ? CodeBlock.of("$L == null ? null : $T.of($L)", path, Path.class, path)
+                        : CodeBlock.of("$L == null ? null : new $T($L)", path, File.class, path));
+            } else if (isDuration(type)) {
+                String value = name + "Value";
+                encode.addStatement("$T $L = $L", Duration.class, value, getter);
+                encode.addStatement("out.writeBoolean($L != null)", value);
+                encode.beginControlFlow("if ($L != null)", value);
+                encode.addStatement("$T.writeSignedVarLong(out, $L.getSeconds())", BinaryFormat.class, value);
+                encode.addStatement("$T.writeVarLong(out, $L.getNano())", BinaryFormat.class, value);
+                encode.endControlFlow();
+                assign(decode, isRecord, type, name, CodeBlock.of(
+                        "in.readBoolean() ? $T.ofSeconds($T.readSignedVarLong(in), $T.readVarLong(in)) : null",
+                        Duration.class, BinaryFormat.class, BinaryFormat.class));
+            } else if (isStringMap(type)) {
+                encodeMap(encode, decode, name, (DeclaredType) type, getter);
+                assign(decode, isRecord, type, name, CodeBlock.of("$LEntries", name));
+            } else if (type.getKind().isPrimitive()) {
+                encode.add(writePrimitive(type.getKind(), getter));
+                assign(decode, isRecord, type, name, readPrimitive(type.getKind()));
+            } else {
+                TypeKind primitive = types.unboxedType(type).getKind();
+                String value = name + "Value";
+                encode.addStatement("$T $L = $L", TypeName.get(type), value, getter);
+                encode.addStatement("out.writeBoolean($L != null)", value);
+                encode.beginControlFlow("if ($L != null)", value);
+                encode.add(writePrimitive(primitive, value));
+                encode.endControlFlow();
+                assign(decode, isRecord, type, name,
+                        CodeBlock.of("in.readBoolean() ? $L : null", readPrimitive(primitive)));
+            }
+        }
+
+        if (isRecord) {
+            String argsList = String.join(", ", fields.stream().map(f -> f.getSimpleName().toString()).toList());
+            decode.addStatement("return new $T($L)", commandType, argsList);
+        } else {
+            decode.addStatement("return command");
+        }
+
+        return codec
+                .addMethod(MethodSpec.methodBuilder("encode")
+                        .addAnnotation(Override.class)
+                        .addModifiers(Modifier.PUBLIC)
+                        .addParameter(commandType, "command")
+                        .addParameter(DataOutput.class, "out")
+                        .addException(IOException.class)
+                        .addCode(encode.build())
+                        .build())
+                .addMethod(MethodSpec.methodBuilder("decode")
+                        .addAnnotation(Override.class)
+                        .addModifiers(Modifier.PUBLIC)
+                        .returns(commandType)
+                        .addParameter(DataInput.class, "in")
+                        .addException(IOException.class)
+                        .addCode(decode.build())
+                        .build())
+                .build();
+    }
+
+    /**
+     * Write a map as its size plus one, {@code null} as zero, followed by its entries in
+     * iteration order, and read it back into a {@link LinkedHashMap} named {@code <name>Entries}.
+     */
+    private void encodeMap(CodeBlock.Builder encode, CodeBlock.Builder decode, String name, DeclaredType type,
+                           String getter) {
+        TypeMirror valueType = type.getTypeArguments().get(1);
+        TypeName mapType = TypeName.get(type);
+        TypeName entryType = ParameterizedTypeName.get(ClassName.get(Map.Entry.class),
+                ClassName.get(String.class), TypeName.get(valueType));
+        String map = name + "Value";
+        String entry = name + "Entry";
+        encode.addStatement("$T $L = $L", mapType, map, getter);
+        encode.addStatement("$T.writeVarLong(out, $L == null ? 0 : $L.size() + 1L)", BinaryFormat.class, map, map);
+        encode.beginControlFlow("if ($L != null)", map);
+        encode.beginControlFlow("for ($T $L : $L.entrySet())", entryType, entry, map);
+        encode.addStatement("$T.writeString(out, $L.getKey())", BinaryFormat.class, entry);
+        if (isString(valueType)) {
+            encode.addStatement("$T.writeString(out, $L.getValue())", BinaryFormat.class, entry);
+        } else {
+            encode.addStatement("out.writeBoolean($L.getValue() != null)", entry);
+            encode.beginControlFlow("if ($L.getValue() != null)", entry);
+            encode.add(writePrimitive(types.unboxedType(valueType).getKind(), entry + ".getValue()"));
+            encode.endControlFlow();
+        }
+        encode.endControlFlow();
+        encode.endControlFlow();
+
+        String entries = name + "Entries";
+        String size = name + "Size";
+        String index = name + "Index";
+        decode.addStatement("long $L = $T.readVarLong(in)", size, BinaryFormat.class);
+        decode.addStatement("$T $L = null", mapType, entries);
+        decode.beginControlFlow("if ($L != 0)", size);
+        decode.addStatement("$L = new $T<>()", entries, LinkedHashMap.class);
+        decode.beginControlFlow("for (long $L = 1; $L < $L; $L++)", index, index, size, index);
+        decode.addStatement("$L.put($T.readString(in), $L)", entries, BinaryFormat.class, isString(valueType)
+                ? CodeBlock.of("$T.readString(in)", BinaryFormat.class)
+                : CodeBlock.of("in.readBoolean() ? $L : null", readPrimitive(types.unboxedType(valueType).getKind())));
+        decode.endControlFlow();
+        decode.endControlFlow();
+    }
+
+    private static void assign(CodeBlock.Builder decode, boolean isRecord, TypeMirror type, String name, CodeBlock value) {
+        if (isRecord) {
+            decode.addStatement("$T $L = $L", TypeName.get(type), name, value);
+        } else {
+            decode.addStatement("command.$L = $L", name, value);
+        }
+    }
+
+    private static CodeBlock writePrimitive(TypeKind kind, String value) {
+        switch (kind) {
+            case BOOLEAN:
+                return CodeBlock.builder().addStatement("out.writeBoolean($L)", value).build();
+            case FLOAT:
+                return CodeBlock.builder().addStatement("out.writeFloat($L)", value).build();
+            case DOUBLE:
+                return CodeBlock.builder().addStatement("out.writeDouble($L)", value).build();
+            case CHAR:
+                return CodeBlock.builder().addStatement("$T.writeVarLong(out, $L)", BinaryFormat.class, value).build();
+            default:
+                return CodeBlock.builder().addStatement("$T.writeSignedVarLong(out, $L)", BinaryFormat.class, value).build();
+        }
+    }
+
+    private static CodeBlock readPrimitive(TypeKind kind) {
+        switch (kind) {
+            case BOOLEAN:
+                return CodeBlock.of("in.readBoolean()");
+            case FLOAT:
+                return CodeBlock.of("in.readFloat()");
+            case DOUBLE:
+                return CodeBlock.of("in.readDouble()");
+            case CHAR:
+                return CodeBlock.of("(char) $T.readVarLong(in)", BinaryFormat.class);
+            case BYTE:
+                return CodeBlock.of("(byte) $T.readSignedVarInt(in)", BinaryFormat.class);
+            case SHORT:
+                return CodeBlock.of("(short) $T.readSignedVarInt(in)", BinaryFormat.class);
+            case INT:
+                return CodeBlock.of("$T.readSignedVarInt(in)", BinaryFormat.class);
+            default:
+                return CodeBlock.of("$T.readSignedVarLong(in)", BinaryFormat.class);
+        }
+    }
+
+    /**
+     * FNV-1a hash of the field names and types in declaration order. Enums are written by
+     * ordinal, so their constants are part of the schema too.
+     */
+    private static int schemaHash(List<VariableElement> fields) {
+        StringBuilder schema = new StringBuilder();
+        for (VariableElement field : fields) {
+            schema.append(field.getSimpleName()).append(':').append(field.asType());
+            if (isEnum(field.asType())) {
+                schema.append('{');
+                for (Element constant : ((DeclaredType) field.asType()).asElement().getEnclosedElements()) {
+                    if (constant.getKind() == ElementKind.ENUM_CONSTANT) {
+                        schema.append(constant.getSimpleName()).append(',');
+                    }
+                }
+                schema.append('}');
+            }
+            schema.append(';');
+        }
+        int hash = 0x811C9DC5;
+        for (byte b : schema.toString().getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= 0x01000193;
+        }
+        return hash;
+    }
+
+    private static boolean isString(TypeMirror type) {
+        return type.toString().equals("java.lang.String");
+    }
+
+    private static boolean isBoxed(TypeMirror type) {
+        return BOXED_TYPES.contains(type.toString());
+    }
+
+    private static boolean isDuration(TypeMirror type) {
+        return type.toString().equals("java.time.Duration");
+    }
+
+    private static boolean isPath(TypeMirror type) {
+        return type.toString().equals("java.nio.file.Path");
+    }
+
+    private static boolean isFile(TypeMirror type) {
+        return type.toString().equals("java.io.File");
+    }
+
+    /**
+     * Whether {@code type} is a {@code Map<String, V>} with {@code V} a {@code String} or boxed primitive.
+     */
+    private static boolean isStringMap(TypeMirror type) {
+        if (type.getKind() != TypeKind.DECLARED || !((TypeElement) ((DeclaredType) type).asElement())
+                .getQualifiedName().contentEquals("java.util.Map")) {
+            return false;
+        }
+        List<? extends TypeMirror> arguments = ((DeclaredType) type).getTypeArguments();
+        return arguments.size() == 2 && isString(arguments.get(0))
+                && (isString(arguments.get(1)) || isBoxed(arguments.get(1)));
+    }
+
+    private static boolean isEnum(TypeMirror type) {
+        return type.getKind() == TypeKind.DECLARED
+                && ((DeclaredType) type).asElement().getKind() == ElementKind.ENUM;
+    }
+}
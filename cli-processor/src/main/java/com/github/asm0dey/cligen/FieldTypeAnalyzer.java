@@ -15,28 +15,77 @@ public class FieldTypeAnalyzer {
     }
     
     public static String getConversionCode(String target, String varName, String argValue, TypeMirror type) {
-        TypeKind kind = type.getKind();
         String prefix = (target == null || target.isEmpty()) ? "" : target + ".";
-        
-        switch (kind) {
+        return String.format("%s%s = %s", prefix, varName, getConversionExpression(argValue, type));
+    }
+
+    public static String getConversionCode(String varName, String argValue, TypeMirror type) {
+        return getConversionCode("instance", varName, argValue, type);
+    }
+
+    /**
+     * Expression converting the string {@code argValue} to {@code type}, a primitive, its
+     * wrapper, {@code String}, {@code Path} or {@code File}. Wrappers are produced by
+     * autoboxing the primitive result.
+     */
+    public static String getConversionExpression(String argValue, TypeMirror type) {
+        switch (valueKind(type)) {
             case INT:
-                return String.format("%s%s = Integer.parseInt(%s)", prefix, varName, argValue);
+                return String.format("Integer.parseInt(%s)", argValue);
             case LONG:
-                return String.format("%s%s = Long.parseLong(%s)", prefix, varName, argValue);
+                return String.format("Long.parseLong(%s)", argValue);
             case BOOLEAN:
-                return String.format("%s%s = Boolean.parseBoolean(%s)", prefix, varName, argValue);
+                return String.format("Boolean.parseBoolean(%s)", argValue);
             case DOUBLE:
-                return String.format("%s%s = Double.parseDouble(%s)", prefix, varName, argValue);
+                return String.format("Double.parseDouble(%s)", argValue);
             case FLOAT:
-                return String.format("%s%s = Float.parseFloat(%s)", prefix, varName, argValue);
+                return String.format("Float.parseFloat(%s)", argValue);
             default:
-                // Default to String assignment
-                return String.format("%s%s = %s", prefix, varName, argValue);
+                switch (type.toString()) {
+                    case "java.nio.file.Path":
+                        return String.format("java.nio.file.Path.of(%s)", argValue);
+                    case "java.io.File":
+                        return String.format("new java.io.File(%s)", argValue);
+                    default:
+                        // Default to String assignment
+                        return argValue;
+                }
         }
     }
 
-    public static String getConversionCode(String varName, String argValue, TypeMirror type) {
-        return getConversionCode("instance", varName, argValue, type);
+    /**
+     * Whether {@link #getConversionExpression} converts to {@code type} rather than assigning the string.
+     */
+    public static boolean isConvertible(TypeMirror type) {
+        switch (valueKind(type)) {
+            case INT:
+            case LONG:
+            case BOOLEAN:
+            case DOUBLE:
+            case FLOAT:
+                return true;
+            default:
+                return type.toString().equals("java.lang.String");
+        }
     }
 
+    private static TypeKind valueKind(TypeMirror type) {
+        if (type.getKind().isPrimitive()) {
+            return type.getKind();
+        }
+        switch (type.toString()) {
+            case "java.lang.Integer":
+                return TypeKind.INT;
+            case "java.lang.Long":
+                return TypeKind.LONG;
+            case "java.lang.Boolean":
+                return TypeKind.BOOLEAN;
+            case "java.lang.Double":
+                return TypeKind.DOUBLE;
+            case "java.lang.Float":
+                return TypeKind.FLOAT;
+            default:
+                return TypeKind.DECLARED;
+        }
+    }
 }
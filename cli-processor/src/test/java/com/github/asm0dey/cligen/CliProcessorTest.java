@@ -1,14 +1,57 @@
 package com.github.asm0dey.cligen;
 
+import com.github.asm0dey.cligen.runtime.CommandCodec;
+import com.github.asm0dey.cligen.runtime.CommandDispatcher;
+import com.github.asm0dey.cligen.runtime.CommandIndex;
+import com.github.asm0dey.cligen.runtime.CommandMetrics;
+import com.github.asm0dey.cligen.runtime.CommandModel;
+import com.github.asm0dey.cligen.runtime.CommandParser;
+import com.github.asm0dey.cligen.runtime.CommandPipeline;
+import com.github.asm0dey.cligen.runtime.ConfigWatcher;
+import com.github.asm0dey.cligen.runtime.ConverterCache;
+import com.github.asm0dey.cligen.runtime.Fingerprint;
+import com.github.asm0dey.cligen.runtime.LatencyHistogram;
+import com.github.asm0dey.cligen.runtime.OptionChange;
+import com.github.asm0dey.cligen.runtime.OptionModel;
+import com.github.asm0dey.cligen.runtime.ParameterModel;
+import com.github.asm0dey.cligen.runtime.ParseException;
+import com.github.asm0dey.cligen.runtime.ParseResult;
+import com.github.asm0dey.cligen.runtime.ParseTrace;
+import com.github.asm0dey.cligen.runtime.ResultCache;
+import com.github.asm0dey.cligen.runtime.ReusableParseResult;
+import com.github.asm0dey.cligen.runtime.SuggestionIndex;
+import com.github.asm0dey.cligen.runtime.TableParser;
 import com.google.common.truth.StringSubject;
 import com.google.testing.compile.Compilation;
 import com.google.testing.compile.Compiler;
 import com.google.testing.compile.JavaFileObjects;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import static com.google.testing.compile.CompilationSubject.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class CliProcessorTest {
 
@@ -378,4 +421,2093 @@ public class CliProcessorTest {
         generated.contains("new RecordCmd(verbose, name, firstParam)");
         generated.contains("firstParam = arg");
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testGeneratesInstrumentationHooks() {
+        JavaFileObject converter = JavaFileObjects.forSourceString(
+                "com.github.asm0dey.UpperConverter",
+                "package com.github.asm0dey;\n"
+                        + "import com.github.asm0dey.cligen.runtime.Converter;\n"
+                        + "public class UpperConverter implements Converter<String> {\n"
+                        + "    @Override\n"
+                        + "    public String convert(String s) {\n"
+                        + "        return s.toUpperCase();\n"
+                        + "    }\n"
+                        + "}\n"
+        );
+
+        JavaFileObject source = JavaFileObjects.forSourceString(
+                "com.github.asm0dey.TracedCmd",
+                "package com.github.asm0dey;\n"
+                        + "import com.github.asm0dey.cligen.runtime.*;\n"
+                        + "@Command(name = \"traced\")\n"
+                        + "public class TracedCmd {\n"
+                        + "    @Option(names = {\"-n\", \"--name\"}, converter = UpperConverter.class)\n"
+                        + "    public String name;\n"
+                        + "}\n"
+        );
+
+        Compilation compilation = Compiler.javac()
+                .withProcessors(new CliAnnotationProcessor())
+                .compile(source, converter);
+
+        assertThat(compilation).succeeded();
+
+        StringSubject generated = assertThat(compilation)
+                .generatedSourceFile("com.github.asm0dey.TracedCmdCommandParser")
+                .contentsAsUtf8String();
+
+        generated.contains("ParseTrace trace = ParseTrace.begin(\"traced\", args.length - fromIndex)");
+        generated.contains("if (trace == null)");
+        generated.contains("private ParseResult<TracedCmd> parse(String[] args, int fromIndex, ParseTrace trace,\n      TracedCmd base, TracedCmd target, ReusableParseResult<TracedCmd> result)");
+        generated.contains("trace.conversionStarted(\"-n\", \"com.github.asm0dey.UpperConverter\")");
+        generated.contains("trace.conversionFailed(e)");
+        generated.contains("trace.validationStarted()");
+    }
+
+    @Test
+    public void testReportsParseActivityToListener() throws Exception {
+        JavaFileObject converter = JavaFileObjects.forSourceString("com.github.asm0dey.StrictUpperConverter",
+                "package com.github.asm0dey;\n"
+                        + "import com.github.asm0dey.cligen.runtime.Converter;\n"
+                        + "public class StrictUpperConverter implements Converter<String> {\n"
+                        + "    @Override\n"
+                        + "    public String convert(String s) {\n"
+                        + "        if (s.equals(\"bad\")) throw new IllegalArgumentException(\"bad value\");\n"
+                        + "        return s.toUpperCase();\n"
+                        + "    }\n"
+                        + "}\n");
+        JavaFileObject source = JavaFileObjects.forSourceString("com.github.asm0dey.ListenedCmd",
+                "package com.github.asm0dey;\n"
+                        + "import com.github.asm0dey.cligen.runtime.*;\n"
+                        + "@Command(name = \"listened\")\n"
+                        + "public class ListenedCmd {\n"
+                        + "    @Option(names = {\"-n\", \"--name\"}, converter = StrictUpperConverter.class) public String name;\n"
+                        + "    @Option(names = {\"--id\"}, required = true) public String id;\n"
+                        + "}\n");
+        CommandParser<Object> parser = GeneratedClasses.compile(source, converter)
+                .newInstance("com.github.asm0dey.ListenedCmdCommandParser");
+        CommandDispatcher dispatcher = new CommandDispatcher("app", "1.0");
+        dispatcher.register("listened", parser);
+
+        List<String> events = new CopyOnWriteArrayList<>();
+        ParseTrace.setListener(new com.github.asm0dey.cligen.runtime.ParseListener() {
+            @Override
+            public void parseStarted(String command, int tokenCount) {
+                events.add("started " + command + " " + tokenCount);
+            }
+
+            @Override
+            public void conversionFinished(String command, String option, String converterClass,
+                                           long durationNanos, Exception failure) {
+                assertTrue(durationNanos >= 0);
+                events.add("converted " + command + " " + option + " " + converterClass + " " + failure);
+            }
+
+            @Override
+            public void parseFinished(String command, int tokenCount, long durationNanos,
+                                      long validationNanos, Exception failure) {
+                assertTrue(validationNanos >= 0 && validationNanos <= durationNanos);
+                events.add("finished " + command + " " + tokenCount
+                        + (failure == null ? "" : " " + failure.getMessage()));
+            }
+
+            @Override
+            public void dispatchFinished(String command, int tokenCount, long durationNanos, Exception failure) {
+                events.add("dispatched " + command + " " + tokenCount
+                        + (failure == null ? "" : " " + failure.getMessage()));
+            }
+        });
+        try {
+            parser.parse(new String[]{"-n", "x", "--id", "1"});
+            assertEquals(List.of(
+                    "started listened 4",
+                    "converted listened -n com.github.asm0dey.StrictUpperConverter null",
+                    "finished listened 4"), events);
+
+            events.clear();
+            assertThrows(ParseException.class, () -> parser.parse(new String[]{"-n", "bad", "--id", "1"}));
+            assertEquals(List.of(
+                    "started listened 4",
+                    "converted listened -n com.github.asm0dey.StrictUpperConverter "
+                            + "java.lang.IllegalArgumentException: bad value",
+                    "finished listened 4 Failed to convert option -n: bad value"), events);
+
+            events.clear();
+            assertThrows(ParseException.class, () -> parser.parse(new String[]{"-n", "x"}));
+            assertEquals(List.of(
+                    "started listened 2",
+                    "converted listened -n com.github.asm0dey.StrictUpperConverter null",
+                    "finished listened 2 Required option not provided: --id"), events);
+
+            events.clear();
+            dispatcher.dispatch(new String[]{"listened", "--id", "1"});
+            assertThrows(ParseException.class, () -> dispatcher.dispatch(new String[]{"listend"}));
+            assertEquals(List.of(
+                    "started listened 2",
+                    "finished listened 2",
+                    "dispatched listened 3",
+                    "dispatched listend 1 Unknown command: listend. Did you mean listened? "
+                            + "Use --help for available commands."), events);
+
+            ParseTrace.setListener(null);
+            events.clear();
+            parser.parse(new String[]{"--id", "1"});
+            assertEquals(List.of(), events);
+        } finally {
+            ParseTrace.setListener(null);
+        }
+    }
+
+    @Test
+    public void testSuggestsClosestOptionForUnknownOption() throws Exception {
+        JavaFileObject source = JavaFileObjects.forSourceString(
+                "com.github.asm0dey.SuggestCmd",
+                "package com.github.asm0dey;\n"
+                        + "import com.github.asm0dey.cligen.runtime.*;\n"
+                        + "@Command(name = \"suggest\")\n"
+                        + "public class SuggestCmd {\n"
+                        + "    @Option(names = {\"-p\", \"--port\"})\n"
+                        + "    public int port;\n"
+                        + "    @Option(names = {\"--password\"})\n"
+                        + "    public String password;\n"
+                        + "    @Option(names = {\"--dry-run\"}, arity = \"0\")\n"
+                        + "    public boolean dryRun;\n"
+                        + "}\n"
+        );
+
+        Compilation compilation = Compiler.javac()
+                .withProcessors(new CliAnnotationProcessor())
+                .compile(source);
+
+        assertThat(compilation).succeeded();
+        assertThat(compilation)
+                .generatedSourceFile("com.github.asm0dey.SuggestCmdCommandParser")
+                .contentsAsUtf8String()
+                .contains("new SuggestionIndex(new String[] {\"-p\", \"--port\", \"--dry-run\", \"--password\"}");
+
+        CommandParser<?> parser = GeneratedClasses.compile(source)
+                .newInstance("com.github.asm0dey.SuggestCmdCommandParser");
+        assertEquals("Unknown option: --prot. Did you mean --port?",
+                assertThrows(ParseException.class, () -> parser.parse(new String[]{"--prot", "1"})).getMessage());
+        assertEquals("Unknown option: --dryrun. Did you mean --dry-run?",
+                assertThrows(ParseException.class, () -> parser.parse(new String[]{"--dryrun"})).getMessage());
+        assertEquals("Unknown option: --verbose",
+                assertThrows(ParseException.class, () -> parser.parse(new String[]{"--verbose"})).getMessage());
+    }
+
+    @Test
+    public void testDispatcherSuggestsClosestCommand() {
+        CommandDispatcher dispatcher = new CommandDispatcher("app", "1.0");
+        CommandParser<Object> parser = new CommandParser<>() {
+            @Override
+            public ParseResult<Object> parse(String[] args) {
+                return new ParseResult<>(new Object(), List.of());
+            }
+
+            @Override
+            public String getHelpText() {
+                return "";
+            }
+        };
+        dispatcher.register("migrate", parser);
+        dispatcher.register("status", parser);
+
+        assertEquals("Unknown command: mirgate. Did you mean migrate? Use --help for available commands.",
+                assertThrows(ParseException.class, () -> dispatcher.dispatch(new String[]{"mirgate"})).getMessage());
+        assertEquals("Unknown command: deploy. Use --help for available commands.",
+                assertThrows(ParseException.class, () -> dispatcher.dispatch(new String[]{"deploy"})).getMessage());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testGeneratesBinaryCodecForClassCommand() throws Exception {
+        JavaFileObject source = JavaFileObjects.forSourceString(
+                "com.github.asm0dey.CodecCmd",
+                "package com.github.asm0dey;\n"
+                        + "import com.github.asm0dey.cligen.runtime.*;\n"
+                        + "@Command(name = \"codec\")\n"
+                        + "public class CodecCmd {\n"
+                        + "    @Option(names = {\"-p\"}) public int port = 8080;\n"
+                        + "    @Option(names = {\"-l\"}) public long limit;\n"
+                        + "    @Option(names = {\"-r\"}) public double ratio;\n"
+                        + "    @Option(names = {\"-d\"}, arity = \"0\") public boolean debug;\n"
+                        + "    @Option(names = {\"-n\"}) public String name;\n"
+                        + "    @Parameters(index = 0) public String target;\n"
+                        + "}\n"
+        );
+
+        Compilation compilation = Compiler.javac()
+                .withProcessors(new CliAnnotationProcessor())
+                .compile(source);
+        assertThat(compilation).succeeded();
+        assertThat(compilation)
+                .generatedSourceFile("com.github.asm0dey.CodecCmdCommandCodec")
+                .contentsAsUtf8String()
+                .contains("implements CommandCodec<CodecCmd>");
+
+        GeneratedClasses classes = GeneratedClasses.compile(source);
+        Class<?> commandClass = classes.loadClass("com.github.asm0dey.CodecCmd");
+        Object command = commandClass.getConstructor().newInstance();
+        commandClass.getField("port").set(command, -3);
+        commandClass.getField("limit").set(command, Long.MAX_VALUE);
+        commandClass.getField("ratio").set(command, 0.25);
+        commandClass.getField("debug").set(command, true);
+        commandClass.getField("target").set(command, "ünïcode");
+
+        CommandCodec<Object> codec = classes.newInstance("com.github.asm0dey.CodecCmdCommandCodec");
+        byte[] bytes = codec.toBytes(command);
+        Object decoded = codec.fromBytes(bytes);
+
+        for (String field : List.of("port", "limit", "ratio", "debug", "name", "target")) {
+            assertEquals(commandClass.getField(field).get(command), commandClass.getField(field).get(decoded), field);
+        }
+        // header 6, port 1, limit 10, ratio 8, debug 1, name 1, target 1 + 9
+        assertEquals(37, bytes.length);
+
+        bytes[2] ^= 1;
+        assertThrows(IOException.class, () -> codec.fromBytes(bytes));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testGeneratesBinaryCodecForRecordCommand() throws Exception {
+        JavaFileObject source = JavaFileObjects.forSourceString(
+                "com.github.asm0dey.CodecRecord",
+                "package com.github.asm0dey;\n"
+                        + "import com.github.asm0dey.cligen.runtime.*;\n"
+                        + "@Command(name = \"codec-record\")\n"
+                        + "public record CodecRecord(\n"
+                        + "    @Option(names = {\"-p\"}) int port,\n"
+                        + "    @Option(names = {\"-h\"}) String host,\n"
+                        + "    @Parameters(index = 0) String root,\n"
+                        + "    Integer retries,\n"
+                        + "    Mode mode\n"
+                        + ") {\n"
+                        + "    public enum Mode { FAST, SAFE }\n"
+                        + "}\n"
+        );
+
+        GeneratedClasses classes = GeneratedClasses.compile(source);
+        CommandParser<Object> parser = classes.newInstance("com.github.asm0dey.CodecRecordCommandParser");
+        CommandCodec<Object> codec = classes.newInstance("com.github.asm0dey.CodecRecordCommandCodec");
+
+        Object command = parser.parse(new String[]{"-p", "9000", "/srv"}).getCommand();
+        assertEquals(command, codec.fromBytes(codec.toBytes(command)));
+
+        Class<?> recordClass = classes.loadClass("com.github.asm0dey.CodecRecord");
+        Class<?> modeClass = classes.loadClass("com.github.asm0dey.CodecRecord$Mode");
+        Object full = recordClass.getDeclaredConstructors()[0]
+                .newInstance(-1, null, "/data", 3, modeClass.getEnumConstants()[1]);
+        assertEquals(full, codec.fromBytes(codec.toBytes(full)));
+
+        // Reordering the constants changes the ordinals, so old data must be rejected
+        GeneratedClasses reordered = GeneratedClasses.compile(JavaFileObjects.forSourceString(
+                "com.github.asm0dey.CodecRecord",
+                "package com.github.asm0dey;\n"
+                        + "import com.github.asm0dey.cligen.runtime.*;\n"
+                        + "@Command(name = \"codec-record\")\n"
+                        + "public record CodecRecord(\n"
+                        + "    @Option(names = {\"-p\"}) int port,\n"
+                        + "    @Option(names = {\"-h\"}) String host,\n"
+                        + "    @Parameters(index = 0) String root,\n"
+                        + "    Integer retries,\n"
+                        + "    Mode mode\n"
+                        + ") {\n"
+                        + "    public enum Mode { SAFE, FAST }\n"
+                        + "}\n"));
+        CommandCodec<Object> reorderedCodec = reordered.newInstance("com.github.asm0dey.CodecRecordCommandCodec");
+        assertThrows(IOException.class, () -> reorderedCodec.fromBytes(codec.toBytes(full)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testEncodesDurationPathFileAndMapFields() throws Exception {
+        JavaFileObject source = JavaFileObjects.forSourceString(
+                "com.github.asm0dey.DeployCodecCmd",
+                "package com.github.asm0dey;\n"
+                        + "import com.github.asm0dey.cligen.runtime.*;\n"
+                        + "@Command(name = \"deploy\")\n"
+                        + "public class DeployCodecCmd {\n"
+                        + "    @Option(names = {\"--timeout\"}) @CompactDuration public java.time.Duration timeout;\n"
+                        + "    @Option(names = {\"--root\"}) public java.nio.file.Path root;\n"
+                        + "    @Option(names = {\"--log\"}) public java.io.File log;\n"
+                        + "    @Option(names = {\"-D\"}) public java.util.Map<String, String> properties;\n"
+                        + "    @Option(names = {\"-W\"}) public java.util.Map<String, Integer> weights;\n"
+                        + "}\n"
+        );
+
+        Compilation compilation = Compiler.javac()
+                .withProcessors(new CliAnnotationProcessor())
+                .compile(source);
+        assertThat(compilation).succeeded();
+        assertTrue(compilation.notes().stream().noneMatch(note -> note.getMessage(null).contains("Skipping")));
+
+        GeneratedClasses classes = GeneratedClasses.compile(source);
+        CommandParser<Object> parser = classes.newInstance("com.github.asm0dey.DeployCodecCmdCommandParser");
+        CommandCodec<Object> codec = classes.newInstance("com.github.asm0dey.DeployCodecCmdCommandCodec");
+        Class<?> commandClass = classes.loadClass("com.github.asm0dey.DeployCodecCmd");
+        List<String> fields = List.of("timeout", "root", "log", "properties", "weights");
+
+        Object command = parser.parse(new String[]{"--timeout", "1m30s", "--root", "/srv/app", "--log", "app.log",
+                "-Dregion=eu", "-Dtier=", "-Wa=1", "-Wb=-2"}).getCommand();
+        Object decoded = codec.fromBytes(codec.toBytes(command));
+        for (String field : fields) {
+            assertEquals(commandClass.getField(field).get(command), commandClass.getField(field).get(decoded), field);
+        }
+        assertEquals(List.of("region", "tier"),
+                List.copyOf(((Map<String, String>) commandClass.getField("properties").get(decoded)).keySet()));
+
+        Object empty = parser.parse(new String[0]).getCommand();
+        commandClass.getField("timeout").set(empty, Duration.ofSeconds(-5, 7));
+        Object decodedEmpty = codec.fromBytes(codec.toBytes(empty));
+        for (String field : fields) {
+            assertEquals(commandClass.getField(field).get(empty), commandClass.getField(field).get(decodedEmpty), field);
+        }
+    }
+
+    @Test
+    public void testSkipsBinaryCodecForUnsupportedFieldTypes() {
+        JavaFileObject converter = JavaFileObjects.forSourceString(
+                "com.github.asm0dey.UriConverter",
+                "package com.github.asm0dey;\n"
+                        + "import com.github.asm0dey.cligen.runtime.Converter;\n"
+                        + "public class UriConverter implements Converter<java.net.URI> {\n"
+                        + "    @Override\n"
+                        + "    public java.net.URI convert(String s) {\n"
+                        + "        return java.net.URI.create(s);\n"
+                        + "    }\n"
+                        + "}\n"
+        );
+        JavaFileObject source = JavaFileObjects.forSourceString(
+                "com.github.asm0dey.UriCmd",
+                "package com.github.asm0dey;\n"
+                        + "import com.github.asm0dey.cligen.runtime.*;\n"
+                        + "@Command(name = \"uri\")\n"
+                        + "public class UriCmd {\n"
+                        + "    @Option(names = {\"-u\"}, converter = UriConverter.class) public java.net.URI uri;\n"
+                        + "}\n"
+        );
+
+        Compilation compilation = Compiler.javac()
+                .withProcessors(new CliAnnotationProcessor())
+                .compile(source, converter);
+
+        // Commands that are never forwarded must still compile warning-free
+        assertThat(compilation).succeeded();
+        assertThat(compilation).hadNoteContaining("Skipping binary codec for UriCmd: field uri has type java.net.URI"
+                + " which has no binary encoding; implement ValueCodec in its converter to encode it");
+        assertEquals(List.of(), compilation.warnings());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testEncodesConvertedFieldsThroughValueCodec() throws Exception {
+        JavaFileObject converter = JavaFileObjects.forSourceString(
+                "com.github.asm0dey.FileCodecConverter",
+                "package com.github.asm0dey;\n"
+                        + "import com.github.asm0dey.cligen.runtime.*;\n"
+                        + "public class FileCodecConverter implements Converter<java.io.File>, ValueCodec<java.io.File> {\n"
+                        + "    public static int conversions;\n"
+                        + "    @Override\n"
+                        + "    public java.io.File convert(String s) {\n"
+                        + "        conversions++;\n"
+                        + "        return new java.io.File(s);\n"
+                        + "    }\n"
+                        + "    @Override\n"
+                        + "    public void encode(java.io.File file, java.io.DataOutput out) throws java.io.IOException {\n"
+                        + "        BinaryFormat.writeString(out, file.getPath());\n"
+                        + "    }\n"
+                        + "    @Override\n"
+                        + "    public java.io.File decode(java.io.DataInput in) throws java.io.IOException {\n"
+                        + "        return new java.io.File(BinaryFormat.readString(in));\n"
+                        + "    }\n"
+                        + "}\n"
+        );
+        JavaFileObject source = JavaFileObjects.forSourceString(
+                "com.github.asm0dey.FileCodecCmd",
+                "package com.github.asm0dey;\n"
+                        + "import com.github.asm0dey.cligen.runtime.*;\n"
+                        + "@Command(name = \"file-codec\")\n"
+                        + "public class FileCodecCmd {\n"
+                        + "    @Option(names = {\"-f\"}, converter = FileCodecConverter.class) public java.io.File file;\n"
+                        + "    @Option(names = {\"-b\"}, converter = FileCodecConverter.class) public java.io.File backup;\n"
+                        + "    @Option(names = {\"-p\"}) public int port;\n"
+                        + "}\n"
+        );
+
+        GeneratedClasses classes = GeneratedClasses.compile(source, converter);
+        CommandParser<Object> parser = classes.newInstance("com.github.asm0dey.FileCodecCmdCommandParser");
+        CommandCodec<Object> codec = classes.newInstance("com.github.asm0dey.FileCodecCmdCommandCodec");
+        Class<?> commandClass = classes.loadClass("com.github.asm0dey.FileCodecCmd");
+        Class<?> converterClass = classes.loadClass("com.github.asm0dey.FileCodecConverter");
+
+        Object command = parser.parse(new String[]{"-f", "/etc/app.yaml", "-p", "7"}).getCommand();
+        int conversions = converterClass.getField("conversions").getInt(null);
+        Object decoded = codec.fromBytes(codec.toBytes(command));
+
+        assertEquals(new java.io.File("/etc/app.yaml"), commandClass.getField("file").get(decoded));
+        assertNull(commandClass.getField("backup").get(decoded));
+        assertEquals(7, commandClass.getField("port").get(decoded));
+        assertEquals(conversions, converterClass.getField("conversions").getInt(null));
+    }
+
+    @Test
+    public void testCachesConverterResults() throws Exception {
+        JavaFileObject converter = JavaFileObjects.forSourceString(
+                "com.github.asm0dey.CountingConverter",
+                "package com.github.asm0dey;\n"
+                        + "import com.github.asm0dey.cligen.runtime.Converter;\n"
+                        + "public class CountingConverter implements Converter<Integer> {\n"
+                        + "    public static int calls;\n"
+                        + "    @Override\n"
+                        + "    public Integer convert(String s) {\n"
+                        + "        calls++;\n"
+                        + "        return s.length();\n"
+                        + "    }\n"
+                        + "}\n"
+        );
+        JavaFileObject source = JavaFileObjects.forSourceString(
+                "com.github.asm0dey.CachedCmd",
+                "package com.github.asm0dey;\n"
+                        + "import com.github.asm0dey.cligen.runtime.*;\n"
+                        + "@Command(name = \"cached\")\n"
+                        + "public class CachedCmd {\n"
+                        + "    @Option(names = {\"--host\"}, converter = CountingConverter.class, converterCacheSize = 64)\n"
+                        + "    public Integer hostLength;\n"
+                        + "    @Option(names = {\"--zone\"}, converter = CountingConverter.class, converterCacheSize = 16)\n"
+                        + "    public Integer zoneLength;\n"
+                        + "}\n"
+        );
+
+        Compilation compilation = Compiler.javac()
+                .withProcessors(new CliAnnotationProcessor())
+                .compile(source, converter);
+        assertThat(compilation).succeeded();
+        assertThat(compilation)
+                .generatedSourceFile("com.github.asm0dey.CachedCmdCommandParser")
+                .contentsAsUtf8String()
+                .contains("HOST_LENGTH_CONVERTER_CACHE.convert(args[idx + 1])");
+
+        GeneratedClasses classes = GeneratedClasses.compile(source, converter);
+        CommandParser<Object> parser = classes.newInstance("com.github.asm0dey.CachedCmdCommandParser");
+        Class<?> commandClass = classes.loadClass("com.github.asm0dey.CachedCmd");
+        for (int i = 0; i < 10; i++) {
+            Object command = parser.parse(new String[]{"--host", i % 2 == 0 ? "db1" : "replica"}).getCommand();
+            assertEquals(i % 2 == 0 ? 3 : 7, commandClass.getField("hostLength").get(command));
+        }
+        Class<?> converterClass = classes.loadClass("com.github.asm0dey.CountingConverter");
+        assertEquals(2, converterClass.getField("calls").get(null));
+
+        ConverterCache.Stats stats = ConverterCache.sharedStats(converterClass).get(64);
+        assertEquals("com.github.asm0dey.CountingConverter", stats.converter());
+        assertEquals(8, stats.hits());
+        assertEquals(2, stats.misses());
+        assertEquals(2, stats.size());
+        assertEquals(64, stats.maximumSize());
+
+        parser.parse(new String[]{"--zone", "eu"});
+        ConverterCache.Stats zoneStats = ConverterCache.sharedStats(converterClass).get(16);
+        assertEquals(16, zoneStats.maximumSize());
+        assertEquals(1, zoneStats.misses());
+        assertEquals(2, ConverterCache.sharedStats(converterClass).get(64).size());
+        assertTrue(ConverterCache.sharedStats().contains(ConverterCache.sharedStats(converterClass).get(64)));
+
+        // A converter of the same name from another class loader, as in another plugin jar, has its own cache
+        JavaFileObject otherConverter = JavaFileObjects.forSourceString(
+                "com.github.asm0dey.CountingConverter",
+                "package com.github.asm0dey;\n"
+                        + "import com.github.asm0dey.cligen.runtime.Converter;\n"
+                        + "public class CountingConverter implements Converter<Integer> {\n"
+                        + "    @Override\n"
+                        + "    public Integer convert(String s) {\n"
+                        + "        return -s.length();\n"
+                        + "    }\n"
+                        + "}\n"
+        );
+        GeneratedClasses other = GeneratedClasses.compile(source, otherConverter);
+        CommandParser<Object> otherParser = other.newInstance("com.github.asm0dey.CachedCmdCommandParser");
+        Object command = otherParser.parse(new String[]{"--host", "db1"}).getCommand();
+        assertEquals(-3, command.getClass().getField("hostLength").get(command));
+    }
+
+    @Test
+    public void testConverterCacheEvictsOneOffValuesFirst() throws Exception {
+        ConverterCache<String> cache = new ConverterCache<>("upper", String::toUpperCase, 8);
+        cache.convert("hot");
+        cache.convert("hot");
+        for (int i = 0; i < 100; i++) {
+            cache.convert("cold-" + i);
+        }
+        assertEquals("HOT", cache.convert("hot"));
+
+        ConverterCache.Stats stats = cache.stats();
+        assertEquals(2, stats.hits());
+        assertEquals(101, stats.misses());
+        assertEquals(8, stats.size());
+        assertEquals(93, stats.evictions());
+    }
+
+    @Test
+    public void testConverterCacheSizeRequiresConverter() {
+        JavaFileObject source = JavaFileObjects.forSourceString(
+                "com.github.asm0dey.BadCacheCmd",
+                "package com.github.asm0dey;\n"
+                        + "import com.github.asm0dey.cligen.runtime.*;\n"
+                        + "@Command(name = \"bad\")\n"
+                        + "public class BadCacheCmd {\n"
+                        + "    @Option(names = {\"--host\"}, converterCacheSize = 16)\n"
+                        + "    public String host;\n"
+                        + "}\n"
+        );
+
+        Compilation compilation = Compiler.javac()
+                .withProcessors(new CliAnnotationProcessor())
+                .compile(source);
+
+        assertThat(compilation).failed();
+        assertThat(compilation).hadErrorContaining("converterCacheSize requires a converter on option --host");
+    }
+
+    @Test
+    public void testRunsIoBoundConvertersConcurrently() throws Exception {
+        JavaFileObject converter = JavaFileObjects.forSourceString(
+                "com.github.asm0dey.LookupConverter",
+                "package com.github.asm0dey;\n"
+                        + "import com.github.asm0dey.cligen.runtime.Converter;\n"
+                        + "import java.util.concurrent.*;\n"
+                        + "public class LookupConverter implements Converter<String> {\n"
+                        + "    public static final CyclicBarrier BARRIER = new CyclicBarrier(2);\n"
+                        + "    @Override\n"
+                        + "    public String convert(String s) throws Exception {\n"
+                        + "        if (s.startsWith(\"slow-bad\")) { Thread.sleep(200); throw new IllegalArgumentException(s); }\n"
+                        + "        if (s.startsWith(\"bad\")) throw new IllegalArgumentException(s);\n"
+                        + "        if (s.startsWith(\"sync\")) BARRIER.await(5, TimeUnit.SECONDS);\n"
+                        + "        return s.toUpperCase();\n"
+                        + "    }\n"
+                        + "}\n"
+        );
+        JavaFileObject source = JavaFileObjects.forSourceString(
+                "com.github.asm0dey.LookupCmd",
+                "package com.github.asm0dey;\n"
+                        + "import com.github.asm0dey.cligen.runtime.*;\n"
+                        + "@Command(name = \"lookup\")\n"
+                        + "public record LookupCmd(\n"
+                        + "    @Option(names = {\"--host\"}, converter = LookupConverter.class, ioBound = true) String host,\n"
+                        + "    @Option(names = {\"--key\"}, converter = LookupConverter.class, ioBound = true) String key,\n"
+                        + "    @Option(names = {\"-v\"}, arity = \"0\") boolean verbose\n"
+                        + ") {}\n"
+        );
+
+        Compilation compilation = Compiler.javac()
+                .withProcessors(new CliAnnotationProcessor())
+                .compile(source, converter);
+        assertThat(compilation).succeeded();
+        assertThat(compilation)
+                .generatedSourceFile("com.github.asm0dey.LookupCmdCommandParser")
+                .contentsAsUtf8String()
+                .contains("hostPending = async.submit(\"--host\", \"com.github.asm0dey.LookupConverter\", "
+                        + "new com.github.asm0dey.LookupConverter(), args[idx + 1])");
+
+        GeneratedClasses classes = GeneratedClasses.compile(source, converter);
+        CommandParser<Object> parser = classes.newInstance("com.github.asm0dey.LookupCmdCommandParser");
+        Class<?> commandClass = classes.loadClass("com.github.asm0dey.LookupCmd");
+
+        // Both conversions must be in flight at once to pass the barrier
+        Object command = parser.parse(new String[]{"--host", "sync-db1", "-v", "--key", "sync-id"}).getCommand();
+        assertEquals("SYNC-DB1", commandClass.getMethod("host").invoke(command));
+        assertEquals("SYNC-ID", commandClass.getMethod("key").invoke(command));
+
+        // The earlier token's failure wins even though the later one fails first
+        assertEquals("Failed to convert option --host: slow-bad-host",
+                assertThrows(ParseException.class,
+                        () -> parser.parse(new String[]{"--host", "slow-bad-host", "--key", "bad-key"})).getMessage());
+    }
+
+    @Test
+    public void testIoBoundRequiresConverter() {
+        JavaFileObject source = JavaFileObjects.forSourceString(
+                "com.github.asm0dey.BadAsyncCmd",
+                "package com.github.asm0dey;\n"
+                        + "import com.github.asm0dey.cligen.runtime.*;\n"
+                        + "@Command(name = \"bad\")\n"
+                        + "public class BadAsyncCmd {\n"
+                        + "    @Option(names = {\"--host\"}, ioBound = true)\n"
+                        + "    public String host;\n"
+                        + "}\n"
+        );
+
+        Compilation compilation = Compiler.javac()
+                .withProcessors(new CliAnnotationProcessor())
+                .compile(source);
+
+        assertThat(compilation).failed();
+        assertThat(compilation).hadErrorContaining("ioBound requires a converter on option --host");
+    }
+
+    @Test
+    public void testGeneratesCommandModel() {
+        JavaFileObject source = JavaFileObjects.forSourceString(
+                "com.github.asm0dey.ModelCmd",
+                "package com.github.asm0dey;\n"
+                        + "import com.github.asm0dey.cligen.runtime.*;\n"
+                        + "@Command(name = \"model\", description = \"Model demo\", version = \"2.1\")\n"
+                        + "public class ModelCmd {\n"
+                        + "    @Option(names = {\"-p\", \"--port\"}, description = \"Port\", defaultValue = \"8080\")\n"
+                        + "    public int port;\n"
+                        + "    @Option(names = {\"--user\"}, required = true)\n"
+                        + "    public String user;\n"
+                        + "    @Option(names = {\"-v\"}, arity = \"0\")\n"
+                        + "    public boolean verbose;\n"
+                        + "    @Parameters(index = 1, required = false)\n"
+                        + "    public String target;\n"
+                        + "    @Parameters(index = 0, description = \"Source\")\n"
+                        + "    public String source;\n"
+                        + "}\n"
+        );
+
+        CommandParser<?> parser = GeneratedClasses.compile(source)
+                .newInstance("com.github.asm0dey.ModelCmdCommandParser");
+        CommandModel model = parser.getModel();
+
+        assertEquals("model", model.name());
+        assertEquals("Model demo", model.description());
+        assertEquals("2.1", model.version());
+        assertEquals(List.of(
+                new OptionModel("port", List.of("-p", "--port"), "int", "1", false, "8080", "Port", null),
+                new OptionModel("user", List.of("--user"), "java.lang.String", "1", true, null, "", null),
+                new OptionModel("verbose", List.of("-v"), "boolean", "0", false, null, "", null)
+        ), model.options());
+        assertEquals(List.of(
+                new ParameterModel("source", 0, "java.lang.String", true, "Source"),
+                new ParameterModel("target", 1, "java.lang.String", false, "")
+        ), model.parameters());
+        assertEquals("user", model.option("--user").field());
+        assertSame(model, parser.getModel());
+    }
+
+    @Test
+    public void testValidatesOptionGroups() throws Exception {
+        JavaFileObject source = JavaFileObjects.forSourceString(
+                "com.github.asm0dey.GroupCmd",
+                "package com.github.asm0dey;\n"
+                        + "import com.github.asm0dey.cligen.runtime.*;\n"
+                        + "@Command(name = \"group\")\n"
+                        + "@OptionGroup(type = OptionGroup.Type.EXCLUSIVE, options = {\"--dry-run\", \"--force\"})\n"
+                        + "@OptionGroup(type = OptionGroup.Type.CO_REQUIRED, options = {\"--user\", \"--password\"})\n"
+                        + "@OptionGroup(type = OptionGroup.Type.AT_LEAST_ONE, options = {\"--host\", \"--socket\"})\n"
+                        + "public class GroupCmd {\n"
+                        + "    @Option(names = {\"--dry-run\"}, arity = \"0\") public boolean dryRun;\n"
+                        + "    @Option(names = {\"-f\", \"--force\"}, arity = \"0\") public boolean force;\n"
+                        + "    @Option(names = {\"--user\"}) public String user;\n"
+                        + "    @Option(names = {\"--password\"}) public String password;\n"
+                        + "    @Option(names = {\"--host\"}) public String host;\n"
+                        + "    @Option(names = {\"--socket\"}) public String socket;\n"
+                        + "}\n"
+        );
+
+        Compilation compilation = Compiler.javac()
+                .withProcessors(new CliAnnotationProcessor())
+                .compile(source);
+        assertThat(compilation).succeeded();
+        assertThat(compilation)
+                .generatedSourceFile("com.github.asm0dey.GroupCmdCommandParser")
+                .contentsAsUtf8String()
+                .contains("if (Long.bitCount(seen & 0x3L) > 1)");
+
+        CommandParser<?> parser = GeneratedClasses.compile(source)
+                .newInstance("com.github.asm0dey.GroupCmdCommandParser");
+        parser.parse(new String[]{"--host", "db", "--dry-run"});
+        parser.parse(new String[]{"--socket", "/tmp/s", "--user", "u", "--password", "p", "-f"});
+        assertEquals("Options --dry-run, --force are mutually exclusive",
+                assertThrows(ParseException.class,
+                        () -> parser.parse(new String[]{"--host", "db", "--dry-run", "-f"})).getMessage());
+        assertEquals("Options --user, --password must be given together",
+                assertThrows(ParseException.class,
+                        () -> parser.parse(new String[]{"--host", "db", "--user", "u"})).getMessage());
+        assertEquals("At least one of --host, --socket must be given",
+                assertThrows(ParseException.class, () -> parser.parse(new String[0])).getMessage());
+    }
+
+    @Test
+    public void testValidatesOptionGroupsOfOverrides() throws Exception {
+        String groups = "@OptionGroup(type = OptionGroup.Type.EXCLUSIVE, options = {\"--dry-run\", \"--force\"})\n"
+                + "@OptionGroup(type = OptionGroup.Type.CO_REQUIRED, options = {\"--user\", \"--password\"})\n";
+        JavaFileObject classSource = JavaFileObjects.forSourceString("com.github.asm0dey.OverrideGroupCmd",
+                "package com.github.asm0dey;\n"
+                        + "import com.github.asm0dey.cligen.runtime.*;\n"
+                        + "@Command(name = \"override-group\")\n" + groups
+                        + "public class OverrideGroupCmd {\n"
+                        + "    @Option(names = {\"--dry-run\"}, arity = \"0\") public boolean dryRun;\n"
+                        + "    @Option(names = {\"--force\"}, arity = \"0\") public boolean force;\n"
+                        + "    @Option(names = {\"--user\"}) public String user = \"admin\";\n"
+                        + "    @Option(names = {\"--password\"}) public String password;\n"
+                        + "}\n");
+        JavaFileObject recordSource = JavaFileObjects.forSourceString("com.github.asm0dey.OverrideGroupRecord",
+                "package com.github.asm0dey;\n"
+                        + "import com.github.asm0dey.cligen.runtime.*;\n"
+                        + "@Command(name = \"override-group-record\")\n" + groups
+                        + "public record OverrideGroupRecord(\n"
+                        + "    @Option(names = {\"--dry-run\"}, arity = \"0\") boolean dryRun,\n"
+                        + "    @Option(names = {\"--force\"}, arity = \"0\") boolean force,\n"
+                        + "    @Option(names = {\"--user\"}) String user,\n"
+                        + "    @Option(names = {\"--password\"}) String password) {}\n");
+
+        GeneratedClasses classes = GeneratedClasses.compile(classSource, recordSource);
+        for (String parserName : List.of("com.github.asm0dey.OverrideGroupCmdCommandParser",
+                "com.github.asm0dey.OverrideGroupRecordCommandParser")) {
+            CommandParser<Object> parser = classes.newInstance(parserName);
+
+            Object dryRun = parser.parse(new String[]{"--dry-run"}).getCommand();
+            assertEquals("Options --dry-run, --force are mutually exclusive",
+                    assertThrows(ParseException.class,
+                            () -> parser.withOverrides(dryRun, new String[]{"--force"})).getMessage(), parserName);
+            assertEquals("Options --user, --password must be given together",
+                    assertThrows(ParseException.class,
+                            () -> parser.withOverrides(dryRun, new String[]{"--user", "u"})).getMessage(), parserName);
+
+            Object login = parser.parse(new String[]{"--user", "u", "--password", "p"}).getCommand();
+            parser.withOverrides(login, new String[]{"--password", "q", "--force"});
+            parser.withOverrides(dryRun, new String[]{"--user", "u", "--password", "p"});
+        }
+    }
+
+    @Test
+    public void testRejectsContradictoryOptionGroups() {
+        String header = "package com.github.asm0dey;\n"
+                + "import com.github.asm0dey.cligen.runtime.*;\n"
+                + "@Command(name = \"contradiction\")\n";
+        String body = "public class ContradictionCmd {\n"
+                + "    @Option(names = {\"-a\"}, required = true) public String a;\n"
+                + "    @Option(names = {\"-b\"}) public String b;\n"
+                + "    @Option(names = {\"-c\"}, required = true) public String c;\n"
+                + "}\n";
+
+        assertGroupError(header
+                        + "@OptionGroup(type = OptionGroup.Type.EXCLUSIVE, options = {\"-a\", \"-b\"})\n"
+                        + "@OptionGroup(type = OptionGroup.Type.CO_REQUIRED, options = {\"-b\", \"-a\"})\n" + body,
+                "Options -a, -b cannot be both mutually exclusive and co-required");
+        assertGroupError(header
+                        + "@OptionGroup(type = OptionGroup.Type.CO_REQUIRED, options = {\"-c\", \"-b\"})\n"
+                        + "@OptionGroup(type = OptionGroup.Type.EXCLUSIVE, options = {\"-a\", \"-b\"})\n" + body,
+                "@OptionGroup makes required options -a, -b mutually exclusive");
+        assertGroupError(header
+                        + "@OptionGroup(type = OptionGroup.Type.EXCLUSIVE, options = {\"-a\", \"--bee\"})\n" + body,
+                "@OptionGroup refers to unknown option --bee");
+    }
+
+    private static void assertGroupError(String source, String error) {
+        Compilation compilation = Compiler.javac()
+                .withProcessors(new CliAnnotationProcessor())
+                .compile(JavaFileObjects.forSourceString("com.github.asm0dey.ContradictionCmd", source));
+        assertThat(compilation).failed();
+        assertThat(compilation).hadErrorContaining(error);
+    }
+
+    @Test
+    public void testStandaloneModeGeneratesSelfContainedClass() throws Exception {
+        String body = "public class TinyCmd {\n"
+                + "    @Option(names = {\"-n\", \"--name\"}, required = true) public String name;\n"
+                + "    @Option(names = {\"-c\"}) public int count;\n"
+                + "    @Option(names = {\"-q\"}, arity = \"0\") public boolean quiet;\n"
+                + "    @Parameters(index = 0, required = false) public String target;\n"
+                + "}\n";
+        JavaFileObject standaloneSource = JavaFileObjects.forSourceString("com.github.asm0dey.TinyCmd",
+                "package com.github.asm0dey;\n"
+                        + "import com.github.asm0dey.cligen.runtime.*;\n"
+                        + "@Command(name = \"tiny\", version = \"1.0\", standalone = true)\n" + body);
+        JavaFileObject defaultSource = JavaFileObjects.forSourceString("com.github.asm0dey.TinyCmd",
+                "package com.github.asm0dey;\n"
+                        + "import com.github.asm0dey.cligen.runtime.*;\n"
+                        + "@Command(name = \"tiny\", version = \"1.0\")\n" + body);
+
+        GeneratedClasses standalone = GeneratedClasses.compile(standaloneSource);
+        byte[] cliClass = standalone.classFiles().get("com.github.asm0dey.TinyCmdCli");
+        assertEquals(List.of("com.github.asm0dey.TinyCmd", "com.github.asm0dey.TinyCmdCli"),
+                List.copyOf(standalone.classFiles().keySet()));
+        assertFalse(new String(cliClass, StandardCharsets.ISO_8859_1)
+                .contains("com/github/asm0dey/cligen/runtime"));
+
+        // The default parser needs its own classes plus the runtime classes it links against
+        GeneratedClasses regular = GeneratedClasses.compile(defaultSource);
+        int regularSize = regular.classFiles().get("com.github.asm0dey.TinyCmdCommandParser").length;
+        for (Class<?> runtimeClass : List.of(CommandParser.class, ParseResult.class, ParseException.class,
+                ParseTrace.class, SuggestionIndex.class)) {
+            try (InputStream in = runtimeClass.getResourceAsStream(runtimeClass.getSimpleName() + ".class")) {
+                regularSize += in.readAllBytes().length;
+            }
+        }
+        assertTrue(cliClass.length * 2 < regularSize, cliClass.length + " vs " + regularSize);
+
+        Class<?> cli = standalone.loadClass("com.github.asm0dey.TinyCmdCli");
+        List<String> remaining = new ArrayList<>();
+        Object command = cli.getMethod("parse", String[].class, List.class)
+                .invoke(null, new String[]{"-n", "x", "-c", "3", "-q", "t", "extra"}, remaining);
+        Class<?> commandClass = standalone.loadClass("com.github.asm0dey.TinyCmd");
+        assertEquals("x", commandClass.getField("name").get(command));
+        assertEquals(3, commandClass.getField("count").get(command));
+        assertEquals("t", commandClass.getField("target").get(command));
+        assertEquals(List.of("extra"), remaining);
+
+        InvocationTargetException e = assertThrows(InvocationTargetException.class,
+                () -> cli.getMethod("parse", String[].class).invoke(null, (Object) new String[]{"-c", "3"}));
+        assertEquals(IllegalArgumentException.class, e.getCause().getClass());
+        assertEquals("Required option not provided: -n", e.getCause().getMessage());
+    }
+
+    @Test
+    public void testDispatchesStandaloneCommandsOfPackage() throws Exception {
+        JavaFileObject push = JavaFileObjects.forSourceString("com.github.asm0dey.PushCmd",
+                "package com.github.asm0dey;\n"
+                        + "import com.github.asm0dey.cligen.runtime.*;\n"
+                        + "@Command(name = \"push\", description = \"Upload changes\", standalone = true)\n"
+                        + "public class PushCmd {\n"
+                        + "    @Option(names = {\"-f\"}, arity = \"0\") public boolean force;\n"
+                        + "}\n");
+        JavaFileObject pull = JavaFileObjects.forSourceString("com.github.asm0dey.PullCmd",
+                "package com.github.asm0dey;\n"
+                        + "import com.github.asm0dey.cligen.runtime.*;\n"
+                        + "@Command(name = \"pull\", standalone = true)\n"
+                        + "public class PullCmd {\n"
+                        + "    @Option(names = {\"-d\"}) public int depth;\n"
+                        + "}\n");
+
+        GeneratedClasses classes = GeneratedClasses.compile(push, pull);
+        assertFalse(new String(classes.classFiles().get("com.github.asm0dey.CliDispatcher"), StandardCharsets.ISO_8859_1)
+                .contains("com/github/asm0dey/cligen/runtime"));
+
+        Class<?> dispatcher = classes.loadClass("com.github.asm0dey.CliDispatcher");
+        Object pushed = dispatcher.getMethod("dispatch", String[].class).invoke(null, (Object) new String[]{"push", "-f"});
+        assertEquals(true, classes.loadClass("com.github.asm0dey.PushCmd").getField("force").get(pushed));
+        Object pulled = dispatcher.getMethod("dispatch", String[].class).invoke(null, (Object) new String[]{"pull", "-d", "3"});
+        assertEquals(3, classes.loadClass("com.github.asm0dey.PullCmd").getField("depth").get(pulled));
+
+        InvocationTargetException e = assertThrows(InvocationTargetException.class,
+                () -> dispatcher.getMethod("dispatch", String[].class).invoke(null, (Object) new String[]{"fetch"}));
+        assertEquals("Unknown command: fetch. Use --help for available commands.", e.getCause().getMessage());
+        assertEquals("Usage: <command> [options]\n\nCommands:\n  push  Upload changes\n  pull\n\n"
+                        + "Use '<command> --help' for command-specific help\n",
+                dispatcher.getField("HELP").get(null));
+
+        // A single standalone command keeps its one-class footprint
+        assertFalse(GeneratedClasses.compile(push).classFiles().containsKey("com.github.asm0dey.CliDispatcher"));
+    }
+
+    @Test
+    public void testDuplicateStandaloneNameOnlyFailsItsPackage() {
+        List<JavaFileObject> sources = new ArrayList<>();
+        for (String pkg : List.of("alpha", "beta")) {
+            for (String command : List.of("Push", "Pull")) {
+                String name = pkg.equals("alpha") ? "sync" : command.toLowerCase();
+                sources.add(JavaFileObjects.forSourceString("com.github.asm0dey." + pkg + "." + command + "Cmd",
+                        "package com.github.asm0dey." + pkg + ";\n"
+                                + "import com.github.asm0dey.cligen.runtime.*;\n"
+                                + "@Command(name = \"" + name + "\", standalone = true)\n"
+                                + "public class " + command + "Cmd {\n"
+                                + "    @Option(names = {\"-f\"}, arity = \"0\") public boolean force;\n"
+                                + "}\n"));
+            }
+        }
+        sources.add(JavaFileObjects.forSourceString("com.github.asm0dey.beta.Main",
+                "package com.github.asm0dey.beta;\n"
+                        + "public class Main {\n"
+                        + "    public static void main(String[] args) {\n"
+                        + "        CliDispatcher.dispatchOrExit(args);\n"
+                        + "    }\n"
+                        + "}\n"));
+
+        Compilation compilation = Compiler.javac()
+                .withProcessors(new CliAnnotationProcessor())
+                .compile(sources);
+
+        assertThat(compilation).failed();
+        assertThat(compilation).hadErrorContaining("Duplicate standalone command name in package com.github.asm0dey.alpha: sync");
+        assertThat(compilation).hadErrorCount(1);
+    }
+
+    @Test
+    public void testStandaloneModeRejectsConverters() {
+        JavaFileObject source = JavaFileObjects.forSourceString(
+                "com.github.asm0dey.TinyConvertCmd",
+                "package com.github.asm0dey;\n"
+                        + "import com.github.asm0dey.cligen.runtime.*;\n"
+                        + "@Command(name = \"tiny\", standalone = true)\n"
+                        + "public class TinyConvertCmd {\n"
+                        + "    public static class Upper implements Converter<String> {\n"
+                        + "        public String convert(String s) { return s.toUpperCase(); }\n"
+                        + "    }\n"
+                        + "    @Option(names = {\"-n\"}, converter = Upper.class) public String name;\n"
+                        + "}\n"
+        );
+
+        Compilation compilation = Compiler.javac()
+                .withProcessors(new CliAnnotationProcessor())
+                .compile(source);
+
+        assertThat(compilation).failed();
+        assertThat(compilation).hadErrorContaining("Custom converters are not supported in standalone mode: option -n");
+    }
+
+    @Test
+    public void testSplitsParserOfThousandOptionCommand() throws Exception {
+        StringBuilder source = new StringBuilder("package com.github.asm0dey;\n"
+                + "import com.github.asm0dey.cligen.runtime.*;\n"
+                + "@Command(name = \"huge\")\n"
+                + "public class HugeCmd {\n");
+        for (int i = 0; i < 1000; i++) {
+            boolean required = i % 100 == 7;
+            source.append("    @Option(names = {\"-o").append(i).append("\", \"--opt").append(i).append("\"}")
+                    .append(required ? ", required = true) public String "
+                            : i % 3 == 2 ? ", arity = \"0\") public boolean "
+                            : i % 3 == 1 ? ") public int " : ") public String ")
+                    .append("opt").append(i).append(";\n");
+        }
+        source.append("}\n");
+
+        GeneratedClasses classes = GeneratedClasses.compile(
+                JavaFileObjects.forSourceString("com.github.asm0dey.HugeCmd", source.toString()));
+        Map<String, Integer> lengths = classes.methodCodeLengths("com.github.asm0dey.HugeCmdCommandParser");
+        lengths.forEach((method, length) -> assertTrue(length < CliAnnotationProcessor.HUGE_METHOD_LIMIT,
+                method + " has " + length + " bytes of bytecode"));
+
+        List<String> args = new ArrayList<>();
+        for (int i = 7; i < 1000; i += 100) {
+            args.add("--opt" + i);
+            args.add("v" + i);
+        }
+        args.addAll(List.of("-o499", "42", "--opt998", "-o999", "last"));
+        CommandParser<?> parser = classes.newInstance("com.github.asm0dey.HugeCmdCommandParser");
+        Object command = parser.parse(args.toArray(new String[0])).getCommand();
+        Class<?> commandClass = command.getClass();
+        assertEquals("v7", commandClass.getField("opt7").get(command));
+        assertEquals("v907", commandClass.getField("opt907").get(command));
+        assertEquals(42, commandClass.getField("opt499").get(command));
+        assertEquals(true, commandClass.getField("opt998").get(command));
+        assertEquals("last", commandClass.getField("opt999").get(command));
+        assertEquals(false, commandClass.getField("opt2").get(command));
+
+        ParseException e = assertThrows(ParseException.class, () -> parser.parse(new String[]{"--opt7", "x"}));
+        assertEquals("Required option not provided: -o107", e.getMessage());
+    }
+
+    @Test
+    public void testWarnsAboutHugeGeneratedMethods() {
+        StringBuilder source = new StringBuilder("package com.github.asm0dey;\n"
+                + "import com.github.asm0dey.cligen.runtime.*;\n"
+                + "@Command(name = \"wide\")\n"
+                + "public record WideCmd(\n");
+        for (int i = 0; i < 250; i++) {
+            source.append(i == 0 ? "" : ",\n")
+                    .append("    @Option(names = {\"--opt").append(i).append("\"}) String opt").append(i);
+        }
+        source.append(") {}\n");
+
+        Compilation compilation = Compiler.javac()
+                .withProcessors(new CliAnnotationProcessor())
+                .compile(JavaFileObjects.forSourceString("com.github.asm0dey.WideCmd", source.toString()));
+
+        assertThat(compilation).succeeded();
+        assertThat(compilation).hadWarningContaining("methods over HugeMethodLimit (8000 bytes) are not JIT-compiled");
+    }
+
+    @Test
+    public void testPassesArgumentsAfterTerminatorThrough() throws Exception {
+        JavaFileObject wrapSource = JavaFileObjects.forSourceString("com.github.asm0dey.WrapCmd",
+                "package com.github.asm0dey;\n"
+                        + "import com.github.asm0dey.cligen.runtime.*;\n"
+                        + "@Command(name = \"wrap\")\n"
+                        + "public class WrapCmd {\n"
+                        + "    @Option(names = {\"-v\"}, arity = \"0\") public boolean verbose;\n"
+                        + "    @Parameters(index = 0, required = false) public String program;\n"
+                        + "}\n");
+        CommandParser<?> wrap = GeneratedClasses.compile(wrapSource)
+                .newInstance("com.github.asm0dey.WrapCmdCommandParser");
+
+        String[] args = {"-v", "--", "-weird", "-Xmx4g", "Main", "-v"};
+        ParseResult<?> result = wrap.parse(args);
+        Object command = result.getCommand();
+        assertEquals(true, command.getClass().getField("verbose").get(command));
+        assertEquals("-weird", command.getClass().getField("program").get(command));
+        assertEquals(3, result.getPassthroughOffset());
+        assertEquals(List.of("-Xmx4g", "Main", "-v"), result.getPassthroughArgs());
+        assertEquals(List.of(), result.getRemainingArgs());
+        // The tail is a view of the original array, not a copy
+        args[4] = "Other";
+        assertEquals("Other", result.getPassthroughArgs().get(1));
+
+        ParseResult<?> plain = wrap.parse(new String[]{"java", "extra"});
+        assertEquals(List.of("extra"), plain.getRemainingArgs());
+        assertEquals(List.of(), plain.getPassthroughArgs());
+        assertEquals("Unknown option: -Xmx4g",
+                assertThrows(ParseException.class, () -> wrap.parse(new String[]{"java", "-Xmx4g"})).getMessage());
+
+        JavaFileObject execSource = JavaFileObjects.forSourceString("com.github.asm0dey.ExecCmd",
+                "package com.github.asm0dey;\n"
+                        + "import com.github.asm0dey.cligen.runtime.*;\n"
+                        + "@Command(name = \"exec\", stopAtPositional = true)\n"
+                        + "public class ExecCmd {\n"
+                        + "    @Option(names = {\"-v\"}, arity = \"0\") public boolean verbose;\n"
+                        + "}\n");
+        CommandParser<?> exec = GeneratedClasses.compile(execSource)
+                .newInstance("com.github.asm0dey.ExecCmdCommandParser");
+
+        ParseResult<?> stopped = exec.parse(new String[]{"-v", "java", "-Xmx4g", "-v"});
+        assertEquals(true, stopped.getCommand().getClass().getField("verbose").get(stopped.getCommand()));
+        assertEquals(1, stopped.getPassthroughOffset());
+        assertEquals(List.of("java", "-Xmx4g", "-v"), stopped.getPassthroughArgs());
+    }
+
+    @Test
+    public void testCollectsMapOptions() throws Exception {
+        JavaFileObject source = JavaFileObjects.forSourceString("com.github.asm0dey.PropsCmd",
+                "package com.github.asm0dey;\n"
+                        + "import com.github.asm0dey.cligen.runtime.*;\n"
+                        + "import java.util.Map;\n"
+                        + "@Command(name = \"props\")\n"
+                        + "public record PropsCmd(\n"
+                        + "    @Option(names = {\"-D\", \"--define\"}) Map<String, String> properties,\n"
+                        + "    @Option(names = {\"--limit\"}) Map<String, Integer> limits,\n"
+                        + "    @Option(names = {\"-v\"}, arity = \"0\") boolean verbose) {}\n");
+        CommandParser<?> parser = GeneratedClasses.compile(source)
+                .newInstance("com.github.asm0dey.PropsCmdCommandParser");
+
+        Object command = parser.parse(new String[]{
+                "-Dfoo=bar", "-v", "-D", "url=jdbc:x?a=b", "--define=foo=baz", "--define", "empty=",
+                "--limit", "cpu=4", "--limit=memory=512"}).getCommand();
+        Map<?, ?> properties = (Map<?, ?>) command.getClass().getMethod("properties").invoke(command);
+        assertEquals(List.of("foo", "url", "empty"), List.copyOf(properties.keySet()));
+        assertEquals("baz", properties.get("foo"));
+        assertEquals("jdbc:x?a=b", properties.get("url"));
+        assertEquals("", properties.get("empty"));
+        assertEquals(Map.of("cpu", 4, "memory", 512), command.getClass().getMethod("limits").invoke(command));
+        assertEquals(true, command.getClass().getMethod("verbose").invoke(command));
+
+        Object empty = parser.parse(new String[0]).getCommand();
+        assertEquals(null, empty.getClass().getMethod("properties").invoke(empty));
+        assertEquals("Option -D expects key=value, got: -Dfoo",
+                assertThrows(ParseException.class, () -> parser.parse(new String[]{"-Dfoo"})).getMessage());
+        assertEquals("Option -D expects key=value, got: =x",
+                assertThrows(ParseException.class, () -> parser.parse(new String[]{"--define", "=x"})).getMessage());
+        assertEquals("Option --limit requires an argument",
+                assertThrows(ParseException.class, () -> parser.parse(new String[]{"--limit"})).getMessage());
+
+        Compilation compilation = Compiler.javac()
+                .withProcessors(new CliAnnotationProcessor())
+                .compile(JavaFileObjects.forSourceString("com.github.asm0dey.BadMapCmd",
+                        "package com.github.asm0dey;\n"
+                                + "import com.github.asm0dey.cligen.runtime.*;\n"
+                                + "import java.util.Map;\n"
+                                + "@Command(name = \"bad\")\n"
+                                + "public class BadMapCmd {\n"
+                                + "    @Option(names = {\"-D\"}) public Map<Integer, String> properties;\n"
+                                + "}\n"));
+        assertThat(compilation).failed();
+        assertThat(compilation).hadErrorContaining("Map option -D must have type Map<String, V>");
+    }
+
+    @Test
+    public void testScansByteSizesAndDurations() throws Exception {
+        JavaFileObject source = JavaFileObjects.forSourceString("com.github.asm0dey.UnitsCmd",
+                "package com.github.asm0dey;\n"
+                        + "import com.github.asm0dey.cligen.runtime.*;\n"
+                        + "import java.time.Duration;\n"
+                        + "@Command(name = \"units\")\n"
+                        + "public class UnitsCmd {\n"
+                        + "    @ByteSize @Option(names = {\"--max-body\"}) public long maxBody;\n"
+                        + "    @ByteSize @Option(names = {\"--buffer\"}) public int buffer;\n"
+                        + "    @CompactDuration @Option(names = {\"--timeout\"}) public Duration timeout;\n"
+                        + "}\n");
+        CommandParser<?> parser = GeneratedClasses.compile(source)
+                .newInstance("com.github.asm0dey.UnitsCmdCommandParser");
+
+        Map<String, Long> sizes = Map.of("100", 100L, "100B", 100L, "4kB", 4000L, "2KB", 2000L,
+                "512MiB", 512L << 20, "3GB", 3_000_000_000L, "1EiB", 1L << 60, "9EB", 9_000_000_000_000_000_000L);
+        for (Map.Entry<String, Long> size : sizes.entrySet()) {
+            Object command = parser.parse(new String[]{"--max-body", size.getKey()}).getCommand();
+            assertEquals(size.getValue(), command.getClass().getField("maxBody").get(command), size.getKey());
+        }
+        Map<String, Duration> durations = Map.of("30s", Duration.ofSeconds(30), "1h30m", Duration.ofMinutes(90),
+                "250ms", Duration.ofMillis(250), "2d", Duration.ofDays(2), "1500us", Duration.ofNanos(1_500_000),
+                "1m1s1ms1us1ns", Duration.ofSeconds(61, 1_001_001), "3000000000ns", Duration.ofSeconds(3));
+        for (Map.Entry<String, Duration> duration : durations.entrySet()) {
+            Object command = parser.parse(new String[]{"--timeout", duration.getKey()}).getCommand();
+            assertEquals(duration.getValue(), command.getClass().getField("timeout").get(command), duration.getKey());
+        }
+        Object command = parser.parse(new String[]{"--buffer", "64KiB"}).getCommand();
+        assertEquals(65536, command.getClass().getField("buffer").get(command));
+
+        Map<String, String> errors = Map.of(
+                "--max-body=512XB", "Invalid byte size \"512XB\" for option --max-body: unknown unit 'X' at position 4",
+                "--max-body=5M", "Invalid byte size \"5M\" for option --max-body: expected 'B' at position 3",
+                "--max-body=1KiBs", "Invalid byte size \"1KiBs\" for option --max-body: unexpected 's' at position 5",
+                "--max-body=99999999999999999999",
+                "Invalid byte size \"99999999999999999999\" for option --max-body: value is too large at position 19",
+                "--max-body=16EiB", "Invalid byte size \"16EiB\" for option --max-body: value is too large at position 3",
+                "--buffer=2GiB", "Invalid byte size \"2GiB\" for option --buffer: value is too large at position 2",
+                "--timeout=10x", "Invalid duration \"10x\" for option --timeout: unknown unit 'x' at position 3",
+                "--timeout=1h30", "Invalid duration \"1h30\" for option --timeout: missing unit at position 5",
+                "--timeout=m5", "Invalid duration \"m5\" for option --timeout: expected a digit, found 'm' at position 1");
+        for (Map.Entry<String, String> error : errors.entrySet()) {
+            String[] option = error.getKey().split("=", 2);
+            assertEquals(error.getValue(),
+                    assertThrows(ParseException.class, () -> parser.parse(option)).getMessage());
+        }
+    }
+
+    @Test
+    public void testReloadsChangedConfigFile(@TempDir Path dir) throws Exception {
+        JavaFileObject source = JavaFileObjects.forSourceString("com.github.asm0dey.ServerCmd",
+                "package com.github.asm0dey;\n"
+                        + "import com.github.asm0dey.cligen.runtime.*;\n"
+                        + "@Command(name = \"server\")\n"
+                        + "public record ServerCmd(\n"
+                        + "    @Option(names = {\"--port\"}) int port,\n"
+                        + "    @Option(names = {\"--host\"}) String host,\n"
+                        + "    @Option(names = {\"--ratio\"}) double ratio) {}\n");
+        CommandParser<Object> parser = GeneratedClasses.compile(source)
+                .newInstance("com.github.asm0dey.ServerCmdCommandParser");
+        Path config = dir.resolve("server.conf");
+        Files.writeString(config, "# defaults\n--port 8080 --ratio 0.5\n\n--host file\n");
+
+        try (ConfigWatcher<Object> watcher = new ConfigWatcher<>(parser, config, new String[]{"--host", "cli"},
+                Duration.ofMillis(50))) {
+            Object initial = watcher.get();
+            assertEquals("ServerCmd[port=8080, host=cli, ratio=0.5]", initial.toString());
+
+            BlockingQueue<List<OptionChange>> published = new LinkedBlockingQueue<>();
+            List<Exception> failures = new CopyOnWriteArrayList<>();
+            watcher.addListener(new ConfigWatcher.Listener<>() {
+                @Override
+                public void configChanged(Object previous, Object current, List<OptionChange> changes) {
+                    published.add(changes);
+                }
+
+                @Override
+                public void reloadFailed(Exception e) {
+                    failures.add(e);
+                }
+            });
+
+            Files.writeString(config, "--port 9090 --ratio 0.5\n--host other\n");
+            List<OptionChange> changes = published.poll(30, TimeUnit.SECONDS);
+            assertEquals(List.of(new OptionChange("port", 8080, 9090)), changes);
+            assertEquals("ServerCmd[port=9090, host=cli, ratio=0.5]", watcher.get().toString());
+
+            Object reloaded = watcher.get();
+            assertEquals(List.of(), watcher.reload());
+            assertSame(reloaded, watcher.get());
+
+            Files.writeString(config, "--port nine\n");
+            assertEquals(List.of(), watcher.reload());
+            assertFalse(failures.isEmpty());
+            assertSame(reloaded, watcher.get());
+        }
+    }
+
+    @Test
+    public void testWatcherDebouncesEditsAndReportsFailures(@TempDir Path dir) throws Exception {
+        JavaFileObject source = JavaFileObjects.forSourceString("com.github.asm0dey.WatchedCmd",
+                "package com.github.asm0dey;\n"
+                        + "import com.github.asm0dey.cligen.runtime.*;\n"
+                        + "@Command(name = \"watched\")\n"
+                        + "public record WatchedCmd(\n"
+                        + "    @Option(names = {\"--port\"}) int port,\n"
+                        + "    @Option(names = {\"--banner\"}) String banner) {}\n");
+        CommandParser<Object> parser = GeneratedClasses.compile(source)
+                .newInstance("com.github.asm0dey.WatchedCmdCommandParser");
+        Path config = dir.resolve("watched.conf");
+        Files.writeString(config, "--port 8080 --banner \"Hello, world\"\n");
+
+        try (ConfigWatcher<Object> watcher = new ConfigWatcher<>(parser, config, new String[0],
+                Duration.ofMillis(500))) {
+            assertEquals("WatchedCmd[port=8080, banner=Hello, world]", watcher.get().toString());
+
+            BlockingQueue<List<OptionChange>> published = new LinkedBlockingQueue<>();
+            BlockingQueue<Exception> failures = new LinkedBlockingQueue<>();
+            BlockingQueue<Exception> brokenListenerFailures = new LinkedBlockingQueue<>();
+            watcher.addListener(new ConfigWatcher.Listener<>() {
+                @Override
+                public void configChanged(Object previous, Object current, List<OptionChange> changes) {
+                    throw new IllegalStateException("listener bug");
+                }
+
+                @Override
+                public void reloadFailed(Exception e) {
+                    brokenListenerFailures.add(e);
+                }
+            });
+            watcher.addListener(new ConfigWatcher.Listener<>() {
+                @Override
+                public void configChanged(Object previous, Object current, List<OptionChange> changes) {
+                    published.add(changes);
+                }
+
+                @Override
+                public void reloadFailed(Exception e) {
+                    failures.add(e);
+                }
+            });
+
+            // Edits within the debounce period are parsed once, after the last one
+            for (int port = 9001; port <= 9005; port++) {
+                Files.writeString(config, "--port " + port + " --banner 'it\\s \"quoted\"'\n");
+                Thread.sleep(20);
+            }
+            assertEquals(List.of(new OptionChange("port", 8080, 9005),
+                            new OptionChange("banner", "Hello, world", "it\\s \"quoted\"")),
+                    published.poll(30, TimeUnit.SECONDS));
+            assertEquals("listener bug", brokenListenerFailures.poll(30, TimeUnit.SECONDS).getMessage());
+            assertTrue(failures.isEmpty());
+
+            Files.writeString(config, "--port 9005 --banner \"unterminated\n");
+            assertEquals("Unterminated quote in " + config.toAbsolutePath() + " at line 1",
+                    failures.poll(30, TimeUnit.SECONDS).getMessage());
+            assertEquals(9005, watcher.get().getClass().getMethod("port").invoke(watcher.get()));
+            assertTrue(published.isEmpty());
+        }
+
+        // A parser without diff is rejected up front instead of failing every reload
+        CommandParser<Object> withoutDiff = new CommandParser<>() {
+            @Override
+            public ParseResult<Object> parse(String[] args) throws ParseException {
+                return parser.parse(args);
+            }
+
+            @Override
+            public String getHelpText() {
+                return parser.getHelpText();
+            }
+        };
+        assertFalse(withoutDiff.supports(CommandParser.Capability.DIFF));
+        assertTrue(parser.supports(CommandParser.Capability.DIFF));
+        assertThrows(IllegalArgumentException.class, () -> new ConfigWatcher<>(withoutDiff, config, new String[0]));
+    }
+
+    @Test
+    public void testChecksConstraintsInline(@TempDir Path dir) throws Exception {
+        JavaFileObject source = JavaFileObjects.forSourceString("com.github.asm0dey.DeployCmd",
+                "package com.github.asm0dey;\n"
+                        + "import com.github.asm0dey.cligen.runtime.*;\n"
+                        + "import java.nio.file.Path;\n"
+                        + "@Command(name = \"deploy\")\n"
+                        + "public class DeployCmd {\n"
+                        + "    @Range(min = 1, max = 65535) @Option(names = {\"--port\"}) public int port = 8080;\n"
+                        + "    @Range(max = 10) @Option(names = {\"--retries\"}) public Long retries;\n"
+                        + "    @Positive @Option(names = {\"--ratio\"}) public double ratio = 1;\n"
+                        + "    @Pattern(\"[a-z][a-z0-9-]*\") @Option(names = {\"--name\"}) public String name;\n"
+                        + "    @Existing @Parameters(index = 0) public Path manifest;\n"
+                        + "}\n");
+        CommandParser<?> parser = GeneratedClasses.compile(source)
+                .newInstance("com.github.asm0dey.DeployCmdCommandParser");
+        String manifest = Files.writeString(dir.resolve("app.yaml"), "app").toString();
+
+        Object command = parser.parse(new String[]{"--port", "65535", "--retries", "10", "--ratio", "0.5",
+                "--name", "web-1", manifest}).getCommand();
+        assertEquals(65535, command.getClass().getField("port").get(command));
+        assertEquals(10L, command.getClass().getField("retries").get(command));
+        assertEquals("web-1", command.getClass().getField("name").get(command));
+
+        Map<List<String>, String> errors = Map.of(
+                List.of("--port", "0"), "Option --port must be between 1 and 65535, got 0",
+                List.of("--port", "70000"), "Option --port must be between 1 and 65535, got 70000",
+                List.of("--retries", "11"), "Option --retries must be at most 10, got 11",
+                List.of("--ratio", "-0.5"), "Option --ratio must be positive, got -0.5",
+                List.of("--name", "Web"), "Option --name must match [a-z][a-z0-9-]*, got Web");
+        for (Map.Entry<List<String>, String> error : errors.entrySet()) {
+            List<String> args = new ArrayList<>(error.getKey());
+            args.add(manifest);
+            assertEquals(error.getValue(), assertThrows(ParseException.class,
+                    () -> parser.parse(args.toArray(new String[0]))).getMessage());
+        }
+        String missing = dir.resolve("missing.yaml").toString();
+        assertEquals("Parameter manifest refers to a missing file: " + missing,
+                assertThrows(ParseException.class, () -> parser.parse(new String[]{missing})).getMessage());
+
+        Compilation compilation = Compiler.javac()
+                .withProcessors(new CliAnnotationProcessor())
+                .compile(JavaFileObjects.forSourceString("com.github.asm0dey.BadRangeCmd",
+                        "package com.github.asm0dey;\n"
+                                + "import com.github.asm0dey.cligen.runtime.*;\n"
+                                + "@Command(name = \"bad\")\n"
+                                + "public class BadRangeCmd {\n"
+                                + "    @Range(min = 10, max = 1) @Option(names = {\"-n\"}) public int count;\n"
+                                + "    @Pattern(\"[a-z\") @Option(names = {\"--name\"}) public String name;\n"
+                                + "    @Positive @Option(names = {\"--host\"}) public String host;\n"
+                                + "}\n"));
+        assertThat(compilation).failed();
+        assertThat(compilation).hadErrorContaining("@Range on option -n has min 10 greater than max 1");
+    }
+
+    @Test
+    public void testDerivesCommandsWithOverrides() throws Exception {
+        JavaFileObject record = JavaFileObjects.forSourceString("com.github.asm0dey.TenantCmd",
+                "package com.github.asm0dey;\n"
+                        + "import com.github.asm0dey.cligen.runtime.*;\n"
+                        + "@Command(name = \"tenant\")\n"
+                        + "public record TenantCmd(\n"
+                        + "    @Option(names = {\"--name\"}, required = true) String name,\n"
+                        + "    @Option(names = {\"--quota\"}) int quota,\n"
+                        + "    @Option(names = {\"--region\"}, converter = UpperCaseConverter.class) String region) {}\n");
+        JavaFileObject converter = JavaFileObjects.forSourceString("com.github.asm0dey.UpperCaseConverter",
+                "package com.github.asm0dey;\n"
+                        + "public class UpperCaseConverter implements com.github.asm0dey.cligen.runtime.Converter<String> {\n"
+                        + "    public static int calls;\n"
+                        + "    public String convert(String value) { calls++; return value.toUpperCase(); }\n"
+                        + "}\n");
+        GeneratedClasses classes = GeneratedClasses.compile(record, converter);
+        CommandParser<Object> parser = classes.newInstance("com.github.asm0dey.TenantCmdCommandParser");
+        assertTrue(parser.supports(CommandParser.Capability.OVERRIDES));
+        assertFalse(parser.supports(CommandParser.Capability.REUSE));
+        Class<?> converterClass = classes.loadClass("com.github.asm0dey.UpperCaseConverter");
+
+        Object base = parser.parse(new String[]{"--name", "base", "--quota", "10", "--region", "eu"}).getCommand();
+        Object derived = parser.withOverrides(base, new String[]{"--quota", "20"}).getCommand();
+        assertEquals("TenantCmd[name=base, quota=20, region=EU]", derived.toString());
+        assertEquals(1, converterClass.getField("calls").get(null));
+        assertEquals("TenantCmd[name=base, quota=10, region=EU]", base.toString());
+        assertEquals("TenantCmd[name=acme, quota=10, region=US]",
+                parser.withOverrides(base, new String[]{"--name", "acme", "--region", "us"}).getCommand().toString());
+
+        JavaFileObject source = JavaFileObjects.forSourceString("com.github.asm0dey.WorkerCmd",
+                "package com.github.asm0dey;\n"
+                        + "import com.github.asm0dey.cligen.runtime.*;\n"
+                        + "import java.util.Map;\n"
+                        + "@Command(name = \"worker\")\n"
+                        + "@OptionGroup(type = OptionGroup.Type.AT_LEAST_ONE, options = {\"--host\", \"--socket\"})\n"
+                        + "public class WorkerCmd {\n"
+                        + "    @Option(names = {\"--host\"}) public String host;\n"
+                        + "    @Option(names = {\"--socket\"}) public String socket;\n"
+                        + "    @Option(names = {\"--threads\"}) public int threads = 4;\n"
+                        + "    @Option(names = {\"-D\"}) public Map<String, String> properties;\n"
+                        + "    @Parameters(index = 0) public String queue;\n"
+                        + "}\n");
+        CommandParser<Object> workerParser = GeneratedClasses.compile(source)
+                .newInstance("com.github.asm0dey.WorkerCmdCommandParser");
+        Object worker = workerParser.parse(new String[]{"--host", "db", "-Da=1", "jobs"}).getCommand();
+        Object variant = workerParser.withOverrides(worker, new String[]{"--threads", "8", "-Db=2"}).getCommand();
+        assertEquals("db", variant.getClass().getField("host").get(variant));
+        assertEquals(8, variant.getClass().getField("threads").get(variant));
+        assertEquals("jobs", variant.getClass().getField("queue").get(variant));
+        assertEquals(Map.of("b", "2"), variant.getClass().getField("properties").get(variant));
+        assertEquals(4, worker.getClass().getField("threads").get(worker));
+        assertEquals(Map.of("a", "1"), worker.getClass().getField("properties").get(worker));
+        assertEquals("Option --threads requires an argument", assertThrows(ParseException.class,
+                () -> workerParser.withOverrides(worker, new String[]{"--threads"})).getMessage());
+    }
+
+    @Test
+    public void testParsesIntoReusedCommandWithoutAllocating() throws Exception {
+        JavaFileObject source = JavaFileObjects.forSourceString("com.github.asm0dey.RouteCmd",
+                "package com.github.asm0dey;\n"
+                        + "import com.github.asm0dey.cligen.runtime.*;\n"
+                        + "@Command(name = \"route\")\n"
+                        + "public class RouteCmd {\n"
+                        + "    @Option(names = {\"--method\"}) public String method = \"GET\";\n"
+                        + "    @Option(names = {\"--limit\"}) public int limit = 100;\n"
+                        + "    @Option(names = {\"--offset\"}) public long offset;\n"
+                        + "    @Option(names = {\"-v\"}, arity = \"0\") public boolean verbose;\n"
+                        + "    @Parameters(index = 0) public String path;\n"
+                        + "}\n");
+        GeneratedClasses classes = GeneratedClasses.compile(source);
+        CommandParser<Object> parser = classes.newInstance("com.github.asm0dey.RouteCmdCommandParser");
+        Object target = classes.loadClass("com.github.asm0dey.RouteCmd").getConstructor().newInstance();
+        ReusableParseResult<Object> result = new ReusableParseResult<>();
+        assertTrue(parser.supports(CommandParser.Capability.REUSE));
+
+        String[] full = {"--method", "POST", "--limit", "5", "--offset", "40", "-v", "/users", "extra"};
+        assertSame(result, parser.parseInto(target, full, result));
+        assertSame(target, result.getCommand());
+        assertEquals("POST", target.getClass().getField("method").get(target));
+        assertEquals(40L, target.getClass().getField("offset").get(target));
+        assertEquals(List.of("extra"), result.getRemainingArgs());
+
+        String[] minimal = {"/items"};
+        parser.parseInto(target, minimal, result);
+        assertEquals("GET", target.getClass().getField("method").get(target));
+        assertEquals(100, target.getClass().getField("limit").get(target));
+        assertEquals(false, target.getClass().getField("verbose").get(target));
+        assertEquals("/items", target.getClass().getField("path").get(target));
+        assertEquals(List.of(), result.getRemainingArgs());
+
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) java.lang.management.ManagementFactory.getThreadMXBean();
+        for (int i = 0; i < 100_000; i++) {
+            parser.parseInto(target, (i & 1) == 0 ? full : minimal, result);
+        }
+        long startBytes = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < 100_000; i++) {
+            parser.parseInto(target, (i & 1) == 0 ? full : minimal, result);
+        }
+        long bytes = threads.getCurrentThreadAllocatedBytes() - startBytes;
+        assertTrue(bytes < 100_000, "parseInto allocated " + bytes + " bytes in 100000 parses");
+    }
+
+    @Test
+    public void testTableDrivenParserMatchesGeneratedParser() throws Exception {
+        List<JavaFileObject> sources = new ArrayList<>();
+        for (String backend : List.of("Code", "Table")) {
+            StringBuilder source = new StringBuilder("package com.github.asm0dey;\n"
+                    + "import com.github.asm0dey.cligen.runtime.*;\n"
+                    + "@Command(name = \"wide\", tableDriven = " + backend.equals("Table") + ")\n"
+                    + "public class " + backend + "Cmd {\n"
+                    + "    @Parameters(index = 0) public String input;\n");
+            for (int i = 0; i < 500; i++) {
+                source.append("    @Option(names = {\"-o").append(i).append("\", \"--opt").append(i).append("\"}")
+                        .append(i == 7 ? ", required = true) public String "
+                                : i % 4 == 3 ? ", arity = \"0\") public boolean "
+                                : i % 4 == 2 ? ") public long "
+                                : i % 4 == 1 ? ") public int " : ") public String ")
+                        .append("opt").append(i).append(i % 4 == 1 ? " = -1;\n" : ";\n");
+            }
+            sources.add(JavaFileObjects.forSourceString("com.github.asm0dey." + backend + "Cmd",
+                    source.append("}\n").toString()));
+        }
+        GeneratedClasses classes = GeneratedClasses.compile(sources.toArray(new JavaFileObject[0]));
+        Map<String, Integer> sizes = new java.util.TreeMap<>();
+        classes.classFiles().forEach((name, bytes) -> sizes.merge(name.replaceAll("\\$.*", ""), bytes.length, Integer::sum));
+        int codeSize = sizes.get("com.github.asm0dey.CodeCmdCommandParser");
+        int tableSize = sizes.get("com.github.asm0dey.TableCmdCommandParser");
+        assertTrue(tableSize * 3 < codeSize * 2, "table-driven parser has " + tableSize + " bytes, generated " + codeSize);
+
+        String[] args = {"--opt7", "seven", "-o1", "42", "--opt2", "9000000000", "-o3", "in.txt", "--", "-o5", "tail"};
+        Map<String, Integer> loadedBytes = new java.util.TreeMap<>();
+        for (String backend : List.of("Code", "Table")) {
+            CommandParser<Object> parser = classes.newInstance("com.github.asm0dey." + backend + "CmdCommandParser");
+            ParseResult<Object> result = parser.parse(args);
+            // Bytes the JVM loads and verifies to run the first parse, excluding the classes both backends need
+            classes.loadedClassSizes().forEach((name, size) -> {
+                if (name.startsWith("com.github.asm0dey." + backend + "CmdCommandParser")) {
+                    loadedBytes.merge(backend, size, Integer::sum);
+                }
+            });
+            Object command = result.getCommand();
+            assertEquals("seven", command.getClass().getField("opt7").get(command), backend);
+            assertEquals(42, command.getClass().getField("opt1").get(command), backend);
+            assertEquals(-1, command.getClass().getField("opt5").get(command), backend);
+            assertEquals(9_000_000_000L, command.getClass().getField("opt2").get(command), backend);
+            assertEquals(true, command.getClass().getField("opt3").get(command), backend);
+            assertEquals("in.txt", command.getClass().getField("input").get(command), backend);
+            assertEquals(List.of("-o5", "tail"), result.getPassthroughArgs(), backend);
+
+            assertEquals("Required option not provided: -o7", assertThrows(ParseException.class,
+                    () -> parser.parse(new String[]{"x"})).getMessage(), backend);
+            assertEquals("Option -o1 requires an argument", assertThrows(ParseException.class,
+                    () -> parser.parse(new String[]{"--opt1"})).getMessage(), backend);
+            assertEquals("Unknown option: --opt-7. Did you mean --opt7?", assertThrows(ParseException.class,
+                    () -> parser.parse(new String[]{"--opt-7"})).getMessage(), backend);
+        }
+        try (InputStream in = TableParser.class.getResourceAsStream("TableParser.class")) {
+            loadedBytes.merge("Table", in.readAllBytes().length, Integer::sum);
+        }
+        assertTrue(loadedBytes.get("Table") * 3 < loadedBytes.get("Code") * 2, "first parse loads " + loadedBytes);
+
+        // Deriving and reusing commands need the straight-line parser
+        CommandParser<Object> table = classes.newInstance("com.github.asm0dey.TableCmdCommandParser");
+        Object parsed = table.parse(args).getCommand();
+        assertTrue(table.supports(CommandParser.Capability.DIFF));
+        assertFalse(table.supports(CommandParser.Capability.OVERRIDES));
+        assertFalse(table.supports(CommandParser.Capability.REUSE));
+        assertThrows(UnsupportedOperationException.class, () -> table.withOverrides(parsed, new String[0]));
+        assertThrows(UnsupportedOperationException.class,
+                () -> table.parseInto(parsed, args, new ReusableParseResult<>()));
+
+        JavaFileObject record = JavaFileObjects.forSourceString("com.github.asm0dey.CopyCmd",
+                "package com.github.asm0dey;\n"
+                        + "import com.github.asm0dey.cligen.runtime.*;\n"
+                        + "import java.nio.file.Path;\n"
+                        + "@Command(name = \"copy\", tableDriven = true)\n"
+                        + "public record CopyCmd(\n"
+                        + "    @Option(names = {\"--mode\"}, converter = UpperCaseConverter.class) String mode,\n"
+                        + "    @Option(names = {\"--ratio\"}) double ratio,\n"
+                        + "    @Parameters(index = 0) Path from,\n"
+                        + "    @Parameters(index = 1) Path to) {}\n");
+        JavaFileObject converter = JavaFileObjects.forSourceString("com.github.asm0dey.UpperCaseConverter",
+                "package com.github.asm0dey;\n"
+                        + "public class UpperCaseConverter implements com.github.asm0dey.cligen.runtime.Converter<String> {\n"
+                        + "    public String convert(String value) { return value.toUpperCase(); }\n"
+                        + "}\n");
+        CommandParser<Object> copy = GeneratedClasses.compile(record, converter)
+                .newInstance("com.github.asm0dey.CopyCmdCommandParser");
+        assertEquals("CopyCmd[mode=FAST, ratio=0.5, from=a, to=b]",
+                copy.parse(new String[]{"a", "--mode", "fast", "b", "--ratio", "0.5"}).getCommand().toString());
+
+        Compilation compilation = Compiler.javac()
+                .withProcessors(new CliAnnotationProcessor())
+                .compile(JavaFileObjects.forSourceString("com.github.asm0dey.BadTableCmd",
+                        "package com.github.asm0dey;\n"
+                                + "import com.github.asm0dey.cligen.runtime.*;\n"
+                                + "import java.util.Map;\n"
+                                + "@Command(name = \"bad\", tableDriven = true)\n"
+                                + "public class BadTableCmd {\n"
+                                + "    @Option(names = {\"-D\"}) public Map<String, String> properties;\n"
+                                + "}\n"));
+        assertThat(compilation).failed();
+        assertThat(compilation).hadErrorContaining("Table-driven parsers do not support Map options: option -D");
+    }
+
+    @Test
+    public void testFingerprintsKeepDelimitersAndNullsApart() {
+        Map<String, String> nullValue = new java.util.HashMap<>();
+        nullValue.put("a", null);
+        List<List<?>> distinct = List.of(
+                List.of(Map.of("a", "1, b=2"), Map.of("a", "1", "b", "2")),
+                List.of(List.of("x, y"), List.of("x", "y")),
+                List.of(java.util.Arrays.asList((Object) null), List.of("null")),
+                List.of(nullValue, Map.of("a", "null")),
+                List.of(List.of("", ""), List.of("")),
+                List.of(List.of(List.of("a"), List.of()), List.of(List.of(), List.of("a"))),
+                List.of(Map.of("a=b", "c"), Map.of("a", "b=c")));
+        for (List<?> pair : distinct) {
+            assertFalse(Fingerprint.builder("cmd").add("f", pair.get(0)).build()
+                    .equals(Fingerprint.builder("cmd").add("f", pair.get(1)).build()), pair.toString());
+        }
+        assertFalse(Fingerprint.builder("cmd").add("f", null).build()
+                .equals(Fingerprint.builder("cmd").add("f", "null").build()));
+        assertEquals(Fingerprint.builder("cmd").add("f", java.util.Set.of("x", "y")).build(),
+                Fingerprint.builder("cmd").add("f", new java.util.LinkedHashSet<>(List.of("y", "x"))).build());
+    }
+
+    @Test
+    public void testReplaysCachedOutputByFingerprint(@TempDir Path dir) throws Exception {
+        JavaFileObject source = JavaFileObjects.forSourceString("com.github.asm0dey.ReportCmd",
+                "package com.github.asm0dey;\n"
+                        + "import com.github.asm0dey.cligen.runtime.*;\n"
+                        + "import java.util.Map;\n"
+                        + "@Command(name = \"report\")\n"
+                        + "public record ReportCmd(\n"
+                        + "    @Option(names = {\"--format\"}) String format,\n"
+                        + "    @Option(names = {\"--width\"}) int width,\n"
+                        + "    @Option(names = {\"-D\"}) Map<String, String> properties,\n"
+                        + "    @Parameters(index = 0) String input) {}\n");
+        CommandParser<Object> parser = GeneratedClasses.compile(source)
+                .newInstance("com.github.asm0dey.ReportCmdCommandParser");
+
+        Fingerprint base = parser.fingerprint(parser.parse(
+                new String[]{"--format", "csv", "-Da=1", "-Db=2", "in.txt"}).getCommand());
+        assertEquals(base, parser.fingerprint(parser.parse(
+                new String[]{"in.txt", "-Db=2", "--width", "0", "-Da=1", "--format", "csv"}).getCommand()));
+        assertEquals(32, base.toString().length());
+        for (String[] args : List.of(
+                new String[]{"--format", "csv", "-Da=1", "-Db=2", "other.txt"},
+                new String[]{"--format", "csv", "-Da=1", "-Db=3", "in.txt"},
+                new String[]{"--format", "csv", "-Da=1", "-Db=2", "--width", "1", "in.txt"},
+                new String[]{"--format", "tsv", "-Da=1", "-Db=2", "in.txt"})) {
+            assertFalse(base.equals(parser.fingerprint(parser.parse(args).getCommand())), String.join(" ", args));
+        }
+
+        ResultCache cache = new ResultCache(dir.resolve("cache"), 20);
+        List<String> runs = new ArrayList<>();
+        ResultCache.Task report = out -> {
+            runs.add("report");
+            out.write("0123456789".getBytes(StandardCharsets.UTF_8));
+            return 0;
+        };
+        Object command = parser.parse(new String[]{"--format", "csv", "in.txt"}).getCommand();
+        java.io.ByteArrayOutputStream first = new java.io.ByteArrayOutputStream();
+        assertEquals(0, cache.execute(parser, command, first, report));
+        java.io.ByteArrayOutputStream second = new java.io.ByteArrayOutputStream();
+        assertEquals(0, cache.execute(parser, command, second, report));
+        assertEquals("0123456789", second.toString(StandardCharsets.UTF_8));
+        assertEquals(List.of("report"), runs);
+
+        assertEquals(3, cache.execute(new Fingerprint(1, 1), new java.io.ByteArrayOutputStream(), out -> 3));
+        assertFalse(cache.contains(new Fingerprint(1, 1)));
+
+        cache.execute(new Fingerprint(1, 2), new java.io.ByteArrayOutputStream(), report);
+        cache.execute(parser, command, new java.io.ByteArrayOutputStream(), report);
+        cache.execute(new Fingerprint(1, 3), new java.io.ByteArrayOutputStream(), report);
+        assertTrue(cache.contains(parser.fingerprint(command)));
+        assertFalse(cache.contains(new Fingerprint(1, 2)));
+        assertTrue(cache.contains(new Fingerprint(1, 3)));
+        assertEquals(20, cache.size());
+    }
+
+    @Test
+    public void testRunsPipelineSegmentsConcurrently() throws Exception {
+        JavaFileObject source = JavaFileObjects.forSourceString("com.github.asm0dey.StepCmd",
+                "package com.github.asm0dey;\n"
+                        + "import com.github.asm0dey.cligen.runtime.*;\n"
+                        + "@Command(name = \"step\")\n"
+                        + "public record StepCmd(\n"
+                        + "    @Option(names = {\"--exit\"}) int exit) {}\n");
+        CommandParser<Object> parser = GeneratedClasses.compile(source)
+                .newInstance("com.github.asm0dey.StepCmdCommandParser");
+        CommandDispatcher dispatcher = new CommandDispatcher("app", "1.0");
+        dispatcher.register("build", parser);
+        dispatcher.register("lint", parser);
+        dispatcher.register("publish", parser);
+        CommandPipeline pipeline = new CommandPipeline(dispatcher).dependsOn("publish", "build", "lint");
+
+        List<String> runs = new CopyOnWriteArrayList<>();
+        // build and lint only get past the barrier if they run at the same time
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        CommandPipeline.Runner runner = (command, result) -> {
+            if (!command.equals("publish")) {
+                barrier.await(5, TimeUnit.SECONDS);
+            }
+            runs.add(command);
+            Object step = result.getCommand();
+            return (int) step.getClass().getMethod("exit").invoke(step);
+        };
+
+        CommandPipeline.Report report = pipeline.execute(
+                new String[]{"publish", "::", "build", "::", "lint"}, runner);
+        assertEquals(0, report.exitCode());
+        assertEquals(List.of("publish", "build", "lint"),
+                report.outcomes().stream().map(CommandPipeline.Outcome::command).toList());
+        assertEquals("publish", runs.get(2));
+
+        runs.clear();
+        report = pipeline.execute(new String[]{"build", "--exit", "3", "::", "lint", "::", "publish"}, runner);
+        assertEquals(3, report.exitCode());
+        assertTrue(report.outcomes().get(1).succeeded());
+        assertTrue(report.outcomes().get(2).skipped());
+        assertFalse(runs.contains("publish"));
+
+        runs.clear();
+        assertEquals("Command 2 (lint): Unknown option: --exti. Did you mean --exit?",
+                assertThrows(ParseException.class, () -> pipeline.execute(
+                        new String[]{"build", "::", "lint", "--exti", "1"}, runner)).getMessage());
+        assertEquals("Empty command in pipeline at argument 3",
+                assertThrows(ParseException.class, () -> pipeline.execute(
+                        new String[]{"build", "::", "::", "lint"}, runner)).getMessage());
+        pipeline.dependsOn("build", "publish");
+        assertEquals("Commands build, publish depend on each other",
+                assertThrows(ParseException.class, () -> pipeline.execute(
+                        new String[]{"build", "::", "publish"}, runner)).getMessage());
+        assertTrue(runs.isEmpty());
+    }
+
+    @Test
+    public void testSharesOptionHandlersOfSuperclass() throws Exception {
+        String sharedOptions = ""
+                + "    @Option(names = {\"-t\", \"--threads\"}) @Range(min = 1, max = 64) public int threads = 4;\n"
+                + "    @Option(names = {\"--config\"}) public java.nio.file.Path config;\n"
+                + "    @Option(names = {\"--memory\"}) @ByteSize public long memory;\n"
+                + "    @Option(names = {\"--timeout\"}) @CompactDuration public java.time.Duration timeout;\n"
+                + "    @Option(names = {\"--profile\"}) @Pattern(\"[a-z]+\") public String profile;\n"
+                + "    @Option(names = {\"--retries\"}) @Positive public long retries = 3;\n"
+                + "    @Option(names = {\"-v\", \"--verbose\"}, arity = \"0\") public boolean verbose;\n";
+        List<JavaFileObject> shared = new ArrayList<>();
+        List<JavaFileObject> copied = new ArrayList<>();
+        shared.add(JavaFileObjects.forSourceString("com.github.asm0dey.common.ToolBase",
+                "package com.github.asm0dey.common;\n"
+                        + "import com.github.asm0dey.cligen.runtime.*;\n"
+                        + "public abstract class ToolBase {\n" + sharedOptions + "}\n"));
+        for (String tool : List.of("Build", "Deploy", "Lint", "Report")) {
+            String own = "    @Option(names = {\"--out\"}) public String out;\n"
+                    + "    @Parameters(index = 0, required = false) public String target;\n";
+            shared.add(JavaFileObjects.forSourceString("com.github.asm0dey." + tool + "Cmd",
+                    "package com.github.asm0dey;\n"
+                            + "import com.github.asm0dey.cligen.runtime.*;\n"
+                            + "@Command(name = \"" + tool.toLowerCase() + "\")\n"
+                            + "public class " + tool + "Cmd extends com.github.asm0dey.common.ToolBase {\n" + own + "}\n"));
+            copied.add(JavaFileObjects.forSourceString("com.github.asm0dey." + tool + "Cmd",
+                    "package com.github.asm0dey;\n"
+                            + "import com.github.asm0dey.cligen.runtime.*;\n"
+                            + "@Command(name = \"" + tool.toLowerCase() + "\")\n"
+                            + "public class " + tool + "Cmd {\n" + sharedOptions + own + "}\n"));
+        }
+        GeneratedClasses classes = GeneratedClasses.compile(shared.toArray(new JavaFileObject[0]));
+
+        CommandParser<Object> parser = classes.newInstance("com.github.asm0dey.DeployCmdCommandParser");
+        Object deploy = parser.parse(new String[]{
+                "-t", "8", "--memory", "2KiB", "--timeout", "1m30s", "--profile", "prod", "-v", "--out", "x", "eu"})
+                .getCommand();
+        assertEquals(8, deploy.getClass().getField("threads").get(deploy));
+        assertEquals(2048L, deploy.getClass().getField("memory").get(deploy));
+        assertEquals(Duration.ofSeconds(90), deploy.getClass().getField("timeout").get(deploy));
+        assertEquals("prod", deploy.getClass().getField("profile").get(deploy));
+        assertEquals(true, deploy.getClass().getField("verbose").get(deploy));
+        assertEquals(3L, deploy.getClass().getField("retries").get(deploy));
+        assertEquals("eu", deploy.getClass().getField("target").get(deploy));
+        assertEquals("Option -t must be between 1 and 64, got 0",
+                assertThrows(ParseException.class, () -> parser.parse(new String[]{"--threads", "0"})).getMessage());
+        assertEquals("Option --profile must match [a-z]+, got Prod",
+                assertThrows(ParseException.class, () -> parser.parse(new String[]{"--profile", "Prod"})).getMessage());
+        assertTrue(parser.getHelpText().contains("--threads"));
+        assertEquals(List.of(), parser.diff(deploy, parser.withOverrides(deploy, new String[0]).getCommand()));
+
+        // Every parser delegates to the handlers generated once for the superclass
+        assertTrue(classes.classFiles().containsKey("com.github.asm0dey.common.ToolBaseOptionHandlers"));
+        for (String tool : List.of("Build", "Deploy", "Lint", "Report")) {
+            Class<?> parserClass = classes.loadClass("com.github.asm0dey." + tool + "CmdCommandParser");
+            assertFalse(java.util.Arrays.stream(parserClass.getDeclaredMethods())
+                    .anyMatch(method -> method.getName().equals("parseThreads")), tool);
+        }
+        GeneratedClasses copiedClasses = GeneratedClasses.compile(copied.toArray(new JavaFileObject[0]));
+        int parserSize = classes.classFiles().get("com.github.asm0dey.DeployCmdCommandParser").length;
+        int copiedParserSize = copiedClasses.classFiles().get("com.github.asm0dey.DeployCmdCommandParser").length;
+        assertTrue(parserSize * 4 < copiedParserSize * 3, parserSize + " vs " + copiedParserSize);
+        assertTrue(generatedParserBytes(classes) < generatedParserBytes(copiedClasses));
+
+        Compilation compilation = Compiler.javac().withProcessors(new CliAnnotationProcessor()).compile(
+                JavaFileObjects.forSourceString("com.github.asm0dey.common.HiddenBase",
+                        "package com.github.asm0dey.common;\n"
+                                + "import com.github.asm0dey.cligen.runtime.*;\n"
+                                + "public class HiddenBase {\n"
+                                + "    @Option(names = {\"--secret\"}) String secret;\n"
+                                + "}\n"),
+                JavaFileObjects.forSourceString("com.github.asm0dey.HiddenCmd",
+                        "package com.github.asm0dey;\n"
+                                + "import com.github.asm0dey.cligen.runtime.*;\n"
+                                + "@Command(name = \"hidden\")\n"
+                                + "public class HiddenCmd extends com.github.asm0dey.common.HiddenBase {}\n"));
+        assertThat(compilation).failed();
+        assertThat(compilation).hadErrorContaining(
+                "Inherited field secret of HiddenBase must be a non-final instance field visible in the package of HiddenCmd");
+    }
+
+    private static int generatedParserBytes(GeneratedClasses classes) {
+        int size = 0;
+        for (Map.Entry<String, byte[]> classFile : classes.classFiles().entrySet()) {
+            if (classFile.getKey().contains("CommandParser") || classFile.getKey().endsWith("OptionHandlers")) {
+                size += classFile.getValue().length;
+            }
+        }
+        return size;
+    }
+
+    @Test
+    public void testWarnsAboutSuperclassCompiledWithoutSource(@TempDir Path dir) throws Exception {
+        GeneratedClasses base = GeneratedClasses.compile(JavaFileObjects.forSourceString("com.github.asm0dey.common.JarBase",
+                "package com.github.asm0dey.common;\n"
+                        + "import com.github.asm0dey.cligen.runtime.*;\n"
+                        + "public abstract class JarBase {\n"
+                        + "    @Option(names = {\"--threads\"}) public int threads;\n"
+                        + "    public String profile;\n"
+                        + "    public static int instances;\n"
+                        + "}\n"));
+        Path classFile = dir.resolve("com/github/asm0dey/common/JarBase.class");
+        Files.createDirectories(classFile.getParent());
+        Files.write(classFile, base.classFiles().get("com.github.asm0dey.common.JarBase"));
+        List<java.io.File> classpath = new ArrayList<>();
+        classpath.add(dir.toFile());
+        for (String entry : System.getProperty("java.class.path").split(java.io.File.pathSeparator)) {
+            classpath.add(new java.io.File(entry));
+        }
+
+        Compilation compilation = Compiler.javac().withProcessors(new CliAnnotationProcessor()).withClasspath(classpath)
+                .compile(JavaFileObjects.forSourceString("com.github.asm0dey.JarCmd",
+                        "package com.github.asm0dey;\n"
+                                + "import com.github.asm0dey.cligen.runtime.*;\n"
+                                + "@Command(name = \"jar\")\n"
+                                + "public class JarCmd extends com.github.asm0dey.common.JarBase {\n"
+                                + "    @Option(names = {\"--out\"}) public String out;\n"
+                                + "}\n"));
+        assertThat(compilation).succeeded();
+        assertThat(compilation).hadWarningContaining("Superclass com.github.asm0dey.common.JarBase of JarCmd is compiled"
+                + " without its source, so its fields threads, profile are not options");
+
+        // A superclass compiled together with the command is read from source and gets no warning
+        Compilation together = Compiler.javac().withProcessors(new CliAnnotationProcessor()).compile(
+                JavaFileObjects.forSourceString("com.github.asm0dey.common.JarBase",
+                        "package com.github.asm0dey.common;\n"
+                                + "public abstract class JarBase {\n"
+                                + "    public String profile;\n"
+                                + "}\n"),
+                JavaFileObjects.forSourceString("com.github.asm0dey.JarCmd",
+                        "package com.github.asm0dey;\n"
+                                + "import com.github.asm0dey.cligen.runtime.*;\n"
+                                + "@Command(name = \"jar\")\n"
+                                + "public class JarCmd extends com.github.asm0dey.common.JarBase {\n"
+                                + "}\n"));
+        assertThat(together).succeeded();
+        assertTrue(together.warnings().stream().noneMatch(warning -> warning.getMessage(null).contains("Superclass")));
+    }
+
+    @Test
+    public void testLoadsIndexedCommandsLazily(@TempDir Path dir) throws Exception {
+        List<Path> jars = new ArrayList<>();
+        for (List<String> commands : List.of(List.of("Build", "Lint"), List.of("Deploy", "Lint"))) {
+            List<JavaFileObject> sources = new ArrayList<>();
+            for (String command : commands) {
+                sources.add(JavaFileObjects.forSourceString("com.github.asm0dey.plugin" + jars.size() + "." + command + "Cmd",
+                        "package com.github.asm0dey.plugin" + jars.size() + ";\n"
+                                + "import com.github.asm0dey.cligen.runtime.*;\n"
+                                + "@Command(name = \"" + command.toLowerCase() + "\", description = \"" + command
+                                + "s the project\\nMore details\")\n"
+                                + "public record " + command + "Cmd(@Option(names = {\"--out\"}) String out) {}\n"));
+            }
+            GeneratedClasses classes = GeneratedClasses.compile(sources.toArray(new JavaFileObject[0]));
+            Path jar = Files.createDirectory(dir.resolve("plugin" + jars.size()));
+            Map<String, byte[]> files = new java.util.TreeMap<>(classes.resources());
+            classes.classFiles().forEach((name, bytes) -> files.put(name.replace('.', '/') + ".class", bytes));
+            for (Map.Entry<String, byte[]> file : files.entrySet()) {
+                Path path = jar.resolve(file.getKey());
+                Files.createDirectories(path.getParent());
+                Files.write(path, file.getValue());
+            }
+            jars.add(jar);
+        }
+        assertEquals("# Generated by CLI-Gen annotation processor: command, parser, description\n"
+                        + "deploy\tcom.github.asm0dey.plugin1.DeployCmdCommandParser\tDeploys the project\n"
+                        + "lint\tcom.github.asm0dey.plugin1.LintCmdCommandParser\tLints the project\n",
+                Files.readString(jars.get(1).resolve(CommandIndex.RESOURCE)));
+        // A parser that fails to load shows that listing and help never load parsers
+        Files.delete(jars.get(1).resolve("com/github/asm0dey/plugin1/DeployCmdCommandParser.class"));
+
+        try (java.net.URLClassLoader loader = new java.net.URLClassLoader(new java.net.URL[]{
+                jars.get(0).toUri().toURL(), jars.get(1).toUri().toURL()}, getClass().getClassLoader())) {
+            CommandIndex index = CommandIndex.load(loader);
+            assertEquals(List.of("build", "lint", "deploy"),
+                    index.entries().stream().map(CommandIndex.Entry::name).toList());
+            assertEquals("com.github.asm0dey.plugin0.LintCmdCommandParser", index.entry("lint").parserClass());
+
+            CommandDispatcher dispatcher = new CommandDispatcher("app", "1.0");
+            dispatcher.register(index);
+            assertTrue(dispatcher.getGlobalHelp().contains("  build   Builds the project\n"
+                    + "  lint    Lints the project\n"
+                    + "  deploy  Deploys the project\n"), dispatcher.getGlobalHelp());
+            assertEquals("Unknown command: delpoy. Did you mean deploy? Use --help for available commands.",
+                    assertThrows(ParseException.class, () -> dispatcher.dispatch(new String[]{"delpoy"})).getMessage());
+
+            ParseResult<?> result = dispatcher.dispatch(new String[]{"lint", "--out", "report.txt"});
+            assertEquals("com.github.asm0dey.plugin0.LintCmd", result.getCommand().getClass().getName());
+            assertEquals("Cannot load parser com.github.asm0dey.plugin1.DeployCmdCommandParser of command deploy",
+                    assertThrows(IllegalStateException.class,
+                            () -> dispatcher.dispatch(new String[]{"deploy"})).getMessage());
+        }
+    }
+
+    @Test
+    public void testMergesCommandIndexOfIncrementalCompilations(@TempDir Path root) throws Exception {
+        Path dir = Files.createDirectory(root.resolve("classes"));
+        Path index = dir.resolve(CommandIndex.RESOURCE);
+        compileInto(dir, "Build", "Lint");
+        compileInto(dir, "Deploy");
+        assertEquals("# Generated by CLI-Gen annotation processor: command, parser, description\n"
+                        + "build\tcom.github.asm0dey.BuildCmdCommandParser\tBuilds\n"
+                        + "deploy\tcom.github.asm0dey.DeployCmdCommandParser\tDeploys\n"
+                        + "lint\tcom.github.asm0dey.LintCmdCommandParser\tLints\n",
+                Files.readString(index));
+
+        // A build tool deletes the outputs of a deleted source; its entry goes with them
+        Files.delete(dir.resolve("com/github/asm0dey/LintCmd.class"));
+        Files.delete(dir.resolve("com/github/asm0dey/LintCmdCommandParser.class"));
+        compileInto(dir, "Build");
+        assertEquals("# Generated by CLI-Gen annotation processor: command, parser, description\n"
+                        + "build\tcom.github.asm0dey.BuildCmdCommandParser\tBuilds\n"
+                        + "deploy\tcom.github.asm0dey.DeployCmdCommandParser\tDeploys\n",
+                Files.readString(index));
+    }
+
+    private static void compileInto(Path dir, String... commands) throws IOException {
+        List<JavaFileObject> sources = new ArrayList<>();
+        for (String command : commands) {
+            sources.add(JavaFileObjects.forSourceString("com.github.asm0dey." + command + "Cmd",
+                    "package com.github.asm0dey;\n"
+                            + "import com.github.asm0dey.cligen.runtime.*;\n"
+                            + "@Command(name = \"" + command.toLowerCase() + "\", description = \"" + command + "s\")\n"
+                            + "public record " + command + "Cmd(@Option(names = {\"--out\"}) String out) {}\n"));
+        }
+        javax.tools.JavaCompiler javac = javax.tools.ToolProvider.getSystemJavaCompiler();
+        try (javax.tools.StandardJavaFileManager files = javac.getStandardFileManager(null, null, StandardCharsets.UTF_8)) {
+            javax.tools.DiagnosticCollector<JavaFileObject> diagnostics = new javax.tools.DiagnosticCollector<>();
+            javax.tools.JavaCompiler.CompilationTask task = javac.getTask(null, files, diagnostics, List.of("-d", dir.toString(),
+                    "-s", Files.createDirectories(dir.resolveSibling("generated")).toString(), "-classpath", dir + java.io.File.pathSeparator + System.getProperty("java.class.path")), null, sources);
+            task.setProcessors(List.of(new CliAnnotationProcessor()));
+            assertTrue(task.call(), diagnostics.getDiagnostics().toString());
+        }
+    }
+
+    @Test
+    public void testDispatchesWhileCommandsComeAndGo() throws Exception {
+        CommandDispatcher dispatcher = new CommandDispatcher("app", "1.0");
+        CommandParser<Object> parser = new CommandParser<>() {
+            @Override
+            public ParseResult<Object> parse(String[] args) {
+                return new ParseResult<>(new Object(), List.of());
+            }
+
+            @Override
+            public String getHelpText() {
+                return "stable help";
+            }
+        };
+        dispatcher.register("stable", parser);
+
+        java.util.Set<String> snapshot = dispatcher.getCommandNames();
+        dispatcher.register("extra", parser);
+        assertEquals(List.of("stable"), List.copyOf(snapshot));
+        assertEquals(List.of("stable", "extra"), List.copyOf(dispatcher.getCommandNames()));
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.add("other"));
+        assertTrue(dispatcher.unregister("extra"));
+        assertFalse(dispatcher.unregister("extra"));
+        assertEquals("Unknown command: extra. Use --help for available commands.",
+                assertThrows(ParseException.class, () -> dispatcher.dispatch(new String[]{"extra"})).getMessage());
+
+        // Plugins come and go while other threads keep dispatching the stable command
+        java.util.concurrent.ExecutorService threads = java.util.concurrent.Executors.newFixedThreadPool(4);
+        try {
+            java.util.concurrent.atomic.AtomicBoolean done = new java.util.concurrent.atomic.AtomicBoolean();
+            List<java.util.concurrent.Future<Integer>> readers = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                readers.add(threads.submit(() -> {
+                    int dispatched = 0;
+                    while (!done.get()) {
+                        assertEquals("stable help", dispatcher.getCommandHelp("stable"));
+                        dispatcher.dispatch(new String[]{"stable"});
+                        assertTrue(dispatcher.getCommandNames().contains("stable"));
+                        dispatched++;
+                    }
+                    return dispatched;
+                }));
+            }
+            java.util.concurrent.Future<?> writer = threads.submit(() -> {
+                for (int round = 0; round < 200; round++) {
+                    for (int i = 0; i < 20; i++) {
+                        dispatcher.register("plugin" + i, parser);
+                    }
+                    for (int i = 0; i < 20; i++) {
+                        assertTrue(dispatcher.unregister("plugin" + i));
+                    }
+                }
+                done.set(true);
+                return null;
+            });
+            writer.get(30, TimeUnit.SECONDS);
+            for (java.util.concurrent.Future<Integer> reader : readers) {
+                assertTrue(reader.get(30, TimeUnit.SECONDS) > 0);
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+        assertEquals(List.of("stable"), List.copyOf(dispatcher.getCommandNames()));
+    }
+
+    @Test
+    public void testCollectsDispatchMetricsPerCommand() throws Exception {
+        CommandDispatcher dispatcher = new CommandDispatcher("app", "1.0");
+        CommandParser<Object> parser = new CommandParser<>() {
+            @Override
+            public ParseResult<Object> parse(String[] args) throws ParseException {
+                if (args.length > 0 && args[0].equals("--fail")) {
+                    throw new ParseException("failed");
+                }
+                return new ParseResult<>(new Object(), List.of());
+            }
+
+            @Override
+            public String getHelpText() {
+                return "";
+            }
+        };
+        dispatcher.register("build", parser);
+        dispatcher.register("lint", parser);
+        assertEquals(null, dispatcher.getMetrics());
+        CommandMetrics metrics = dispatcher.enableMetrics();
+        assertTrue(metrics == dispatcher.enableMetrics());
+        assertTrue(metrics == dispatcher.getMetrics());
+
+        java.util.concurrent.ExecutorService threads = java.util.concurrent.Executors.newFixedThreadPool(4);
+        try {
+            List<java.util.concurrent.Future<?>> dispatches = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                dispatches.add(threads.submit(() -> {
+                    for (int i = 0; i < 1000; i++) {
+                        dispatcher.dispatch(new String[]{"build"});
+                        dispatcher.dispatch(new String[]{"lint"});
+                        if (i % 10 == 0) {
+                            assertThrows(ParseException.class, () -> dispatcher.dispatch(new String[]{"lint", "--fail"}));
+                            assertThrows(ParseException.class, () -> dispatcher.dispatch(new String[]{"test"}));
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (java.util.concurrent.Future<?> dispatch : dispatches) {
+                dispatch.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+
+        // Commands registered after metrics were enabled are tracked too
+        dispatcher.register("deploy", parser);
+        dispatcher.dispatch(new String[]{"deploy"});
+
+        List<CommandMetrics.Snapshot> snapshots = metrics.snapshot();
+        assertEquals(List.of("build", "deploy", "lint"), snapshots.stream().map(CommandMetrics.Snapshot::command).toList());
+        assertEquals(4000, snapshots.get(0).invocations());
+        assertEquals(0, snapshots.get(0).errors());
+        assertEquals(1, snapshots.get(1).invocations());
+        assertEquals(4400, snapshots.get(2).invocations());
+        assertEquals(400, snapshots.get(2).errors());
+        for (CommandMetrics.Snapshot snapshot : snapshots) {
+            assertEquals(snapshot.invocations(), java.util.Arrays.stream(snapshot.latencyBuckets()).sum());
+            assertEquals(LatencyHistogram.BUCKET_COUNT, snapshot.latencyBuckets().length);
+            assertTrue(snapshot.totalNanos() >= 0);
+            assertTrue(snapshot.latencyPercentileMicros(50) <= snapshot.latencyPercentileMicros(100));
+        }
+        assertEquals(null, metrics.snapshot("test"));
+        assertEquals(400, metrics.getUnknownCommands());
+        assertEquals(8401, metrics.getTotalInvocations());
+        assertEquals(400, metrics.getTotalErrors());
+
+        javax.management.MBeanServer server = java.lang.management.ManagementFactory.getPlatformMBeanServer();
+        javax.management.ObjectName name = metrics.registerMBean("metrics-test");
+        try {
+            assertEquals("com.github.asm0dey.cligen:type=CommandDispatcher,name=\"metrics-test\"", name.toString());
+            assertTrue(server.isRegistered(name));
+            assertEquals(8401L, server.getAttribute(name, "TotalInvocations"));
+            assertEquals(List.of("build", "deploy", "lint"), List.of((String[]) server.getAttribute(name, "CommandNames")));
+            assertEquals(400L, server.invoke(name, "getErrors", new Object[]{"lint"}, new String[]{String.class.getName()}));
+            // A removed command disappears from the metrics, and comes back without its old counts
+            assertTrue(dispatcher.unregister("deploy"));
+            assertEquals(List.of("build", "lint"), List.of((String[]) server.getAttribute(name, "CommandNames")));
+            assertEquals(8400L, server.getAttribute(name, "TotalInvocations"));
+            assertEquals(null, metrics.snapshot("deploy"));
+            dispatcher.register("deploy", parser);
+            assertEquals(0, metrics.snapshot("deploy").invocations());
+            // Registering again replaces the MBean instead of failing
+            assertEquals(name, metrics.registerMBean("metrics-test"));
+            server.invoke(name, "reset", new Object[0], new String[0]);
+            assertEquals(0L, server.getAttribute(name, "TotalInvocations"));
+            assertEquals(0L, server.getAttribute(name, "UnknownCommands"));
+        } finally {
+            metrics.unregisterMBean("metrics-test");
+        }
+        assertFalse(server.isRegistered(name));
+        metrics.unregisterMBean("metrics-test");
+    }
+
+    @Test
+    public void testPlacesLatenciesInPowerOfTwoBuckets() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long nanos : new long[]{-5, 0, 999, 1_000, 1_999, 2_000, 3_999, 4_000, Long.MAX_VALUE}) {
+            histogram.record(nanos);
+        }
+        long[] counts = histogram.counts();
+        assertEquals(3, counts[0]);
+        assertEquals(2, counts[1]);
+        assertEquals(2, counts[2]);
+        assertEquals(1, counts[3]);
+        assertEquals(1, counts[LatencyHistogram.BUCKET_COUNT - 1]);
+        assertEquals(9, java.util.Arrays.stream(counts).sum());
+
+        long[] bounds = LatencyHistogram.bucketUpperBoundsMicros();
+        assertEquals(1, bounds[0]);
+        assertEquals(2, bounds[1]);
+        assertEquals(1L << 30, bounds[30]);
+        assertEquals(Long.MAX_VALUE, bounds[LatencyHistogram.BUCKET_COUNT - 1]);
+
+        // Buckets 0, 1 and 2 hold one, one and two samples: the percentile is the bound of the bucket holding its rank
+        long[] edges = new long[LatencyHistogram.BUCKET_COUNT];
+        edges[0] = 1;
+        edges[1] = 1;
+        edges[2] = 2;
+        assertEquals(1, LatencyHistogram.percentileMicros(edges, 0));
+        assertEquals(1, LatencyHistogram.percentileMicros(edges, 25));
+        assertEquals(2, LatencyHistogram.percentileMicros(edges, 25.1));
+        assertEquals(2, LatencyHistogram.percentileMicros(edges, 50));
+        assertEquals(4, LatencyHistogram.percentileMicros(edges, 50.1));
+        assertEquals(4, LatencyHistogram.percentileMicros(edges, 100));
+        assertEquals(4, LatencyHistogram.percentileMicros(edges, 150));
+        assertEquals(0, LatencyHistogram.percentileMicros(new long[LatencyHistogram.BUCKET_COUNT], 99));
+
+        histogram.reset();
+        assertEquals(0, java.util.Arrays.stream(histogram.counts()).sum());
+        assertEquals(0, histogram.totalNanos());
+    }
+}
@@ -0,0 +1,167 @@
+package com.github.asm0dey.cligen;
+
+import com.google.testing.compile.Compilation;
+import com.google.testing.compile.Compiler;
+
+import javax.tools.JavaFileObject;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import static com.google.testing.compile.CompilationSubject.assertThat;
+
+/**
+ * Compiles sources with {@link CliAnnotationProcessor} and loads the resulting classes,
+ * so tests can run generated parsers instead of only inspecting their source.
+ */
+final class GeneratedClasses extends ClassLoader {
+    private static final String CLASS_OUTPUT = "/CLASS_OUTPUT/";
+
+    private final Map<String, byte[]> classFiles;
+    private final Map<String, byte[]> resources;
+    private final Map<String, Integer> loaded = new ConcurrentSkipListMap<>();
+
+    private GeneratedClasses(Map<String, byte[]> classFiles, Map<String, byte[]> resources) {
+        super(GeneratedClasses.class.getClassLoader());
+        this.classFiles = classFiles;
+        this.resources = resources;
+    }
+
+    static GeneratedClasses compile(JavaFileObject... sources) {
+        Compilation compilation = Compiler.javac()
+                .withProcessors(new CliAnnotationProcessor())
+                .compile(sources);
+        assertThat(compilation).succeeded();
+
+        Map<String, byte[]> classFiles = new TreeMap<>();
+        Map<String, byte[]> resources = new TreeMap<>();
+        for (JavaFileObject file : compilation.generatedFiles()) {
+            String path = file.getName();
+            if (!path.contains(CLASS_OUTPUT)) {
+                continue;
+            }
+            String relativePath = path.substring(path.indexOf(CLASS_OUTPUT) + CLASS_OUTPUT.length());
+            try (InputStream in = file.openInputStream()) {
+                if (file.getKind() == JavaFileObject.Kind.CLASS) {
+                    String binaryName = relativePath.substring(0, relativePath.length() - ".class".length())
+                            .replace('/', '.');
+                    classFiles.put(binaryName, in.readAllBytes());
+                } else {
+                    resources.put(relativePath, in.readAllBytes());
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return new GeneratedClasses(classFiles, resources);
+    }
+
+    /**
+     * Class files produced by the compilation, keyed by binary class name.
+     */
+    Map<String, byte[]> classFiles() {
+        return classFiles;
+    }
+
+    /**
+     * Other files written to the class output, such as the command index, keyed by path.
+     */
+    Map<String, byte[]> resources() {
+        return resources;
+    }
+
+    /**
+     * Size of the class file of every compiled class loaded so far, keyed by binary class name.
+     */
+    Map<String, Integer> loadedClassSizes() {
+        return loaded;
+    }
+
+    /**
+     * Bytecode length of every method of a compiled class, keyed by method name and descriptor.
+     */
+    Map<String, Integer> methodCodeLengths(String binaryName) {
+        Map<String, Integer> lengths = new TreeMap<>();
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(classFiles.get(binaryName)))) {
+            in.skipBytes(8);
+            int constantCount = in.readUnsignedShort();
+            String[] utf8 = new String[constantCount];
+            for (int i = 1; i < constantCount; i++) {
+                int tag = in.readUnsignedByte();
+                switch (tag) {
+                    case 1 -> utf8[i] = in.readUTF();
+                    case 7, 8, 16, 19, 20 -> in.skipBytes(2);
+                    case 15 -> in.skipBytes(3);
+                    case 3, 4, 9, 10, 11, 12, 17, 18 -> in.skipBytes(4);
+                    case 5, 6 -> {
+                        in.skipBytes(8);
+                        i++;
+                    }
+                    default -> throw new IOException("Unknown constant pool tag " + tag);
+                }
+            }
+            in.skipBytes(6);
+            in.skipBytes(2 * in.readUnsignedShort());
+            int fieldCount = in.readUnsignedShort();
+            for (int i = 0; i < fieldCount; i++) {
+                in.skipBytes(6);
+                skipAttributes(in);
+            }
+            int methodCount = in.readUnsignedShort();
+            for (int i = 0; i < methodCount; i++) {
+                in.skipBytes(2);
+                String method = utf8[in.readUnsignedShort()] + utf8[in.readUnsignedShort()];
+                int attributeCount = in.readUnsignedShort();
+                for (int a = 0; a < attributeCount; a++) {
+                    String attribute = utf8[in.readUnsignedShort()];
+                    int length = in.readInt();
+                    if (attribute.equals("Code")) {
+                        in.skipBytes(4);
+                        lengths.put(method, in.readInt());
+                        in.skipBytes(length - 8);
+                    } else {
+                        in.skipBytes(length);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return lengths;
+    }
+
+    private static void skipAttributes(DataInputStream in) throws IOException {
+        int attributeCount = in.readUnsignedShort();
+        for (int a = 0; a < attributeCount; a++) {
+            in.skipBytes(2);
+            in.skipBytes(in.readInt());
+        }
+    }
+
+    /**
+     * Create an instance of a compiled class through its public no-arg constructor.
+     */
+    @SuppressWarnings("unchecked")
+    <T> T newInstance(String binaryName) {
+        try {
+            return (T) loadClass(binaryName).getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot instantiate " + binaryName, e);
+        }
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        byte[] bytes = classFiles.get(name);
+        if (bytes == null) {
+            throw new ClassNotFoundException(name);
+        }
+        loaded.put(name, bytes.length);
+        return defineClass(name, bytes, 0, bytes.length);
+    }
+}
@@ -0,0 +1,266 @@
+package com.github.asm0dey.cligen;
+
+import com.github.asm0dey.cligen.runtime.CommandDispatcher;
+import com.github.asm0dey.cligen.runtime.CommandParser;
+import com.github.asm0dey.cligen.runtime.ParseException;
+import com.github.asm0dey.cligen.runtime.ParseResult;
+import com.google.testing.compile.JavaFileObjects;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Guards generated parsers and {@link CommandDispatcher} against super-linear cost on adversarial input.
+ * <p>
+ * Every scenario is run at sizes from 10^3 to 10^5 units (10^4 for nesting depth) and the
+ * bytes allocated per unit are compared between sizes. Linear code keeps the per-unit cost
+ * flat, while a quadratic regression grows it tenfold per decade and fails the build.
+ * <p>
+ * Allocation is counted by the JVM and does not depend on machine load, so it is checked on
+ * every build. The {@code scaling-timing} profile ({@code mvn test -Pscaling-timing}) also
+ * compares wall-clock time per unit and goes up to 10^6 units (10^5 for nesting depth).
+ */
+public class ScalingTest {
+    private static final boolean TIMING = Boolean.getBoolean("cligen.scaling.timing");
+    private static final int[] SIZES = TIMING
+            ? new int[]{1_000, 10_000, 100_000, 1_000_000}
+            : new int[]{1_000, 10_000, 100_000};
+    private static final int[] DEPTHS = TIMING
+            ? new int[]{1_000, 10_000, 100_000}
+            : new int[]{1_000, 10_000};
+    private static final long UNITS_PER_SAMPLE = TIMING ? 1_000_000 : 200_000;
+    private static final int TRIALS = TIMING ? 5 : 3;
+    /** Allowed growth of the per-unit time between two consecutive decades; quadratic growth is 10. */
+    private static final double DECADE_TIME_SLACK = 5.0;
+    /** Allowed growth of the per-unit time between the smallest and the largest size; quadratic growth is 1000. */
+    private static final double TOTAL_TIME_SLACK = 30.0;
+    private static final double ALLOCATION_SLACK = 2.0;
+    private static final String[] TOKEN_POOL = new String[64];
+
+    private static CommandParser<Object> parser;
+
+    @BeforeAll
+    static void compileParser() {
+        GeneratedClasses classes = GeneratedClasses.compile(JavaFileObjects.forSourceString(
+                "com.github.asm0dey.ScaleCmd",
+                "package com.github.asm0dey;\n"
+                        + "import com.github.asm0dey.cligen.runtime.*;\n"
+                        + "@Command(name = \"scale\")\n"
+                        + "public class ScaleCmd {\n"
+                        + "    @Option(names = {\"-n\", \"--name\"})\n"
+                        + "    public String name;\n"
+                        + "    @Option(names = {\"-c\", \"--count\"})\n"
+                        + "    public int count;\n"
+                        + "    @Option(names = {\"-v\", \"--verbose\"}, arity = \"0\")\n"
+                        + "    public boolean verbose;\n"
+                        + "    @Parameters(index = 0, required = false)\n"
+                        + "    public String first;\n"
+                        + "}\n"
+        ));
+        parser = classes.newInstance("com.github.asm0dey.ScaleCmdCommandParser");
+        for (int i = 0; i < TOKEN_POOL.length; i++) {
+            TOKEN_POOL[i] = "file-" + i + ".txt";
+        }
+    }
+
+    @Test
+    @Timeout(120)
+    public void testUnknownPositionalsScaleLinearly() throws Exception {
+        assertLinear("unknown positionals", SIZES, size -> {
+            String[] args = new String[size];
+            for (int i = 0; i < size; i++) {
+                args[i] = TOKEN_POOL[i % TOKEN_POOL.length];
+            }
+            return args;
+        }, args -> {
+            ParseResult<Object> result = parser.parse(args);
+            assertEquals(args.length - 1, result.getRemainingArgs().size());
+        });
+    }
+
+    @Test
+    @Timeout(120)
+    public void testLongOptionNamesScaleLinearly() throws Exception {
+        assertLinear("long option names", SIZES, size -> new String[]{"--" + "x".repeat(size - 2)}, args -> {
+            ParseException e = assertThrows(ParseException.class, () -> parser.parse(args));
+            assertTrue(e.getMessage().startsWith("Unknown option: --x"));
+        });
+    }
+
+    @Test
+    @Timeout(120)
+    public void testLongOptionValuesScaleLinearly() throws Exception {
+        assertLinear("long option values", SIZES, size -> new String[]{"--name", "v".repeat(size - 1)}, args -> {
+            parser.parse(args);
+        });
+    }
+
+    @Test
+    @Timeout(120)
+    public void testRepeatedOptionsScaleLinearly() throws Exception {
+        assertLinear("repeated options", SIZES, size -> {
+            String[] args = new String[size];
+            for (int i = 0; i + 1 < size; i += 2) {
+                args[i] = i % 4 == 0 ? "--count" : "-n";
+                args[i + 1] = i % 4 == 0 ? "7" : TOKEN_POOL[i % TOKEN_POOL.length];
+            }
+            if (size % 2 == 1) {
+                args[size - 1] = "-v";
+            }
+            return args;
+        }, args -> parser.parse(args));
+    }
+
+    @Test
+    @Timeout(300)
+    public void testNestedSubcommandPathsScaleLinearly() throws Throwable {
+        // Deep dispatcher chains recurse once per level, so run them on a thread with a large stack
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread worker = new Thread(null, () -> {
+            try {
+                assertLinear("nested subcommand paths", DEPTHS, depth -> {
+                    String[] args = new String[depth + 1];
+                    for (int i = 0; i < depth; i++) {
+                        args[i] = "sub";
+                    }
+                    args[depth] = "leaf";
+                    return args;
+                }, new NestedWorkload());
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        }, "nested-scaling", TIMING ? 2L << 30 : 256L << 20);
+        worker.start();
+        worker.join();
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+
+    private static void assertLinear(String scenario, int[] sizes, Input input, Workload workload) throws Exception {
+        // Check after every size, so that a quadratic regression fails before the largest inputs are tried
+        List<Cost> costs = new ArrayList<>();
+        for (int size : sizes) {
+            String[] args = input.create(size);
+            workload.prepare(args);
+            costs.add(measure(size, args, workload));
+            if (costs.size() == 1) {
+                continue;
+            }
+            Cost smallest = costs.get(0);
+            Cost previous = costs.get(costs.size() - 2);
+            Cost current = costs.get(costs.size() - 1);
+            if (TIMING) {
+                assertTrue(current.nanosPerUnit <= DECADE_TIME_SLACK * previous.nanosPerUnit,
+                        scenario + ": time per token grew from " + previous + " to " + current);
+                assertTrue(current.nanosPerUnit <= TOTAL_TIME_SLACK * smallest.nanosPerUnit,
+                        scenario + ": time per token grew from " + smallest + " to " + current);
+            }
+            assertTrue(current.bytesPerUnit <= ALLOCATION_SLACK * smallest.bytesPerUnit + 1.0,
+                    scenario + ": allocation per token grew from " + smallest + " to " + current);
+        }
+    }
+
+    private static Cost measure(int size, String[] args, Workload workload) throws Exception {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        int repetitions = (int) Math.max(1, UNITS_PER_SAMPLE / size);
+
+        // Warm up so that the measured trials run compiled code
+        for (int i = 0; i < repetitions; i++) {
+            workload.run(args);
+        }
+
+        long bestNanos = Long.MAX_VALUE;
+        long bestBytes = Long.MAX_VALUE;
+        for (int trial = 0; trial < TRIALS; trial++) {
+            long startBytes = threads.getCurrentThreadAllocatedBytes();
+            long startNanos = System.nanoTime();
+            for (int i = 0; i < repetitions; i++) {
+                workload.run(args);
+            }
+            long nanos = System.nanoTime() - startNanos;
+            long bytes = threads.getCurrentThreadAllocatedBytes() - startBytes;
+            bestNanos = Math.min(bestNanos, nanos);
+            bestBytes = Math.min(bestBytes, bytes);
+        }
+        double units = (double) size * repetitions;
+        return new Cost(size, bestNanos / units, bestBytes / units);
+    }
+
+    private record Cost(int size, double nanosPerUnit, double bytesPerUnit) {
+        @Override
+        public String toString() {
+            return String.format("%.2f ns/%.2f B per token at %d", nanosPerUnit, bytesPerUnit, size);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Input {
+        String[] create(int size);
+    }
+
+    @FunctionalInterface
+    private interface Workload {
+        void run(String[] args) throws Exception;
+
+        default void prepare(String[] args) {
+        }
+    }
+
+    /**
+     * Dispatches {@code sub sub ... sub leaf} through one {@link CommandDispatcher} per path segment.
+     */
+    private static final class NestedWorkload implements Workload {
+        private CommandDispatcher root;
+
+        @Override
+        public void prepare(String[] args) {
+            CommandDispatcher dispatcher = new CommandDispatcher("level", "1");
+            dispatcher.register("sub", parser);
+            for (int i = 1; i < args.length - 1; i++) {
+                CommandDispatcher parent = new CommandDispatcher("level", "1");
+                parent.register("sub", new NestedParser(dispatcher));
+                dispatcher = parent;
+            }
+            root = dispatcher;
+        }
+
+        @Override
+        public void run(String[] args) throws Exception {
+            ParseResult<?> result = root.dispatch(args);
+            assertNotNull(result.getCommand());
+        }
+    }
+
+    private static final class NestedParser implements CommandParser<Object> {
+        private final CommandDispatcher next;
+
+        NestedParser(CommandDispatcher next) {
+            this.next = next;
+        }
+
+        @Override
+        public ParseResult<Object> parse(String[] args) throws ParseException {
+            return parse(args, 0);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public ParseResult<Object> parse(String[] args, int fromIndex) throws ParseException {
+            return (ParseResult<Object>) next.dispatch(args, fromIndex);
+        }
+
+        @Override
+        public String getHelpText() {
+            return "";
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.github.asm0dey.cligen.runtime;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Conversions of I/O-bound option values that run while a generated parser keeps consuming tokens.
+ * <p>
+ * Generated parsers create one instance per parse for options declared with
+ * {@code @Option(ioBound = true)}, {@link #submit submit} every conversion as soon as its value
+ * is read and {@link #await(ParseTrace) await} them all before building the command.
+ * Failures are reported in token order, so the error a user sees does not depend on
+ * which converter happens to finish first.
+ * <p>
+ * Conversions run on the executor set with {@link #setExecutor(Executor)}, by default a
+ * cached pool of daemon threads. On Java 21 and later, pass
+ * {@code Executors.newVirtualThreadPerTaskExecutor()} to run them on virtual threads.
+ */
+public final class AsyncConversions {
+    private static final ConversionEvent CONVERSION_PROBE = new ConversionEvent();
+    private static final ExecutorService DEFAULT_EXECUTOR = Executors.newCachedThreadPool(new DaemonThreadFactory());
+
+    private static volatile Executor executor = DEFAULT_EXECUTOR;
+
+    private final String command;
+    private final List<Pending<?>> pending = new ArrayList<>(4);
+
+    public AsyncConversions(String command) {
+        this.command = command;
+    }
+
+    /**
+     * Set the executor running the conversions of all parsers, or restore the default by passing {@code null}.
+     */
+    public static void setExecutor(Executor conversionExecutor) {
+        executor = conversionExecutor == null ? DEFAULT_EXECUTOR : conversionExecutor;
+    }
+
+    public static Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Start converting {@code value} for {@code option}. The result is available from
+     * {@link Pending#get()} once {@link #await(ParseTrace)} has returned.
+     */
+    public <T> Pending<T> submit(String option, String converterName, Converter<? extends T> converter, String value) {
+        Pending<T> conversion = new Pending<>(command, option, converterName, converter, value);
+        pending.add(conversion);
+        try {
+            executor.execute(conversion);
+        } catch (RejectedExecutionException e) {
+            conversion.run();
+        }
+        return conversion;
+    }
+
+    /**
+     * Wait for the submitted conversions in submission order.
+     *
+     * @throws ParseException for the first submitted conversion that failed.
+     */
+    public void await(ParseTrace trace) throws ParseException {
+        for (Pending<?> conversion : pending) {
+            try {
+                conversion.done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ParseException("Interrupted while converting option " + conversion.option);
+            }
+            Throwable failure = conversion.failure;
+            if (failure instanceof Error error) {
+                throw error;
+            }
+            if (trace != null) {
+                trace.asyncConversionFinished(conversion.option, conversion.converterName,
+                        conversion.durationNanos, (Exception) failure);
+            }
+            if (failure != null) {
+                throw new ParseException("Failed to convert option " + conversion.option + ": " + failure.getMessage());
+            }
+        }
+    }
+
+    /**
+     * A conversion started by {@link #submit}.
+     */
+    public static final class Pending<T> implements Runnable {
+        private final String command;
+        private final String option;
+        private final String converterName;
+        private final Converter<? extends T> converter;
+        private final String value;
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        private T result;
+        private Throwable failure;
+        private long durationNanos;
+
+        private Pending(String command, String option, String converterName,
+                        Converter<? extends T> converter, String value) {
+            this.command = command;
+            this.option = option;
+            this.converterName = converterName;
+            this.converter = converter;
+            this.value = value;
+        }
+
+        @Override
+        public void run() {
+            ConversionEvent event = null;
+            if (CONVERSION_PROBE.isEnabled()) {
+                event = new ConversionEvent();
+                event.begin();
+            }
+            long startNanos = System.nanoTime();
+            try {
+                result = converter.convert(value);
+            } catch (Throwable t) {
+                failure = t;
+            } finally {
+                durationNanos = System.nanoTime() - startNanos;
+                if (event != null) {
+                    event.end();
+                    if (event.shouldCommit()) {
+                        event.command = command;
+                        event.option = option;
+                        event.converter = converterName;
+                        event.failure = failure == null ? null : failure.toString();
+                        event.commit();
+                    }
+                }
+                done.countDown();
+            }
+        }
+
+        /**
+         * The converted value; only valid after {@link AsyncConversions#await(ParseTrace)} succeeded.
+         */
+        public T get() {
+            return result;
+        }
+    }
+
+    private static final class DaemonThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, "cli-gen-conversion-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
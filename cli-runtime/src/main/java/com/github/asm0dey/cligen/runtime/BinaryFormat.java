@@ -0,0 +1,133 @@
+package com.github.asm0dey.cligen.runtime;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Primitive encodings shared by generated {@link CommandCodec}s.
+ */
+public final class BinaryFormat {
+    /**
+     * First byte of every encoded command.
+     */
+    public static final int MAGIC = 0xC1;
+    /**
+     * Version of the encoding itself; the layout of a command is versioned by its schema hash.
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    private BinaryFormat() {
+    }
+
+    public static void writeHeader(DataOutput out, int schemaHash) throws IOException {
+        out.writeByte(MAGIC);
+        out.writeByte(FORMAT_VERSION);
+        out.writeInt(schemaHash);
+    }
+
+    /**
+     * Read a header and check that it was written for {@code schemaHash}.
+     */
+    public static void readHeader(DataInput in, int schemaHash, String command) throws IOException {
+        int magic = in.readUnsignedByte();
+        int version = in.readUnsignedByte();
+        if (magic != MAGIC || version != FORMAT_VERSION) {
+            throw new StreamCorruptedException("Not an encoded command (magic " + magic + ", version " + version + ")");
+        }
+        int actual = in.readInt();
+        if (actual != schemaHash) {
+            throw new StreamCorruptedException("Encoded " + command + " has schema " + Integer.toHexString(actual)
+                    + " but this codec expects " + Integer.toHexString(schemaHash));
+        }
+    }
+
+    /**
+     * Write an unsigned LEB128 varint: 7 bits per byte, least significant group first.
+     */
+    public static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    public static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("Malformed varint");
+    }
+
+    /**
+     * Write a signed value as a zigzag varint, so that small negative numbers stay short.
+     */
+    public static void writeSignedVarLong(DataOutput out, long value) throws IOException {
+        writeVarLong(out, (value << 1) ^ (value >> 63));
+    }
+
+    public static long readSignedVarLong(DataInput in) throws IOException {
+        long raw = readVarLong(in);
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+
+    public static int readSignedVarInt(DataInput in) throws IOException {
+        long value = readSignedVarLong(in);
+        if (value != (int) value) {
+            throw new StreamCorruptedException("Varint out of int range: " + value);
+        }
+        return (int) value;
+    }
+
+    /**
+     * Write a string as its UTF-8 length plus one followed by the bytes; {@code null} is a single zero byte.
+     */
+    public static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeByte(0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length + 1L);
+        out.write(bytes);
+    }
+
+    public static String readString(DataInput in) throws IOException {
+        long length = readVarLong(in);
+        if (length == 0) {
+            return null;
+        }
+        if (length - 1 > Integer.MAX_VALUE) {
+            throw new StreamCorruptedException("String too long: " + (length - 1));
+        }
+        byte[] bytes = new byte[(int) (length - 1)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Write an enum constant as its ordinal plus one; {@code null} is zero.
+     */
+    public static void writeEnum(DataOutput out, Enum<?> value) throws IOException {
+        writeVarLong(out, value == null ? 0 : value.ordinal() + 1L);
+    }
+
+    public static <E extends Enum<E>> E readEnum(DataInput in, E[] constants) throws IOException {
+        long index = readVarLong(in);
+        if (index == 0) {
+            return null;
+        }
+        if (index > constants.length) {
+            throw new StreamCorruptedException("Unknown enum ordinal " + (index - 1));
+        }
+        return constants[(int) (index - 1)];
+    }
+}
@@ -0,0 +1,43 @@
+package com.github.asm0dey.cligen.runtime;
+
+import java.io.*;
+
+/**
+ * Binary encoder and decoder for a parsed command, generated as {@code XxxCommandCodec}.
+ * <p>
+ * The encoding is compact and versioned: a short header identifies the format and the
+ * command's schema, followed by the option and parameter values as varints, raw IEEE
+ * floats and length-prefixed UTF-8 strings (see {@link BinaryFormat}). No Java
+ * serialization or reflection is involved, so a command parsed once can be forwarded
+ * to another process and rebuilt there without running its converters again.
+ *
+ * @param <T> the command type.
+ */
+@SuppressWarnings("unused")
+public interface CommandCodec<T> {
+    /**
+     * Write {@code command} to {@code out}.
+     */
+    void encode(T command, DataOutput out) throws IOException;
+
+    /**
+     * Read a command written by {@link #encode(Object, DataOutput)}.
+     *
+     * @throws IOException if the input is truncated or was written for a different schema.
+     */
+    T decode(DataInput in) throws IOException;
+
+    default byte[] toBytes(T command) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            encode(command, new DataOutputStream(bytes));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    default T fromBytes(byte[] bytes) throws IOException {
+        return decode(new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+}
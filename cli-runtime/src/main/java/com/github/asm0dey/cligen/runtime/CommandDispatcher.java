@@ -1,14 +1,22 @@
 package com.github.asm0dey.cligen.runtime;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Dispatches command-line arguments to appropriate CommandParser implementations
+ * <p>
+ * Commands live in an immutable table published through a single volatile reference.
+ * Registering or unregistering copies the table and swaps it in with a compare-and-set, so
+ * commands can come and go while other threads dispatch, and a lookup is one volatile read
+ * and a probe of a small open-addressing array, without locks. Help texts and name listings
+ * are each built from one snapshot of the table.
  */
 public class CommandDispatcher {
-    private final Map<String, CommandParser<?>> commands = new HashMap<>();
+    private final AtomicReference<CommandTable> table = new AtomicReference<>(CommandTable.EMPTY);
     private final String appName;
     private final String appVersion;
+    private volatile CommandMetrics metrics;
 
     public CommandDispatcher(String appName, String appVersion) {
         this.appName = appName;
@@ -16,10 +24,89 @@ public class CommandDispatcher {
     }
 
     /**
-     * Register a command parser for a command name
+     * Register a command parser for a command name, replacing any command of that name
      */
     public <T> void register(String commandName, CommandParser<T> parser) {
-        commands.put(commandName, parser);
+        Objects.requireNonNull(parser, "parser");
+        update(List.of(new Registration(commandName, null, parser)), true);
+    }
+
+    /**
+     * Register every command of {@code index} that is not registered yet. Parsers are only
+     * loaded when their command is dispatched or its help is requested; the global help is
+     * built from the index.
+     */
+    public void register(CommandIndex index) {
+        List<Registration> registrations = new ArrayList<>();
+        for (CommandIndex.Entry entry : index.entries()) {
+            registrations.add(new Registration(entry.name(), index, null));
+        }
+        update(registrations, false);
+    }
+
+    /**
+     * Remove a command and its metrics; threads already dispatching it finish with the parser they found.
+     *
+     * @return whether the command was registered.
+     */
+    public boolean unregister(String commandName) {
+        while (true) {
+            CommandTable current = table.get();
+            if (current.get(commandName) == null) {
+                return false;
+            }
+            if (table.compareAndSet(current, current.without(commandName))) {
+                CommandMetrics currentMetrics = metrics;
+                if (currentMetrics != null) {
+                    currentMetrics.unregister(commandName);
+                    // The command may have been registered again in between
+                    if (table.get().get(commandName) != null) {
+                        currentMetrics.register(commandName);
+                    }
+                }
+                return true;
+            }
+        }
+    }
+
+    private void update(List<Registration> registrations, boolean replace) {
+        CommandTable current;
+        do {
+            current = table.get();
+        } while (!table.compareAndSet(current, current.with(registrations, replace)));
+        CommandMetrics currentMetrics = metrics;
+        if (currentMetrics != null) {
+            for (Registration registration : registrations) {
+                currentMetrics.register(registration.name);
+            }
+        }
+    }
+
+    /**
+     * Start collecting per-command usage and latency metrics.
+     * Calling this again returns the already active metrics.
+     */
+    public synchronized CommandMetrics enableMetrics() {
+        CommandMetrics currentMetrics = metrics;
+        if (currentMetrics == null) {
+            currentMetrics = new CommandMetrics();
+            for (String commandName : getCommandNames()) {
+                currentMetrics.register(commandName);
+            }
+            metrics = currentMetrics;
+            // Commands registered before the write above could not see the metrics yet
+            for (String commandName : getCommandNames()) {
+                currentMetrics.register(commandName);
+            }
+        }
+        return currentMetrics;
+    }
+
+    /**
+     * Get the metrics collected by this dispatcher, or {@code null} if {@link #enableMetrics()} was not called.
+     */
+    public CommandMetrics getMetrics() {
+        return metrics;
     }
 
     /**
@@ -27,11 +114,20 @@ public class CommandDispatcher {
      * First argument is the command name
      */
     public ParseResult<?> dispatch(String[] args) throws ParseException {
-        if (args.length == 0) {
+        return dispatch(args, 0);
+    }
+
+    /**
+     * Parse arguments starting at {@code fromIndex} and return the result.
+     * The token at {@code fromIndex} is the command name; the tokens after it are
+     * parsed in place, without copying the array.
+     */
+    public ParseResult<?> dispatch(String[] args, int fromIndex) throws ParseException {
+        if (fromIndex >= args.length) {
             throw new ParseException("No command specified. Use --help for available commands.");
         }
 
-        String commandName = args[0];
+        String commandName = args[fromIndex];
 
         // Handle global help
         if ("--help".equals(commandName) || "-h".equals(commandName) || "help".equals(commandName)) {
@@ -45,26 +141,59 @@ public class CommandDispatcher {
             return null;
         }
 
+        ParseTrace trace = ParseTrace.beginDispatch(commandName, args.length - fromIndex);
+        CommandMetrics currentMetrics = metrics;
+        if (trace == null && currentMetrics == null) {
+            return dispatch(commandName, args, fromIndex);
+        }
+        long startNanos = System.nanoTime();
+        try {
+            ParseResult<?> result = dispatch(commandName, args, fromIndex);
+            if (currentMetrics != null) {
+                currentMetrics.record(commandName, System.nanoTime() - startNanos, false);
+            }
+            if (trace != null) {
+                trace.end(null);
+            }
+            return result;
+        } catch (ParseException | RuntimeException e) {
+            if (currentMetrics != null) {
+                currentMetrics.record(commandName, System.nanoTime() - startNanos, true);
+            }
+            if (trace != null) {
+                trace.end(e);
+            }
+            throw e;
+        }
+    }
+
+    private ParseResult<?> dispatch(String commandName, String[] args, int fromIndex) throws ParseException {
         // Find the command parser
-        CommandParser<?> parser = commands.get(commandName);
-        if (parser == null) {
-            throw new ParseException("Unknown command: " + commandName + ". Use --help for available commands.");
+        CommandTable commands = table.get();
+        Registration registration = commands.get(commandName);
+        if (registration == null) {
+            String suggestion = commands.closest(commandName);
+            throw new ParseException("Unknown command: " + commandName
+                    + (suggestion == null ? ". " : ". Did you mean " + suggestion + "? ")
+                    + "Use --help for available commands.");
         }
 
         // Parse remaining arguments (skip command name)
-        String[] remainingArgs = Arrays.copyOfRange(args, 1, args.length);
-        return parser.parse(remainingArgs);
+        return registration.parser().parse(args, fromIndex + 1);
     }
 
     /**
      * Get help for a specific command
      */
     public String getCommandHelp(String commandName) throws ParseException {
-        CommandParser<?> parser = commands.get(commandName);
-        if (parser == null) {
-            throw new ParseException("Unknown command: " + commandName);
+        CommandTable commands = table.get();
+        Registration registration = commands.get(commandName);
+        if (registration == null) {
+            String suggestion = commands.closest(commandName);
+            throw new ParseException("Unknown command: " + commandName
+                    + (suggestion == null ? "" : ". Did you mean " + suggestion + "?"));
         }
-        return parser.getHelpText();
+        return registration.parser().getHelpText();
     }
 
     /**
@@ -77,8 +206,18 @@ public class CommandDispatcher {
         help.append("Usage: ").append(appName.toLowerCase()).append(" <command> [options]\n\n");
         help.append("Commands:\n");
 
-        for (String commandName : commands.keySet()) {
-            help.append("  ").append(commandName).append("\n");
+        Registration[] registrations = table.get().registrations;
+        int width = 0;
+        for (Registration registration : registrations) {
+            width = Math.max(width, registration.name.length());
+        }
+        for (Registration registration : registrations) {
+            help.append("  ").append(registration.name);
+            String description = registration.description();
+            if (!description.isEmpty()) {
+                help.append(" ".repeat(width - registration.name.length() + 2)).append(description);
+            }
+            help.append("\n");
         }
 
         help.append("\nGlobal Options:\n");
@@ -90,9 +229,129 @@ public class CommandDispatcher {
     }
 
     /**
-     * Get list of all registered commands
+     * Get the names of all registered commands in registration order, as an unmodifiable
+     * snapshot that later registrations do not change
      */
     public Set<String> getCommandNames() {
-        return commands.keySet();
+        return table.get().names;
+    }
+
+    /**
+     * A registered command; commands from an index load their parser on first use.
+     */
+    private static final class Registration {
+        private final String name;
+        private final CommandIndex index;
+        private volatile CommandParser<?> parser;
+
+        Registration(String name, CommandIndex index, CommandParser<?> parser) {
+            this.name = name;
+            this.index = index;
+            this.parser = parser;
+        }
+
+        CommandParser<?> parser() {
+            CommandParser<?> loaded = parser;
+            if (loaded == null) {
+                synchronized (this) {
+                    loaded = parser;
+                    if (loaded == null) {
+                        loaded = index.newParser(name);
+                        parser = loaded;
+                    }
+                }
+            }
+            return loaded;
+        }
+
+        String description() {
+            return index == null ? "" : index.entry(name).description();
+        }
+    }
+
+    /**
+     * An immutable snapshot of the registered commands, hashed with open addressing.
+     */
+    private static final class CommandTable {
+        static final CommandTable EMPTY = new CommandTable(new Registration[0]);
+
+        final Registration[] registrations;
+        final Set<String> names;
+        private final Registration[] slots;
+        // Built on the first miss; racing threads may both build it, and either result is fine
+        private SuggestionIndex suggestions;
+
+        private CommandTable(Registration[] registrations) {
+            this.registrations = registrations;
+            Set<String> commandNames = new LinkedHashSet<>();
+            // At most half full, so a probe ends quickly at an empty slot
+            this.slots = new Registration[Integer.highestOneBit(Math.max(1, registrations.length) * 2) * 2];
+            for (Registration registration : registrations) {
+                commandNames.add(registration.name);
+                int slot = spread(registration.name.hashCode()) & (slots.length - 1);
+                while (slots[slot] != null) {
+                    slot = (slot + 1) & (slots.length - 1);
+                }
+                slots[slot] = registration;
+            }
+            this.names = Collections.unmodifiableSet(commandNames);
+        }
+
+        Registration get(String commandName) {
+            int slot = spread(commandName.hashCode()) & (slots.length - 1);
+            Registration registration;
+            while ((registration = slots[slot]) != null) {
+                if (registration.name.equals(commandName)) {
+                    return registration;
+                }
+                slot = (slot + 1) & (slots.length - 1);
+            }
+            return null;
+        }
+
+        /**
+         * A copy with {@code added} appended; existing commands of the same names are replaced,
+         * or kept if {@code replace} is false.
+         */
+        CommandTable with(List<Registration> added, boolean replace) {
+            List<Registration> copy = new ArrayList<>(Arrays.asList(registrations));
+            Map<String, Integer> positions = new HashMap<>();
+            for (int i = 0; i < copy.size(); i++) {
+                positions.put(copy.get(i).name, i);
+            }
+            for (Registration registration : added) {
+                Integer position = positions.get(registration.name);
+                if (position == null) {
+                    positions.put(registration.name, copy.size());
+                    copy.add(registration);
+                } else if (replace) {
+                    copy.set(position, registration);
+                }
+            }
+            return new CommandTable(copy.toArray(new Registration[0]));
+        }
+
+        CommandTable without(String commandName) {
+            List<Registration> copy = new ArrayList<>(registrations.length);
+            for (Registration registration : registrations) {
+                if (!registration.name.equals(commandName)) {
+                    copy.add(registration);
+                }
+            }
+            return new CommandTable(copy.toArray(new Registration[0]));
+        }
+
+        String closest(String commandName) {
+            SuggestionIndex index = suggestions;
+            if (index == null) {
+                index = SuggestionIndex.of(names);
+                suggestions = index;
+            }
+            return index.closest(commandName);
+        }
+
+        private static int spread(int hash) {
+            return hash ^ (hash >>> 16);
+        }
     }
 }
@@ -0,0 +1,122 @@
+package com.github.asm0dey.cligen.runtime;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The commands of every jar on the class path, read from the index the annotation processor writes.
+ * <p>
+ * Every compilation that generates parsers also writes {@value #RESOURCE}, with one line per
+ * command holding its name, its parser class and the first line of its description, separated
+ * by tabs. {@link #load(ClassLoader)} reads each jar's index with a single resource read and
+ * merges them; when several jars define the same command, the first one on the class path
+ * wins, as with {@link java.util.ServiceLoader}. Nothing else is loaded until
+ * {@link #newParser(String)} is called for the command that actually runs, so an application
+ * with many plugin jars only pays for the listing, and {@link CommandDispatcher#register(CommandIndex)}
+ * can answer {@code --help} from the index alone.
+ */
+public final class CommandIndex {
+    public static final String RESOURCE = "META-INF/cli-gen/commands";
+
+    private final ClassLoader loader;
+    private final Map<String, Entry> entries;
+
+    /**
+     * One indexed command.
+     *
+     * @param parserClass the binary name of the generated parser.
+     * @param description the first line of the command's description, possibly empty.
+     */
+    public record Entry(String name, String parserClass, String description) {
+    }
+
+    private CommandIndex(ClassLoader loader, Map<String, Entry> entries) {
+        this.loader = loader;
+        this.entries = Collections.unmodifiableMap(entries);
+    }
+
+    /**
+     * Read the indexes visible to the class loader of this class.
+     */
+    public static CommandIndex load() throws IOException {
+        return load(CommandIndex.class.getClassLoader());
+    }
+
+    /**
+     * Read and merge every index visible to {@code loader}, which later loads the parsers.
+     */
+    public static CommandIndex load(ClassLoader loader) throws IOException {
+        Map<String, Entry> entries = new LinkedHashMap<>();
+        Enumeration<URL> resources = loader.getResources(RESOURCE);
+        while (resources.hasMoreElements()) {
+            URL resource = resources.nextElement();
+            String index;
+            try (InputStream in = resource.openStream()) {
+                index = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            int start = 0;
+            while (start < index.length()) {
+                int end = index.indexOf('\n', start);
+                if (end < 0) {
+                    end = index.length();
+                }
+                if (end > start && index.charAt(start) != '#') {
+                    int parserStart = index.indexOf('\t', start) + 1;
+                    int descriptionStart = index.indexOf('\t', parserStart) + 1;
+                    if (parserStart == 0 || descriptionStart == 0 || descriptionStart > end) {
+                        throw new IOException("Malformed command index " + resource + ": "
+                                + index.substring(start, end));
+                    }
+                    String name = index.substring(start, parserStart - 1);
+                    entries.putIfAbsent(name, new Entry(name, index.substring(parserStart, descriptionStart - 1),
+                            index.substring(descriptionStart, end)));
+                }
+                start = end + 1;
+            }
+        }
+        return new CommandIndex(loader, entries);
+    }
+
+    /**
+     * The indexed commands in class path order.
+     */
+    public Collection<Entry> entries() {
+        return entries.values();
+    }
+
+    /**
+     * The entry of {@code commandName}, or {@code null} if no jar defines it.
+     */
+    public Entry entry(String commandName) {
+        return entries.get(commandName);
+    }
+
+    /**
+     * Load and instantiate the parser of {@code commandName}.
+     *
+     * @throws IllegalArgumentException if no jar defines the command.
+     * @throws IllegalStateException    if the parser class cannot be loaded or instantiated.
+     */
+    public CommandParser<?> newParser(String commandName) {
+        Entry entry = entries.get(commandName);
+        if (entry == null) {
+            throw new IllegalArgumentException("No indexed command " + commandName);
+        }
+        try {
+            return Class.forName(entry.parserClass(), true, loader)
+                    .asSubclass(CommandParser.class)
+                    .getConstructor()
+                    .newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            throw new IllegalStateException("Cannot load parser " + entry.parserClass() + " of command "
+                    + commandName, e);
+        }
+    }
+}
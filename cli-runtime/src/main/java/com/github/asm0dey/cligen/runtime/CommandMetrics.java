@@ -0,0 +1,208 @@
+package com.github.asm0dey.cligen.runtime;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-command usage and latency metrics collected by {@link CommandDispatcher}.
+ * <p>
+ * Counters are {@link LongAdder}s and latencies go into a {@link LatencyHistogram},
+ * so dispatching threads never contend on a shared counter. Read the values with
+ * {@link #snapshot()} or over JMX after {@link #registerMBean(String)}.
+ */
+public final class CommandMetrics implements CommandMetricsMXBean {
+    private final Map<String, CommandStats> stats = new ConcurrentHashMap<>();
+    private final LongAdder unknownCommands = new LongAdder();
+
+    CommandMetrics() {
+    }
+
+    /**
+     * Immutable view of the metrics of one command at the time of {@link #snapshot()}.
+     *
+     * @param command        the command name.
+     * @param invocations    the number of dispatches, failed ones included.
+     * @param errors         the number of dispatches that ended with an exception.
+     * @param totalNanos     the total parse latency of all dispatches.
+     * @param latencyBuckets the latency histogram, see {@link LatencyHistogram#bucketUpperBoundsMicros()}.
+     */
+    public record Snapshot(String command, long invocations, long errors, long totalNanos, long[] latencyBuckets) {
+        public double meanLatencyMicros() {
+            return invocations == 0 ? 0 : totalNanos / 1000.0 / invocations;
+        }
+
+        public long latencyPercentileMicros(double percentile) {
+            return LatencyHistogram.percentileMicros(latencyBuckets, percentile);
+        }
+    }
+
+    void register(String command) {
+        stats.computeIfAbsent(command, name -> new CommandStats());
+    }
+
+    void unregister(String command) {
+        stats.remove(command);
+    }
+
+    void record(String command, long nanos, boolean failed) {
+        CommandStats commandStats = stats.get(command);
+        if (commandStats == null) {
+            unknownCommands.increment();
+            return;
+        }
+        commandStats.invocations.increment();
+        if (failed) {
+            commandStats.errors.increment();
+        }
+        commandStats.latency.record(nanos);
+    }
+
+    /**
+     * Get a snapshot of every registered command, sorted by command name.
+     */
+    public List<Snapshot> snapshot() {
+        List<Snapshot> snapshots = new ArrayList<>(stats.size());
+        for (String command : new TreeSet<>(stats.keySet())) {
+            snapshots.add(snapshot(command));
+        }
+        return snapshots;
+    }
+
+    /**
+     * Get a snapshot of one command, or {@code null} if it is not registered.
+     */
+    public Snapshot snapshot(String command) {
+        CommandStats commandStats = stats.get(command);
+        if (commandStats == null) {
+            return null;
+        }
+        return new Snapshot(command,
+                commandStats.invocations.sum(),
+                commandStats.errors.sum(),
+                commandStats.latency.totalNanos(),
+                commandStats.latency.counts());
+    }
+
+    /**
+     * Publish these metrics through the platform MBean server under
+     * {@code com.github.asm0dey.cligen:type=CommandDispatcher,name=<name>}.
+     *
+     * @return the name the MBean was registered with.
+     */
+    public ObjectName registerMBean(String name) {
+        try {
+            ObjectName objectName = objectName(name);
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(this, objectName);
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("Failed to register metrics MBean for " + name, e);
+        }
+    }
+
+    /**
+     * Remove the MBean published by {@link #registerMBean(String)}, if any.
+     */
+    public void unregisterMBean(String name) {
+        try {
+            ObjectName objectName = objectName(name);
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Failed to unregister metrics MBean for " + name, e);
+        }
+    }
+
+    @Override
+    public String[] getCommandNames() {
+        return new TreeSet<>(stats.keySet()).toArray(new String[0]);
+    }
+
+    @Override
+    public long getTotalInvocations() {
+        long total = 0;
+        for (CommandStats commandStats : stats.values()) {
+            total += commandStats.invocations.sum();
+        }
+        return total;
+    }
+
+    @Override
+    public long getTotalErrors() {
+        long total = 0;
+        for (CommandStats commandStats : stats.values()) {
+            total += commandStats.errors.sum();
+        }
+        return total;
+    }
+
+    @Override
+    public long getUnknownCommands() {
+        return unknownCommands.sum();
+    }
+
+    @Override
+    public long getInvocations(String command) {
+        CommandStats commandStats = stats.get(command);
+        return commandStats == null ? 0 : commandStats.invocations.sum();
+    }
+
+    @Override
+    public long getErrors(String command) {
+        CommandStats commandStats = stats.get(command);
+        return commandStats == null ? 0 : commandStats.errors.sum();
+    }
+
+    @Override
+    public double getMeanLatencyMicros(String command) {
+        Snapshot snapshot = snapshot(command);
+        return snapshot == null ? 0 : snapshot.meanLatencyMicros();
+    }
+
+    @Override
+    public long getLatencyPercentileMicros(String command, double percentile) {
+        Snapshot snapshot = snapshot(command);
+        return snapshot == null ? 0 : snapshot.latencyPercentileMicros(percentile);
+    }
+
+    @Override
+    public long[] getLatencyHistogram(String command) {
+        CommandStats commandStats = stats.get(command);
+        return commandStats == null ? new long[LatencyHistogram.BUCKET_COUNT] : commandStats.latency.counts();
+    }
+
+    @Override
+    public long[] getLatencyBucketUpperBoundsMicros() {
+        return LatencyHistogram.bucketUpperBoundsMicros();
+    }
+
+    @Override
+    public void reset() {
+        for (CommandStats commandStats : stats.values()) {
+            commandStats.invocations.reset();
+            commandStats.errors.reset();
+            commandStats.latency.reset();
+        }
+        unknownCommands.reset();
+    }
+
+    private static ObjectName objectName(String name) throws JMException {
+        return new ObjectName("com.github.asm0dey.cligen:type=CommandDispatcher,name=" + ObjectName.quote(name));
+    }
+
+    private static final class CommandStats {
+        final LongAdder invocations = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LatencyHistogram latency = new LatencyHistogram();
+    }
+}
@@ -0,0 +1,29 @@
+package com.github.asm0dey.cligen.runtime;
+
+/**
+ * Management interface of {@link CommandMetrics}, published through the platform MBean server.
+ */
+@SuppressWarnings("unused")
+public interface CommandMetricsMXBean {
+    String[] getCommandNames();
+
+    long getTotalInvocations();
+
+    long getTotalErrors();
+
+    long getUnknownCommands();
+
+    long getInvocations(String command);
+
+    long getErrors(String command);
+
+    double getMeanLatencyMicros(String command);
+
+    long getLatencyPercentileMicros(String command, double percentile);
+
+    long[] getLatencyHistogram(String command);
+
+    long[] getLatencyBucketUpperBoundsMicros();
+
+    void reset();
+}
@@ -0,0 +1,36 @@
+package com.github.asm0dey.cligen.runtime;
+
+import java.util.List;
+
+/**
+ * Immutable description of a command, generated at compile time.
+ * <p>
+ * The annotations are not retained at runtime, so tools that need to know a command's
+ * options, such as documentation generators or config validators, read this model
+ * through {@link CommandParser#getModel()} instead of scanning classes.
+ *
+ * @param name        the command name.
+ * @param description the command description, empty if none was given.
+ * @param version     the command version, empty if none was given.
+ * @param options     the options in declaration order.
+ * @param parameters  the positional parameters ordered by index.
+ */
+public record CommandModel(String name, String description, String version,
+                           List<OptionModel> options, List<ParameterModel> parameters) {
+    public CommandModel {
+        options = List.copyOf(options);
+        parameters = List.copyOf(parameters);
+    }
+
+    /**
+     * Find the option accepting {@code name}, or {@code null} if there is none.
+     */
+    public OptionModel option(String name) {
+        for (OptionModel option : options) {
+            if (option.names().contains(name)) {
+                return option;
+            }
+        }
+        return null;
+    }
+}
@@ -1,7 +1,93 @@
 package com.github.asm0dey.cligen.runtime;
 
+import java.util.Arrays;
+import java.util.List;
+
 @SuppressWarnings("unused")
 public interface CommandParser<T> {
     ParseResult<T> parse(String[] args) throws ParseException;
     String getHelpText();
+
+    /**
+     * Parse {@code args} starting at {@code fromIndex}, ignoring the tokens before it.
+     * Generated parsers read the array in place; this default copies the tail.
+     */
+    default ParseResult<T> parse(String[] args, int fromIndex) throws ParseException {
+        return parse(fromIndex == 0 ? args : Arrays.copyOfRange(args, fromIndex, args.length));
+    }
+
+    /**
+     * The optional operations of a parser. Generated parsers implement them over the fields
+     * directly; an operation that is not supported throws {@link UnsupportedOperationException}.
+     */
+    enum Capability {
+        /** {@link #getModel()} */
+        MODEL,
+        /** {@link #diff} */
+        DIFF,
+        /** {@link #fingerprint} */
+        FINGERPRINT,
+        /** {@link #withOverrides} */
+        OVERRIDES,
+        /** {@link #parseInto} */
+        REUSE
+    }
+
+    /**
+     * Whether this parser implements {@code capability}, so callers can check once up front
+     * instead of catching {@link UnsupportedOperationException}.
+     */
+    default boolean supports(Capability capability) {
+        return false;
+    }
+
+    /**
+     * Describe the command's options and parameters.
+     * Generated parsers return a constant built at compile time.
+     */
+    default CommandModel getModel() {
+        throw unsupported(Capability.MODEL);
+    }
+
+    /**
+     * List the options and parameters whose values differ between two commands, in declaration order.
+     */
+    default List<OptionChange> diff(T previous, T current) {
+        throw unsupported(Capability.DIFF);
+    }
+
+    /**
+     * Fingerprint the effective values of {@code command}, defaults included; see {@link Fingerprint}.
+     */
+    default Fingerprint fingerprint(T command) {
+        throw unsupported(Capability.FINGERPRINT);
+    }
+
+    /**
+     * Parse {@code args} as overrides of {@code base}: options and parameters given in
+     * {@code args} are converted and replace their values, every other value is taken from
+     * {@code base} as is, without converting it again. A map option given in {@code args}
+     * replaces the whole map. {@code base} is not modified.
+     */
+    default ParseResult<T> withOverrides(T base, String[] args) throws ParseException {
+        throw unsupported(Capability.OVERRIDES);
+    }
+
+    /**
+     * Parse {@code args} into the caller's {@code target} and {@code result} instead of new ones.
+     * The options and parameters of {@code target} are first reset to the values of a freshly
+     * constructed command. Generated parsers for command classes allocate nothing for
+     * integer, boolean and {@code String} options, which suits parsing on a hot path;
+     * records are immutable and cannot be reused.
+     *
+     * @param result overwritten and returned.
+     */
+    default ReusableParseResult<T> parseInto(T target, String[] args, ReusableParseResult<T> result)
+            throws ParseException {
+        throw unsupported(Capability.REUSE);
+    }
+
+    private UnsupportedOperationException unsupported(Capability capability) {
+        return new UnsupportedOperationException(getClass().getName() + " does not support " + capability);
+    }
 }
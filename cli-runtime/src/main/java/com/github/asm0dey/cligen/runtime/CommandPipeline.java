@@ -0,0 +1,240 @@
+package com.github.asm0dey.cligen.runtime;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs several commands of one invocation, such as {@code migrate up :: reindex :: warm-cache}.
+ * <p>
+ * The arguments are split on the separator, and every segment is parsed by the
+ * {@link CommandDispatcher} before anything runs, so a typo in the last command fails the
+ * whole invocation up front. Segments then run concurrently on the executor, except that
+ * a segment whose command was declared with {@link #dependsOn} waits for every segment of
+ * its prerequisites and is skipped if one of them failed. The exit code of the pipeline is
+ * the exit code of the first failed segment in argument order, or 0.
+ * <p>
+ * Segments run on the executor set with {@link #executor(Executor)}, by default a cached
+ * pool of daemon threads. On Java 21 and later, pass
+ * {@code Executors.newVirtualThreadPerTaskExecutor()} to run them on virtual threads.
+ */
+public final class CommandPipeline {
+    public static final String DEFAULT_SEPARATOR = "::";
+    /** The exit code of a segment whose runner threw an exception. */
+    public static final int EXIT_FAILURE = 1;
+
+    private static final ExecutorService DEFAULT_EXECUTOR = Executors.newCachedThreadPool(new DaemonThreadFactory());
+
+    private final CommandDispatcher dispatcher;
+    private final String separator;
+    private final Map<String, Set<String>> prerequisites = new HashMap<>();
+    private Executor executor = DEFAULT_EXECUTOR;
+
+    /**
+     * Runs a parsed segment.
+     */
+    @FunctionalInterface
+    public interface Runner {
+        /**
+         * @return the exit code of the command.
+         */
+        int run(String command, ParseResult<?> result) throws Exception;
+    }
+
+    /**
+     * What happened to one segment.
+     *
+     * @param exitCode the runner's exit code, {@link #EXIT_FAILURE} if it threw, or 0 if skipped.
+     * @param failure  the exception the runner threw, or {@code null}.
+     * @param skipped  whether the segment did not run because a prerequisite failed.
+     */
+    public record Outcome(String command, int exitCode, Exception failure, boolean skipped) {
+        public boolean succeeded() {
+            return !skipped && exitCode == 0;
+        }
+    }
+
+    /**
+     * The outcome of every segment in argument order and the aggregated exit code.
+     */
+    public record Report(int exitCode, List<Outcome> outcomes) {
+    }
+
+    public CommandPipeline(CommandDispatcher dispatcher) {
+        this(dispatcher, DEFAULT_SEPARATOR);
+    }
+
+    public CommandPipeline(CommandDispatcher dispatcher, String separator) {
+        this.dispatcher = dispatcher;
+        this.separator = separator;
+    }
+
+    /**
+     * Declare that segments of {@code command} run after every segment of the {@code prerequisites}
+     * in the same pipeline, wherever they appear in it.
+     */
+    public CommandPipeline dependsOn(String command, String... prerequisites) {
+        Set<String> commands = this.prerequisites.computeIfAbsent(command, name -> new LinkedHashSet<>());
+        for (String prerequisite : prerequisites) {
+            if (prerequisite.equals(command)) {
+                throw new IllegalArgumentException("Command " + command + " cannot depend on itself");
+            }
+            commands.add(prerequisite);
+        }
+        return this;
+    }
+
+    public CommandPipeline executor(Executor segmentExecutor) {
+        this.executor = segmentExecutor == null ? DEFAULT_EXECUTOR : segmentExecutor;
+        return this;
+    }
+
+    /**
+     * Parse every segment of {@code args}, then run them.
+     *
+     * @throws ParseException if any segment is invalid or the dependencies of its commands form a cycle;
+     *                        nothing has run in that case.
+     */
+    public Report execute(String[] args, Runner runner) throws ParseException {
+        List<Segment> segments = parse(args);
+        List<Segment> order = schedule(segments);
+
+        Map<Segment, CompletableFuture<Outcome>> futures = new HashMap<>();
+        for (Segment segment : order) {
+            List<CompletableFuture<Outcome>> prerequisites = new ArrayList<>();
+            for (Segment other : segments) {
+                if (dependsOn(segment, other)) {
+                    prerequisites.add(futures.get(other));
+                }
+            }
+            futures.put(segment, CompletableFuture.allOf(prerequisites.toArray(new CompletableFuture<?>[0]))
+                    .thenApplyAsync(ignored -> {
+                        for (CompletableFuture<Outcome> prerequisite : prerequisites) {
+                            if (!prerequisite.join().succeeded()) {
+                                return new Outcome(segment.command, 0, null, true);
+                            }
+                        }
+                        return run(segment, runner);
+                    }, executor));
+        }
+
+        List<Outcome> outcomes = new ArrayList<>(segments.size());
+        int exitCode = 0;
+        for (Segment segment : segments) {
+            Outcome outcome = futures.get(segment).join();
+            outcomes.add(outcome);
+            if (exitCode == 0 && !outcome.skipped() && outcome.exitCode() != 0) {
+                exitCode = outcome.exitCode();
+            }
+        }
+        return new Report(exitCode, outcomes);
+    }
+
+    private List<Segment> parse(String[] args) throws ParseException {
+        List<Segment> segments = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i <= args.length; i++) {
+            if (i == args.length || args[i].equals(separator)) {
+                if (i == start) {
+                    throw new ParseException("Empty command in pipeline at argument " + (i + 1));
+                }
+                String[] segmentArgs = Arrays.copyOfRange(args, start, i);
+                try {
+                    segments.add(new Segment(segmentArgs[0], dispatcher.dispatch(segmentArgs)));
+                } catch (ParseException e) {
+                    throw new ParseException("Command " + (segments.size() + 1) + " (" + segmentArgs[0] + "): "
+                            + e.getMessage());
+                }
+                start = i + 1;
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * Order the segments so every segment comes after its prerequisites, keeping argument order otherwise.
+     */
+    private List<Segment> schedule(List<Segment> segments) throws ParseException {
+        List<Segment> order = new ArrayList<>(segments.size());
+        Set<Segment> scheduled = new HashSet<>();
+        while (order.size() < segments.size()) {
+            boolean progress = false;
+            for (Segment segment : segments) {
+                if (scheduled.contains(segment)) {
+                    continue;
+                }
+                boolean ready = true;
+                for (Segment other : segments) {
+                    if (dependsOn(segment, other) && !scheduled.contains(other)) {
+                        ready = false;
+                        break;
+                    }
+                }
+                if (ready) {
+                    order.add(segment);
+                    scheduled.add(segment);
+                    progress = true;
+                }
+            }
+            if (!progress) {
+                List<String> blocked = new ArrayList<>();
+                for (Segment segment : segments) {
+                    if (!scheduled.contains(segment) && !blocked.contains(segment.command)) {
+                        blocked.add(segment.command);
+                    }
+                }
+                throw new ParseException("Commands " + String.join(", ", blocked) + " depend on each other");
+            }
+        }
+        return order;
+    }
+
+    private boolean dependsOn(Segment segment, Segment other) {
+        Set<String> commands = prerequisites.get(segment.command);
+        return commands != null && segment != other && commands.contains(other.command);
+    }
+
+    private static Outcome run(Segment segment, Runner runner) {
+        if (segment.result == null) {
+            // Help or version was shown while parsing
+            return new Outcome(segment.command, 0, null, false);
+        }
+        try {
+            return new Outcome(segment.command, runner.run(segment.command, segment.result), null, false);
+        } catch (Exception e) {
+            return new Outcome(segment.command, EXIT_FAILURE, e, false);
+        }
+    }
+
+    private static final class Segment {
+        private final String command;
+        private final ParseResult<?> result;
+
+        Segment(String command, ParseResult<?> result) {
+            this.command = command;
+            this.result = result;
+        }
+    }
+
+    private static final class DaemonThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, "cli-gen-pipeline-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
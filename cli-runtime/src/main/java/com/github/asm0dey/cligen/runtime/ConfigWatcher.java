@@ -0,0 +1,246 @@
+package com.github.asm0dey.cligen.runtime;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a parsed command up to date with a config file, for long-running servers configured by a command.
+ * <p>
+ * The config file holds arguments as they would be typed on the command line, any number per
+ * line, and are split as a shell would: whitespace inside single or double quotes is kept,
+ * and a backslash outside single quotes takes the next character literally. Blank lines and
+ * lines starting with {@code #} are ignored. Its arguments are parsed by the generated parser
+ * followed by the command line arguments, so the command line overrides
+ * the file. A background thread watches the file with a {@link WatchService}, waits until it
+ * has been quiet for the debounce period, and parses it again into a new command.
+ * <p>
+ * If any value changed, the new command replaces the current one with a single volatile write,
+ * so {@link #get()} never blocks and always returns a complete command, and listeners are told
+ * which options changed. A file that cannot be read or parsed, or a parser that cannot compare
+ * commands, leaves the current command in place and is reported to
+ * {@link Listener#reloadFailed(Exception)}; a listener whose {@code configChanged} throws is
+ * told through its own {@code reloadFailed}. Commands should not be modified after parsing,
+ * since readers may share them across threads.
+ *
+ * @param <T> the command type.
+ */
+public final class ConfigWatcher<T> implements AutoCloseable {
+    public static final Duration DEFAULT_DEBOUNCE = Duration.ofMillis(200);
+
+    private final CommandParser<T> parser;
+    private final Path configFile;
+    private final String[] args;
+    private final long debounceNanos;
+    private final WatchService watchService;
+    private final Thread thread;
+    private final List<Listener<? super T>> listeners = new CopyOnWriteArrayList<>();
+
+    private volatile T current;
+
+    /**
+     * Notified on the watcher thread after the config file was parsed again.
+     */
+    public interface Listener<T> {
+        /**
+         * Called after {@code current} replaced {@code previous}; {@code changes} is never empty.
+         */
+        void configChanged(T previous, T current, List<OptionChange> changes);
+
+        default void reloadFailed(Exception e) {
+        }
+    }
+
+    public ConfigWatcher(CommandParser<T> parser, Path configFile, String[] args) throws IOException, ParseException {
+        this(parser, configFile, args, DEFAULT_DEBOUNCE);
+    }
+
+    /**
+     * Parse the config file and the arguments, and start watching the file.
+     *
+     * @throws IOException    if the file cannot be read or watched.
+     * @throws ParseException if the initial arguments are invalid.
+     * @throws IllegalArgumentException if the parser cannot compare commands.
+     */
+    public ConfigWatcher(CommandParser<T> parser, Path configFile, String[] args, Duration debounce)
+            throws IOException, ParseException {
+        if (!parser.supports(CommandParser.Capability.DIFF)) {
+            throw new IllegalArgumentException(parser.getClass().getName() + " cannot compare commands");
+        }
+        this.parser = parser;
+        this.configFile = configFile.toAbsolutePath();
+        this.args = args.clone();
+        this.debounceNanos = debounce.toNanos();
+        this.current = load();
+
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.configFile.getParent().register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        this.thread = new Thread(this::watch, "cli-gen-config-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * The current command; a plain volatile read.
+     */
+    public T get() {
+        return current;
+    }
+
+    public void addListener(Listener<? super T> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener<? super T> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Parse the config file again now and publish the result if any value changed.
+     *
+     * @return the changes, empty if the command was not replaced.
+     */
+    public synchronized List<OptionChange> reload() {
+        T previous = current;
+        T next;
+        List<OptionChange> changes;
+        try {
+            next = load();
+            changes = parser.diff(previous, next);
+        } catch (Exception e) {
+            // Built-in conversions report malformed numbers as runtime exceptions
+            for (Listener<? super T> listener : listeners) {
+                listener.reloadFailed(e);
+            }
+            return List.of();
+        }
+        if (changes.isEmpty()) {
+            return changes;
+        }
+        current = next;
+        for (Listener<? super T> listener : listeners) {
+            try {
+                listener.configChanged(previous, next, changes);
+            } catch (RuntimeException e) {
+                listener.reloadFailed(e);
+            }
+        }
+        return changes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+        thread.interrupt();
+    }
+
+    private T load() throws IOException, ParseException {
+        List<String> arguments = new ArrayList<>();
+        List<String> lines = Files.readAllLines(configFile);
+        for (int i = 0; i < lines.size(); i++) {
+            String trimmed = lines.get(i).strip();
+            if (!trimmed.isEmpty() && !trimmed.startsWith("#")) {
+                split(trimmed, i + 1, arguments);
+            }
+        }
+        arguments.addAll(Arrays.asList(args));
+        return parser.parse(arguments.toArray(new String[0])).getCommand();
+    }
+
+    /**
+     * Split one line of the config file into arguments, honouring quotes and backslashes.
+     */
+    private void split(String line, int lineNumber, List<String> arguments) throws ParseException {
+        StringBuilder argument = new StringBuilder();
+        boolean inArgument = false;
+        char quote = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quote == '\'') {
+                if (c == '\'') {
+                    quote = 0;
+                } else {
+                    argument.append(c);
+                }
+            } else if (c == '\\') {
+                if (++i == line.length()) {
+                    throw new ParseException("Trailing backslash in " + configFile + " at line " + lineNumber);
+                }
+                argument.append(line.charAt(i));
+                inArgument = true;
+            } else if (quote == '"') {
+                if (c == '"') {
+                    quote = 0;
+                } else {
+                    argument.append(c);
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+                inArgument = true;
+            } else if (Character.isWhitespace(c)) {
+                if (inArgument) {
+                    arguments.add(argument.toString());
+                    argument.setLength(0);
+                    inArgument = false;
+                }
+            } else {
+                argument.append(c);
+                inArgument = true;
+            }
+        }
+        if (quote != 0) {
+            throw new ParseException("Unterminated quote in " + configFile + " at line " + lineNumber);
+        }
+        if (inArgument) {
+            arguments.add(argument.toString());
+        }
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                if (!changed(watchService.take())) {
+                    continue;
+                }
+                // Editors often write a file in several steps; wait until it has been quiet
+                WatchKey key;
+                while ((key = watchService.poll(debounceNanos, TimeUnit.NANOSECONDS)) != null) {
+                    changed(key);
+                }
+                try {
+                    reload();
+                } catch (RuntimeException e) {
+                    // Only a throwing reloadFailed gets here; report it without stopping the watcher
+                    thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Closed
+        }
+    }
+
+    private boolean changed(WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                    || configFile.getFileName().equals(event.context())) {
+                changed = true;
+            }
+        }
+        key.reset();
+        return changed;
+    }
+}
@@ -0,0 +1,30 @@
+package com.github.asm0dey.cligen.runtime;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event committed for every traced call of a custom {@link Converter}.
+ */
+@Name("com.github.asm0dey.cligen.Conversion")
+@Label("CLI Option Conversion")
+@Category("CLI-Gen")
+@Description("Conversion of an option value by a custom converter")
+@StackTrace(false)
+class ConversionEvent extends Event {
+    @Label("Command")
+    String command;
+
+    @Label("Option")
+    String option;
+
+    @Label("Converter")
+    String converter;
+
+    @Label("Failure")
+    String failure;
+}
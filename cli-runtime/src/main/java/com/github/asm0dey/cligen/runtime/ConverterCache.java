@@ -0,0 +1,208 @@
+package com.github.asm0dey.cligen.runtime;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Bounded, thread-safe memo of a {@link Converter}'s results keyed by the input string.
+ * <p>
+ * Generated parsers use a cache for options declared with
+ * {@code @Option(converterCacheSize = ...)}. Entries are striped over independently locked
+ * segments, and every segment evicts with a segmented LRU policy: new entries start in
+ * a probation area and are promoted to a protected area on their second hit, so a burst
+ * of one-off values cannot flush the values that are reused all the time. Failed
+ * conversions are not cached.
+ *
+ * @param <T> the converted type.
+ */
+public final class ConverterCache<T> implements Converter<T> {
+    /** Shared caches by converter class and size; kept on the class, so they go away with its class loader. */
+    private static final ClassValue<Map<Integer, ConverterCache<?>>> SHARED = new ClassValue<>() {
+        @Override
+        protected Map<Integer, ConverterCache<?>> computeValue(Class<?> converterClass) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+    /** Every shared cache, for {@link #sharedStats()}, without keeping unloaded converters alive. */
+    private static final Set<ConverterCache<?>> SHARED_CACHES =
+            Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+    private static final Object NULL = new Object();
+    private static final int MIN_SEGMENT_SIZE = 8;
+
+    private final String name;
+    private final Converter<? extends T> converter;
+    private final int maximumSize;
+    private final Segment[] segments;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Hit and miss counters of a cache at the time of {@link #stats()}.
+     */
+    public record Stats(String converter, long hits, long misses, long evictions, int size, int maximumSize) {
+        public double hitRate() {
+            long requests = hits + misses;
+            return requests == 0 ? 0 : (double) hits / requests;
+        }
+    }
+
+    public ConverterCache(String name, Converter<? extends T> converter, int maximumSize) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maximumSize);
+        }
+        this.name = name;
+        this.converter = converter;
+        this.maximumSize = maximumSize;
+
+        int segmentCount = Integer.highestOneBit(Math.max(1,
+                Math.min(Runtime.getRuntime().availableProcessors() * 2, maximumSize / MIN_SEGMENT_SIZE)));
+        int segmentSize = (maximumSize + segmentCount - 1) / segmentCount;
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(segmentSize, evictions);
+        }
+    }
+
+    /**
+     * Get the process-wide cache for a converter class and size, creating it on first use.
+     * All options using the same converter with the same cache size share one cache; options
+     * asking for different sizes get separate caches, so neither is silently resized. Caches
+     * belong to the {@link Class}, not its name, so converters of the same name loaded by
+     * different plugin class loaders never share results.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> ConverterCache<T> shared(Class<?> converterClass, int maximumSize,
+                                               Supplier<? extends Converter<? extends T>> factory) {
+        return (ConverterCache<T>) SHARED.get(converterClass).computeIfAbsent(maximumSize, size -> {
+            ConverterCache<T> cache = new ConverterCache<>(converterClass.getName(), factory.get(), size);
+            SHARED_CACHES.add(cache);
+            return cache;
+        });
+    }
+
+    /**
+     * Get the statistics of the caches {@link #shared} created for {@code converterClass}, keyed by size.
+     */
+    public static Map<Integer, Stats> sharedStats(Class<?> converterClass) {
+        Map<Integer, Stats> stats = new TreeMap<>();
+        for (Map.Entry<Integer, ConverterCache<?>> cache : SHARED.get(converterClass).entrySet()) {
+            stats.put(cache.getKey(), cache.getValue().stats());
+        }
+        return stats;
+    }
+
+    /**
+     * Get the statistics of every cache created by {@link #shared}, ordered by converter class name and size.
+     */
+    public static List<Stats> sharedStats() {
+        List<Stats> stats = new ArrayList<>();
+        synchronized (SHARED_CACHES) {
+            for (ConverterCache<?> cache : SHARED_CACHES) {
+                stats.add(cache.stats());
+            }
+        }
+        stats.sort(Comparator.comparing(Stats::converter).thenComparingInt(Stats::maximumSize));
+        return stats;
+    }
+
+    /**
+     * Return the cached result for {@code value}, converting and caching it on a miss.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public T convert(String value) throws Exception {
+        Segment segment = segments[spread(value.hashCode()) & (segments.length - 1)];
+        Object cached = segment.get(value);
+        if (cached != null) {
+            hits.increment();
+            return cached == NULL ? null : (T) cached;
+        }
+        misses.increment();
+        // Convert outside the lock; a concurrent miss on the same key converts twice, keeps the first result
+        T converted = converter.convert(value);
+        Object stored = segment.putIfAbsent(value, converted == null ? NULL : converted);
+        return stored == NULL ? null : (T) stored;
+    }
+
+    public Stats stats() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return new Stats(name, hits.sum(), misses.sum(), evictions.sum(), size, maximumSize);
+    }
+
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static final class Segment {
+        private final int capacity;
+        private final int protectedCapacity;
+        private final LongAdder evictions;
+        private final LinkedHashMap<String, Object> probation = new LinkedHashMap<>(16, 0.75f, true);
+        private final LinkedHashMap<String, Object> protectedEntries = new LinkedHashMap<>(16, 0.75f, true);
+
+        Segment(int capacity, LongAdder evictions) {
+            this.capacity = capacity;
+            this.evictions = evictions;
+            this.protectedCapacity = Math.max(1, capacity * 4 / 5);
+        }
+
+        synchronized Object get(String key) {
+            Object value = protectedEntries.get(key);
+            if (value != null) {
+                return value;
+            }
+            value = probation.remove(key);
+            if (value != null) {
+                protectedEntries.put(key, value);
+                if (protectedEntries.size() > protectedCapacity) {
+                    Map.Entry<String, Object> eldest = eldest(protectedEntries);
+                    protectedEntries.remove(eldest.getKey());
+                    probation.put(eldest.getKey(), eldest.getValue());
+                }
+            }
+            return value;
+        }
+
+        synchronized Object putIfAbsent(String key, Object value) {
+            Object existing = protectedEntries.get(key);
+            if (existing == null) {
+                existing = probation.get(key);
+            }
+            if (existing != null) {
+                return existing;
+            }
+            probation.put(key, value);
+            while (probation.size() + protectedEntries.size() > capacity) {
+                LinkedHashMap<String, Object> victims = probation.isEmpty() ? protectedEntries : probation;
+                victims.remove(eldest(victims).getKey());
+                evictions.increment();
+            }
+            return value;
+        }
+
+        synchronized int size() {
+            return probation.size() + protectedEntries.size();
+        }
+
+        synchronized void clear() {
+            probation.clear();
+            protectedEntries.clear();
+        }
+
+        private Map.Entry<String, Object> eldest(LinkedHashMap<String, Object> entries) {
+            return entries.entrySet().iterator().next();
+        }
+    }
+}
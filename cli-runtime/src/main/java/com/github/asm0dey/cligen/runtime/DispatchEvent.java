@@ -0,0 +1,27 @@
+package com.github.asm0dey.cligen.runtime;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event committed for every traced {@link CommandDispatcher#dispatch(String[])} call.
+ */
+@Name("com.github.asm0dey.cligen.Dispatch")
+@Label("CLI Dispatch")
+@Category("CLI-Gen")
+@Description("Lookup and parsing of a subcommand by CommandDispatcher")
+@StackTrace(false)
+class DispatchEvent extends Event {
+    @Label("Command")
+    String command;
+
+    @Label("Token Count")
+    int tokenCount;
+
+    @Label("Failure")
+    String failure;
+}
@@ -0,0 +1,168 @@
+package com.github.asm0dey.cligen.runtime;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A 128-bit fingerprint of the effective values of a parsed command.
+ * <p>
+ * Generated parsers compute it with {@link CommandParser#fingerprint(Object)} from every
+ * option and parameter field, defaults included, so two commands have the same fingerprint
+ * exactly when they would run with the same values, however the arguments were written.
+ * Every field is hashed with MurmurHash3 (x64, 128-bit) from its name and a canonical form of
+ * its value, and the field hashes are added up, so the result does not depend on the order
+ * of the fields either. The canonical form is self-delimiting: every string is prefixed with
+ * its length, {@code null} has its own tag, and collections and maps are prefixed with their
+ * size, so no two distinct values share one. Maps and sets are canonicalized with their
+ * entries sorted, enums by name, and other values by {@link String#valueOf(Object)}.
+ *
+ * @param high the upper 64 bits.
+ * @param low  the lower 64 bits.
+ */
+public record Fingerprint(long high, long low) {
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    public static Builder builder(String command) {
+        return new Builder(command);
+    }
+
+    /**
+     * The fingerprint as 32 lowercase hex digits, usable as a file name.
+     */
+    @Override
+    public String toString() {
+        return String.format("%016x%016x", high, low);
+    }
+
+    /**
+     * Accumulates the field hashes of one command.
+     */
+    public static final class Builder {
+        private final String command;
+        private long high;
+        private long low;
+        private int fields;
+
+        private Builder(String command) {
+            this.command = command;
+        }
+
+        public Builder add(String field, Object value) {
+            StringBuilder canonical = new StringBuilder(field).append('\u0000');
+            canonical(value, canonical);
+            long[] hash = murmur3(canonical.toString().getBytes(StandardCharsets.UTF_8));
+            high += hash[0];
+            low += hash[1];
+            fields++;
+            return this;
+        }
+
+        public Fingerprint build() {
+            long[] name = murmur3((command + "\u0000" + fields).getBytes(StandardCharsets.UTF_8));
+            return new Fingerprint(fmix(high ^ name[0]), fmix(low ^ name[1]));
+        }
+    }
+
+    /**
+     * Append the canonical form of {@code value}: {@code N} for null, {@code S<length>:<string>}
+     * for a scalar, {@code L<size>:} or {@code M<size>:} followed by the elements or the
+     * key-value pairs.
+     */
+    private static void canonical(Object value, StringBuilder out) {
+        if (value == null) {
+            out.append('N');
+        } else if (value instanceof Map<?, ?> map) {
+            List<String> entries = new ArrayList<>(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                StringBuilder pair = new StringBuilder();
+                canonical(entry.getKey(), pair);
+                canonical(entry.getValue(), pair);
+                entries.add(pair.toString());
+            }
+            Collections.sort(entries);
+            out.append('M').append(entries.size()).append(':');
+            entries.forEach(out::append);
+        } else if (value instanceof Collection<?> collection) {
+            List<String> elements = new ArrayList<>(collection.size());
+            for (Object element : collection) {
+                StringBuilder canonical = new StringBuilder();
+                canonical(element, canonical);
+                elements.add(canonical.toString());
+            }
+            if (value instanceof Set<?>) {
+                Collections.sort(elements);
+            }
+            out.append('L').append(elements.size()).append(':');
+            elements.forEach(out::append);
+        } else if (value instanceof Object[] array) {
+            canonical(Arrays.asList(array), out);
+        } else {
+            String string = value instanceof Enum<?> constant ? constant.name() : String.valueOf(value);
+            out.append('S').append(string.length()).append(':').append(string);
+        }
+    }
+
+    private static long[] murmur3(byte[] data) {
+        long h1 = 0;
+        long h2 = 0;
+        int blocks = data.length / 16;
+        for (int i = 0; i < blocks; i++) {
+            long k1 = getLong(data, i * 16);
+            long k2 = getLong(data, i * 16 + 8);
+            h1 ^= Long.rotateLeft(k1 * C1, 31) * C2;
+            h1 = (Long.rotateLeft(h1, 27) + h2) * 5 + 0x52dce729;
+            h2 ^= Long.rotateLeft(k2 * C2, 33) * C1;
+            h2 = (Long.rotateLeft(h2, 31) + h1) * 5 + 0x38495ab5;
+        }
+
+        int tail = blocks * 16;
+        long k1 = 0;
+        long k2 = 0;
+        for (int i = data.length - 1; i >= tail + 8; i--) {
+            k2 = (k2 << 8) | (data[i] & 0xFF);
+        }
+        for (int i = Math.min(data.length, tail + 8) - 1; i >= tail; i--) {
+            k1 = (k1 << 8) | (data[i] & 0xFF);
+        }
+        if (data.length - tail > 8) {
+            h2 ^= Long.rotateLeft(k2 * C2, 33) * C1;
+        }
+        if (data.length > tail) {
+            h1 ^= Long.rotateLeft(k1 * C1, 31) * C2;
+        }
+
+        h1 ^= data.length;
+        h2 ^= data.length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix(h1);
+        h2 = fmix(h2);
+        h1 += h2;
+        h2 += h1;
+        return new long[]{h1, h2};
+    }
+
+    private static long getLong(byte[] data, int offset) {
+        long value = 0;
+        for (int i = 7; i >= 0; i--) {
+            value = (value << 8) | (data[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
@@ -0,0 +1,107 @@
+package com.github.asm0dey.cligen.runtime;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with fixed power-of-two microsecond buckets.
+ * <p>
+ * Bucket {@code 0} counts samples below 1µs, bucket {@code i} counts samples in
+ * {@code [2^(i-1), 2^i)} µs, and the last bucket collects everything above that.
+ * Every bucket is a {@link LongAdder}, so concurrent recorders do not contend on a
+ * shared counter.
+ */
+public final class LatencyHistogram {
+    /**
+     * Number of buckets; the last one is unbounded.
+     */
+    public static final int BUCKET_COUNT = 32;
+
+    private static final long[] UPPER_BOUNDS_MICROS = new long[BUCKET_COUNT];
+
+    static {
+        for (int i = 0; i < BUCKET_COUNT - 1; i++) {
+            UPPER_BOUNDS_MICROS[i] = 1L << i;
+        }
+        UPPER_BOUNDS_MICROS[BUCKET_COUNT - 1] = Long.MAX_VALUE;
+    }
+
+    private final LongAdder[] buckets = new LongAdder[BUCKET_COUNT];
+    private final LongAdder totalNanos = new LongAdder();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Get the exclusive upper bound of every bucket in microseconds.
+     */
+    public static long[] bucketUpperBoundsMicros() {
+        return UPPER_BOUNDS_MICROS.clone();
+    }
+
+    /**
+     * Record a single sample.
+     */
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos) / 1000;
+        int bucket = Math.min(64 - Long.numberOfLeadingZeros(micros), BUCKET_COUNT - 1);
+        buckets[bucket].increment();
+        totalNanos.add(nanos);
+    }
+
+    /**
+     * Get the current bucket counts. Counts recorded concurrently with this call may or may not be included.
+     */
+    public long[] counts() {
+        long[] counts = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return counts;
+    }
+
+    /**
+     * Get the sum of all recorded samples in nanoseconds.
+     */
+    public long totalNanos() {
+        return totalNanos.sum();
+    }
+
+    /**
+     * Reset all buckets to zero.
+     */
+    public void reset() {
+        for (LongAdder bucket : buckets) {
+            bucket.reset();
+        }
+        totalNanos.reset();
+    }
+
+    /**
+     * Estimate a percentile from bucket counts as the upper bound of the bucket containing it.
+     *
+     * @param counts     bucket counts as returned by {@link #counts()}.
+     * @param percentile the percentile in {@code [0, 100]}.
+     * @return the upper bound in microseconds, or {@code 0} if there are no samples.
+     */
+    public static long percentileMicros(long[] counts, double percentile) {
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100.0);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank && counts[i] > 0) {
+                return UPPER_BOUNDS_MICROS[i];
+            }
+        }
+        return UPPER_BOUNDS_MICROS[BUCKET_COUNT - 1];
+    }
+}
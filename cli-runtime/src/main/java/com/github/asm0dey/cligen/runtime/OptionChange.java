@@ -0,0 +1,15 @@
+package com.github.asm0dey.cligen.runtime;
+
+/**
+ * A value that differs between two parsed commands, as reported by {@link CommandParser#diff}.
+ *
+ * @param field    the option or parameter field, as in {@link OptionModel#field()}.
+ * @param previous the previous value, boxed if the field is primitive.
+ * @param current  the current value, boxed if the field is primitive.
+ */
+public record OptionChange(String field, Object previous, Object current) {
+    @Override
+    public String toString() {
+        return field + ": " + previous + " -> " + current;
+    }
+}
@@ -0,0 +1,22 @@
+package com.github.asm0dey.cligen.runtime;
+
+import java.util.List;
+
+/**
+ * Compile-time description of an {@code @Option} field, part of a {@link CommandModel}.
+ *
+ * @param field        the annotated field or record component.
+ * @param names        the option names.
+ * @param type         the canonical name of the field type, e.g. {@code int} or {@code java.lang.String}.
+ * @param arity        the number of values the option takes, {@code "0"} for flags.
+ * @param required     whether the option must be given.
+ * @param defaultValue the declared default value, or {@code null} if none was given.
+ * @param description  the option description, empty if none was given.
+ * @param converter    the canonical name of the custom converter, or {@code null} if none is used.
+ */
+public record OptionModel(String field, List<String> names, String type, String arity, boolean required,
+                          String defaultValue, String description, String converter) {
+    public OptionModel {
+        names = List.copyOf(names);
+    }
+}
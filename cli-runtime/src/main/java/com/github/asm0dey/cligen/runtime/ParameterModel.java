@@ -0,0 +1,13 @@
+package com.github.asm0dey.cligen.runtime;
+
+/**
+ * Compile-time description of a positional {@code @Parameters} field, part of a {@link CommandModel}.
+ *
+ * @param field       the annotated field or record component.
+ * @param index       the position among the positional arguments.
+ * @param type        the canonical name of the field type.
+ * @param required    whether the parameter must be given.
+ * @param description the parameter description, empty if none was given.
+ */
+public record ParameterModel(String field, int index, String type, boolean required, String description) {
+}
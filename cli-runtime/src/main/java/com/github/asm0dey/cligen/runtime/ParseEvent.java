@@ -0,0 +1,32 @@
+package com.github.asm0dey.cligen.runtime;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event committed for every traced run of a generated parser.
+ */
+@Name("com.github.asm0dey.cligen.Parse")
+@Label("CLI Parse")
+@Category("CLI-Gen")
+@Description("Parsing of a command line by a generated parser")
+@StackTrace(false)
+class ParseEvent extends Event {
+    @Label("Command")
+    String command;
+
+    @Label("Token Count")
+    int tokenCount;
+
+    @Label("Validation Duration")
+    @Timespan(Timespan.NANOSECONDS)
+    long validationDuration;
+
+    @Label("Failure")
+    String failure;
+}
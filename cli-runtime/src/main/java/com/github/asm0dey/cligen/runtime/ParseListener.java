@@ -0,0 +1,59 @@
+package com.github.asm0dey.cligen.runtime;
+
+/**
+ * Callback interface for observing parse and dispatch activity.
+ * <p>
+ * Install an implementation with {@link ParseTrace#setListener(ParseListener)}.
+ * All methods have empty default implementations, so listeners only override
+ * the callbacks they are interested in. Callbacks are invoked synchronously on
+ * the parsing thread and should return quickly.
+ */
+@SuppressWarnings("unused")
+public interface ParseListener {
+
+    /**
+     * Called before a generated parser starts consuming tokens.
+     *
+     * @param command    the {@code @Command} name.
+     * @param tokenCount the number of tokens handed to the parser.
+     */
+    default void parseStarted(String command, int tokenCount) {
+    }
+
+    /**
+     * Called after a custom {@link Converter} has finished, successfully or not.
+     *
+     * @param command       the {@code @Command} name.
+     * @param option        the primary name of the option being converted.
+     * @param converter     the fully qualified converter class name.
+     * @param durationNanos the time spent in the converter.
+     * @param failure       the exception thrown by the converter, or {@code null} on success.
+     */
+    default void conversionFinished(String command, String option, String converter,
+                                    long durationNanos, Exception failure) {
+    }
+
+    /**
+     * Called when a generated parser returns or fails.
+     *
+     * @param command         the {@code @Command} name.
+     * @param tokenCount      the number of tokens handed to the parser.
+     * @param durationNanos   the total time spent in the parser.
+     * @param validationNanos the part of {@code durationNanos} spent validating the parsed values.
+     * @param failure         the exception that aborted the parse, or {@code null} on success.
+     */
+    default void parseFinished(String command, int tokenCount, long durationNanos,
+                               long validationNanos, Exception failure) {
+    }
+
+    /**
+     * Called when {@link CommandDispatcher} has finished dispatching a command.
+     *
+     * @param command       the dispatched command name.
+     * @param tokenCount    the number of tokens passed to the dispatcher, including the command name.
+     * @param durationNanos the time spent looking up and parsing the command.
+     * @param failure       the exception that aborted the dispatch, or {@code null} on success.
+     */
+    default void dispatchFinished(String command, int tokenCount, long durationNanos, Exception failure) {
+    }
+}
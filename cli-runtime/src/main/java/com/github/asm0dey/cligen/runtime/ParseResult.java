@@ -1,17 +1,44 @@
 package com.github.asm0dey.cligen.runtime;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 @SuppressWarnings("unused")
 public class ParseResult<T> {
+    private static final String[] NO_ARGS = new String[0];
+
     private final T command;
     private final List<String> remainingArgs;
-    
+    private final String[] args;
+    private final int passthroughOffset;
+
     public ParseResult(T command, List<String> remainingArgs) {
+        this(command, remainingArgs, NO_ARGS, 0);
+    }
+
+    /**
+     * @param args              the parsed arguments, kept by reference.
+     * @param passthroughOffset index in {@code args} of the first argument after {@code --}
+     *                          that is not a parameter, or {@code args.length} if there is none.
+     */
+    public ParseResult(T command, List<String> remainingArgs, String[] args, int passthroughOffset) {
         this.command = command;
         this.remainingArgs = remainingArgs;
+        this.args = args;
+        this.passthroughOffset = passthroughOffset;
     }
-    
+
     public T getCommand() { return command; }
     public List<String> getRemainingArgs() { return remainingArgs; }
+    public int getPassthroughOffset() { return passthroughOffset; }
+
+    /**
+     * Arguments after {@code --} (or after the first positional argument with
+     * {@code @Command(stopAtPositional = true)}) that no parameter took, as a read-only view
+     * of the original array rather than a copy.
+     */
+    public List<String> getPassthroughArgs() {
+        return Collections.unmodifiableList(Arrays.asList(args).subList(passthroughOffset, args.length));
+    }
 }
@@ -0,0 +1,208 @@
+package com.github.asm0dey.cligen.runtime;
+
+import jdk.jfr.Event;
+
+/**
+ * Instrumentation handle for a single parse or dispatch.
+ * <p>
+ * Generated parsers and {@link CommandDispatcher} call {@link #begin(String, int)} or
+ * {@link #beginDispatch(String, int)} once per invocation. When no {@link ParseListener}
+ * is installed and no JFR recording has the CLI-Gen events enabled, these return
+ * {@code null} and every further instrumentation point is a single null check.
+ * <p>
+ * A trace is confined to the thread performing the parse and is not thread-safe.
+ */
+public final class ParseTrace {
+    private static final ParseEvent PARSE_PROBE = new ParseEvent();
+    private static final ConversionEvent CONVERSION_PROBE = new ConversionEvent();
+    private static final DispatchEvent DISPATCH_PROBE = new DispatchEvent();
+
+    private static volatile ParseListener listener;
+
+    private final ParseListener traceListener;
+    private final String command;
+    private final int tokenCount;
+    private final boolean dispatch;
+    private final long startNanos;
+    private final Event event;
+    private final boolean recordConversions;
+
+    private long validationStartNanos;
+
+    private String conversionOption;
+    private String conversionConverter;
+    private long conversionStartNanos;
+    private ConversionEvent conversionEvent;
+
+    private ParseTrace(ParseListener traceListener, String command, int tokenCount, boolean dispatch,
+                       Event event, boolean recordConversions) {
+        this.traceListener = traceListener;
+        this.command = command;
+        this.tokenCount = tokenCount;
+        this.dispatch = dispatch;
+        this.event = event;
+        this.recordConversions = recordConversions;
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Install the process-wide listener, or remove it by passing {@code null}.
+     */
+    public static void setListener(ParseListener parseListener) {
+        listener = parseListener;
+    }
+
+    /**
+     * Get the currently installed listener, or {@code null} if none is installed.
+     */
+    public static ParseListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Start tracing a run of a generated parser.
+     *
+     * @return the trace, or {@code null} if instrumentation is disabled.
+     */
+    public static ParseTrace begin(String command, int tokenCount) {
+        ParseListener current = listener;
+        boolean parseEnabled = PARSE_PROBE.isEnabled();
+        boolean conversionEnabled = CONVERSION_PROBE.isEnabled();
+        if (current == null && !parseEnabled && !conversionEnabled) {
+            return null;
+        }
+        Event event = null;
+        if (parseEnabled) {
+            ParseEvent parseEvent = new ParseEvent();
+            parseEvent.command = command;
+            parseEvent.tokenCount = tokenCount;
+            parseEvent.begin();
+            event = parseEvent;
+        }
+        if (current != null) {
+            current.parseStarted(command, tokenCount);
+        }
+        return new ParseTrace(current, command, tokenCount, false, event, conversionEnabled);
+    }
+
+    /**
+     * Start tracing a {@link CommandDispatcher} dispatch.
+     *
+     * @return the trace, or {@code null} if instrumentation is disabled.
+     */
+    public static ParseTrace beginDispatch(String command, int tokenCount) {
+        ParseListener current = listener;
+        boolean dispatchEnabled = DISPATCH_PROBE.isEnabled();
+        if (current == null && !dispatchEnabled) {
+            return null;
+        }
+        Event event = null;
+        if (dispatchEnabled) {
+            DispatchEvent dispatchEvent = new DispatchEvent();
+            dispatchEvent.command = command;
+            dispatchEvent.tokenCount = tokenCount;
+            dispatchEvent.begin();
+            event = dispatchEvent;
+        }
+        return new ParseTrace(current, command, tokenCount, true, event, false);
+    }
+
+    /**
+     * Mark the start of a custom converter call.
+     */
+    public void conversionStarted(String option, String converter) {
+        conversionOption = option;
+        conversionConverter = converter;
+        if (recordConversions) {
+            conversionEvent = new ConversionEvent();
+            conversionEvent.begin();
+        }
+        conversionStartNanos = System.nanoTime();
+    }
+
+    /**
+     * Mark the successful end of the converter call started last.
+     */
+    public void conversionSucceeded() {
+        conversionFinished(null);
+    }
+
+    /**
+     * Mark the failed end of the converter call started last.
+     */
+    public void conversionFailed(Exception failure) {
+        conversionFinished(failure);
+    }
+
+    /**
+     * Report a converter call that ran on another thread, see {@link AsyncConversions}.
+     * Its JFR event is committed by the converting thread.
+     */
+    public void asyncConversionFinished(String option, String converter, long durationNanos, Exception failure) {
+        if (traceListener != null) {
+            traceListener.conversionFinished(command, option, converter, durationNanos, failure);
+        }
+    }
+
+    /**
+     * Mark the point where token consumption ended and validation of the parsed values starts.
+     */
+    public void validationStarted() {
+        validationStartNanos = System.nanoTime();
+    }
+
+    /**
+     * Finish the trace.
+     *
+     * @param failure the exception that aborted the parse, or {@code null} on success.
+     */
+    public void end(Exception failure) {
+        long endNanos = System.nanoTime();
+        long duration = endNanos - startNanos;
+        long validation = validationStartNanos == 0 ? 0 : endNanos - validationStartNanos;
+        if (event != null) {
+            commit(event, validation, failure);
+        }
+        if (traceListener != null) {
+            if (dispatch) {
+                traceListener.dispatchFinished(command, tokenCount, duration, failure);
+            } else {
+                traceListener.parseFinished(command, tokenCount, duration, validation, failure);
+            }
+        }
+    }
+
+    private void conversionFinished(Exception failure) {
+        long duration = System.nanoTime() - conversionStartNanos;
+        ConversionEvent event = conversionEvent;
+        if (event != null) {
+            conversionEvent = null;
+            event.end();
+            if (event.shouldCommit()) {
+                event.command = command;
+                event.option = conversionOption;
+                event.converter = conversionConverter;
+                event.failure = failure == null ? null : failure.toString();
+                event.commit();
+            }
+        }
+        if (traceListener != null) {
+            traceListener.conversionFinished(command, conversionOption, conversionConverter, duration, failure);
+        }
+    }
+
+    private static void commit(Event event, long validationNanos, Exception failure) {
+        event.end();
+        if (!event.shouldCommit()) {
+            return;
+        }
+        String message = failure == null ? null : failure.toString();
+        if (event instanceof ParseEvent parseEvent) {
+            parseEvent.validationDuration = validationNanos;
+            parseEvent.failure = message;
+        } else if (event instanceof DispatchEvent dispatchEvent) {
+            dispatchEvent.failure = message;
+        }
+        event.commit();
+    }
+}
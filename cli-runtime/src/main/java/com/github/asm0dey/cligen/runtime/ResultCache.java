@@ -0,0 +1,189 @@
+package com.github.asm0dey.cligen.runtime;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Replays the output of deterministic commands from a local cache directory instead of running them again.
+ * <p>
+ * Entries are keyed by the {@link Fingerprint} of the parsed command and hold everything the
+ * command wrote to its output. A run that exits with code 0 is stored; failed runs are never
+ * cached. A hit refreshes the entry's modification time, and after every store the least
+ * recently used entries are deleted until the directory is within its size limit. Entries are
+ * written to a temporary file and moved into place, so several processes can share a directory.
+ * <p>
+ * The fingerprint only covers the command's values, so anything else the output depends on,
+ * such as the tool version, belongs in the directory name.
+ */
+public final class ResultCache {
+    private static final String SUFFIX = ".out";
+
+    private final Path directory;
+    private final long maxBytes;
+
+    /**
+     * The command's work, writing its output to {@code out}.
+     */
+    @FunctionalInterface
+    public interface Task {
+        /**
+         * @return the exit code; only runs returning 0 are cached.
+         */
+        int run(OutputStream out) throws Exception;
+    }
+
+    public ResultCache(Path directory, long maxBytes) throws IOException {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maxBytes);
+        }
+        this.directory = Files.createDirectories(directory);
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Replay the cached output of {@code command} to {@code out}, or run {@code task} and cache its output.
+     *
+     * @throws UnsupportedOperationException unless the parser supports {@link CommandParser.Capability#FINGERPRINT}.
+     */
+    public <T> int execute(CommandParser<T> parser, T command, OutputStream out, Task task) throws Exception {
+        return execute(parser.fingerprint(command), out, task);
+    }
+
+    /**
+     * Replay the output cached for {@code key} to {@code out} and return 0, or run {@code task},
+     * writing its output to {@code out} and the cache, and return its exit code.
+     */
+    public int execute(Fingerprint key, OutputStream out, Task task) throws Exception {
+        Path entry = directory.resolve(key + SUFFIX);
+        if (replay(entry, out)) {
+            return 0;
+        }
+
+        Path temporary = Files.createTempFile(directory, key.toString(), ".tmp");
+        try {
+            int exitCode;
+            try (OutputStream file = Files.newOutputStream(temporary)) {
+                exitCode = task.run(new TeeOutputStream(out, file));
+            }
+            if (exitCode == 0) {
+                move(temporary, entry);
+                evict();
+            }
+            return exitCode;
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Whether {@code key} has a cached output.
+     */
+    public boolean contains(Fingerprint key) {
+        return Files.isRegularFile(directory.resolve(key + SUFFIX));
+    }
+
+    /**
+     * The total size of the cached outputs in bytes.
+     */
+    public long size() throws IOException {
+        long size = 0;
+        for (Entry entry : entries()) {
+            size += entry.size;
+        }
+        return size;
+    }
+
+    private boolean replay(Path entry, OutputStream out) throws IOException {
+        try (InputStream in = Files.newInputStream(entry)) {
+            // Touch before writing anything, so an entry evicted by another process is simply a miss
+            Files.setLastModifiedTime(entry, FileTime.from(Instant.now()));
+            in.transferTo(out);
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private void evict() throws IOException {
+        List<Entry> entries = entries();
+        long size = 0;
+        for (Entry entry : entries) {
+            size += entry.size;
+        }
+        entries.sort(Comparator.comparing(Entry::lastUsed));
+        for (Entry entry : entries) {
+            if (size <= maxBytes) {
+                break;
+            }
+            Files.deleteIfExists(entry.path);
+            size -= entry.size;
+        }
+    }
+
+    private List<Entry> entries() throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : files) {
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                    entries.add(new Entry(file, attributes.size(), attributes.lastModifiedTime()));
+                } catch (NoSuchFileException e) {
+                    // Evicted concurrently
+                }
+            }
+        }
+        return entries;
+    }
+
+    private record Entry(Path path, long size, FileTime lastUsed) {
+    }
+
+    private static final class TeeOutputStream extends OutputStream {
+        private final OutputStream first;
+        private final OutputStream second;
+
+        TeeOutputStream(OutputStream first, OutputStream second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            first.write(b);
+            second.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            first.write(b, off, len);
+            second.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            first.flush();
+            second.flush();
+        }
+    }
+}
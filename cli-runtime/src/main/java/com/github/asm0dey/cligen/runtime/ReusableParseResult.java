@@ -0,0 +1,53 @@
+package com.github.asm0dey.cligen.runtime;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The mutable counterpart of {@link ParseResult} that {@link CommandParser#parseInto} fills.
+ * <p>
+ * Every call overwrites the result and refills the same list of remaining arguments, so a hot
+ * loop parsing into the same command and result allocates nothing once the list has grown.
+ * Copy what you need to keep before the next call, and do not share a result between threads
+ * parsing concurrently.
+ *
+ * @param <T> the command type.
+ */
+public final class ReusableParseResult<T> {
+    private static final String[] NO_ARGS = new String[0];
+
+    private final List<String> remainingArgs = new ArrayList<>();
+    private T command;
+    private String[] args = NO_ARGS;
+    private int passthroughOffset;
+
+    public T getCommand() { return command; }
+    public List<String> getRemainingArgs() { return remainingArgs; }
+    public int getPassthroughOffset() { return passthroughOffset; }
+
+    /**
+     * See {@link ParseResult#getPassthroughArgs()}.
+     */
+    public List<String> getPassthroughArgs() {
+        return Collections.unmodifiableList(Arrays.asList(args).subList(passthroughOffset, args.length));
+    }
+
+    /**
+     * Clear the remaining arguments for a generated parser to refill.
+     */
+    public List<String> reuseRemainingArgs() {
+        remainingArgs.clear();
+        return remainingArgs;
+    }
+
+    /**
+     * Record the outcome of another parse; used by generated parsers.
+     */
+    public void reuse(T command, String[] args, int passthroughOffset) {
+        this.command = command;
+        this.args = args;
+        this.passthroughOffset = passthroughOffset;
+    }
+}
@@ -0,0 +1,171 @@
+package com.github.asm0dey.cligen.runtime;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+
+/**
+ * Length-bucketed index of option or command names used for "did you mean" hints.
+ * <p>
+ * Names are sorted by length, and {@code lengthOffsets[len]} is the index of the first
+ * name that is at least {@code len} characters long. A lookup only compares the input
+ * with names whose length is within the allowed edit distance, and stops comparing a
+ * name as soon as the distance exceeds that bound, so the cost does not depend on the
+ * total number of names. Generated parsers bake both arrays in at compile time.
+ */
+public final class SuggestionIndex {
+    private static final SuggestionIndex EMPTY = new SuggestionIndex(new String[0], new int[]{0});
+
+    private final String[] namesByLength;
+    private final int[] lengthOffsets;
+
+    /**
+     * @param namesByLength names sorted as by {@link #sortByLength(Collection)}.
+     * @param lengthOffsets offsets as computed by {@link #lengthOffsets(String[])}.
+     */
+    public SuggestionIndex(String[] namesByLength, int[] lengthOffsets) {
+        this.namesByLength = namesByLength;
+        this.lengthOffsets = lengthOffsets;
+    }
+
+    /**
+     * Build an index at runtime.
+     */
+    public static SuggestionIndex of(Collection<String> names) {
+        if (names.isEmpty()) {
+            return EMPTY;
+        }
+        String[] sorted = sortByLength(names);
+        return new SuggestionIndex(sorted, lengthOffsets(sorted));
+    }
+
+    /**
+     * Sort names by length, then alphabetically, dropping duplicates.
+     */
+    public static String[] sortByLength(Collection<String> names) {
+        return names.stream()
+                .distinct()
+                .sorted(Comparator.comparingInt(String::length).thenComparing(Comparator.naturalOrder()))
+                .toArray(String[]::new);
+    }
+
+    /**
+     * Compute the offset of the first name of every length in a length-sorted array.
+     * The result has one entry per length up to the longest name, plus a final entry
+     * equal to the number of names.
+     */
+    public static int[] lengthOffsets(String[] namesByLength) {
+        int maxLength = namesByLength.length == 0 ? 0 : namesByLength[namesByLength.length - 1].length();
+        int[] offsets = new int[maxLength + 2];
+        int index = 0;
+        for (int length = 0; length < offsets.length; length++) {
+            while (index < namesByLength.length && namesByLength[index].length() < length) {
+                index++;
+            }
+            offsets[length] = index;
+        }
+        return offsets;
+    }
+
+    /**
+     * Find the name closest to {@code input}, or {@code null} if no name is close enough.
+     * Ties are resolved in favour of the shorter, then alphabetically first, name.
+     */
+    public String closest(String input) {
+        int maxDistance = maxDistance(input.length());
+        if (maxDistance == 0) {
+            return null;
+        }
+        int maxLength = lengthOffsets.length - 2;
+        int fromLength = Math.max(0, input.length() - maxDistance);
+        int toLength = Math.min(maxLength, input.length() + maxDistance);
+        if (fromLength > toLength) {
+            return null;
+        }
+
+        String best = null;
+        int bestDistance = maxDistance + 1;
+        for (int i = lengthOffsets[fromLength]; i < lengthOffsets[toLength + 1]; i++) {
+            String candidate = namesByLength[i];
+            int distance = boundedDistance(input, candidate, bestDistance - 1);
+            if (distance < bestDistance) {
+                best = candidate;
+                bestDistance = distance;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Format a hint for {@code input}: {@code ". Did you mean X?"}, or an empty string if there is none.
+     */
+    public String didYouMean(String input) {
+        String suggestion = closest(input);
+        return suggestion == null ? "" : ". Did you mean " + suggestion + "?";
+    }
+
+    private static int maxDistance(int length) {
+        if (length <= 2) return 0;
+        if (length <= 5) return 1;
+        if (length <= 10) return 2;
+        return 3;
+    }
+
+    /**
+     * Optimal string alignment distance between {@code a} and {@code b} if it is at most
+     * {@code limit}, or {@code limit + 1} otherwise. Only the diagonal band of width
+     * {@code 2 * limit + 1} is computed, and the scan stops once a whole row exceeds the limit.
+     */
+    static int boundedDistance(String a, String b, int limit) {
+        int n = a.length();
+        int m = b.length();
+        int unreachable = limit + 1;
+        if (limit < 0 || Math.abs(n - m) > limit) {
+            return unreachable;
+        }
+
+        int[] beforePrevious = new int[m + 1];
+        int[] previous = new int[m + 1];
+        int[] current = new int[m + 1];
+        for (int j = 0; j <= m; j++) {
+            previous[j] = Math.min(j, unreachable);
+        }
+
+        for (int i = 1; i <= n; i++) {
+            int from = Math.max(1, i - limit);
+            int to = Math.min(m, i + limit);
+            current[0] = Math.min(i, unreachable);
+            if (from > 1) {
+                current[from - 1] = unreachable;
+            }
+            int rowMin = from == 1 ? current[0] : unreachable;
+            char ca = a.charAt(i - 1);
+            for (int j = from; j <= to; j++) {
+                char cb = b.charAt(j - 1);
+                int value = Math.min(previous[j - 1] + (ca == cb ? 0 : 1),
+                        Math.min(previous[j], current[j - 1]) + 1);
+                if (i > 1 && j > 1 && ca == b.charAt(j - 2) && a.charAt(i - 2) == cb) {
+                    value = Math.min(value, beforePrevious[j - 2] + 1);
+                }
+                current[j] = Math.min(value, unreachable);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (to < m) {
+                current[to + 1] = unreachable;
+            }
+            if (rowMin > limit) {
+                return unreachable;
+            }
+            int[] recycled = beforePrevious;
+            beforePrevious = previous;
+            previous = current;
+            current = recycled;
+        }
+        return previous[m];
+    }
+
+    @Override
+    public String toString() {
+        return "SuggestionIndex" + Arrays.toString(namesByLength);
+    }
+}
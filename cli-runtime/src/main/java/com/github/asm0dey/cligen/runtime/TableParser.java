@@ -0,0 +1,234 @@
+package com.github.asm0dey.cligen.runtime;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Shared interpreter for parsers generated with {@code @Command(tableDriven = true)}.
+ * <p>
+ * Instead of straight-line code for every option, the processor emits a few string constants
+ * describing the command: its option names, the option id of every name and the value kind
+ * of every slot, where slots are the options in declaration order followed by the parameters
+ * by index. This class hashes the names once, when the generated parser is initialized, and
+ * runs the same token loop as generated parsers for every table-driven command. Converted
+ * values are collected by slot and handed to the generated {@link Binder}, which stores them
+ * in the command with one small method, so the parser class stays a fraction of the size.
+ */
+public final class TableParser {
+    /** Value kinds, one char per slot in the kinds table. */
+    public static final char STRING = 's';
+    public static final char INT = 'i';
+    public static final char LONG = 'l';
+    public static final char BOOLEAN = 'b';
+    public static final char DOUBLE = 'd';
+    public static final char FLOAT = 'f';
+    public static final char PATH = 'P';
+    public static final char FILE = 'F';
+    /** An option without a value, set to {@code true} when given. */
+    public static final char FLAG = '0';
+    /** An option converted by {@link Binder#converter(int)}. */
+    public static final char CONVERTER = 'c';
+    /** A parameter index that no field declares; its arguments are extra positionals. */
+    public static final char NONE = '-';
+
+    private final String command;
+    private final String kinds;
+    private final int optionCount;
+    private final boolean stopAtPositional;
+    private final String[] names;
+    private final String[] primaryNames;
+    private final String[] keys;
+    private final int[] ids;
+    private volatile SuggestionIndex suggestions;
+
+    /**
+     * Receives the values of a parse; implemented by the generated parser.
+     */
+    public interface Binder<T> {
+        /**
+         * Get the converter of the {@link #CONVERTER} option in {@code slot}.
+         */
+        Converter<?> converter(int slot);
+
+        /**
+         * Build the command from the values by slot, validating required options;
+         * {@code null} marks a slot that was not given.
+         */
+        T build(Object[] values) throws ParseException;
+    }
+
+    /**
+     * @param names            the option names separated by {@code \n}, every option's first name first.
+     * @param ids              the option id of every name, one char per name.
+     * @param kinds            the value kind of every slot, one char per slot.
+     * @param optionCount      the number of options; the slots after them are parameters.
+     * @param stopAtPositional see {@code @Command(stopAtPositional = true)}.
+     */
+    public TableParser(String command, String names, String ids, String kinds, int optionCount,
+                       boolean stopAtPositional) {
+        this.command = command;
+        this.kinds = kinds;
+        this.optionCount = optionCount;
+        this.stopAtPositional = stopAtPositional;
+        this.names = names.isEmpty() ? new String[0] : names.split("\n");
+        this.primaryNames = new String[optionCount];
+
+        // Open addressing with linear probing, at most half full
+        int capacity = Integer.highestOneBit(Math.max(1, this.names.length) * 2) * 2;
+        this.keys = new String[capacity];
+        this.ids = new int[capacity];
+        for (int i = 0; i < this.names.length; i++) {
+            String name = this.names[i];
+            int id = ids.charAt(i);
+            if (primaryNames[id] == null) {
+                primaryNames[id] = name;
+            }
+            int slot = spread(name.hashCode()) & (capacity - 1);
+            while (keys[slot] != null) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            keys[slot] = name;
+            this.ids[slot] = id;
+        }
+    }
+
+    /**
+     * Parse {@code args} from {@code fromIndex} like a generated parser would.
+     */
+    public <T> ParseResult<T> parse(String[] args, int fromIndex, Binder<T> binder) throws ParseException {
+        ParseTrace trace = ParseTrace.begin(command, args.length - fromIndex);
+        if (trace == null) {
+            return parse(args, fromIndex, binder, null);
+        }
+        try {
+            ParseResult<T> parsed = parse(args, fromIndex, binder, trace);
+            trace.end(null);
+            return parsed;
+        } catch (ParseException | RuntimeException e) {
+            trace.end(e);
+            throw e;
+        }
+    }
+
+    private <T> ParseResult<T> parse(String[] args, int fromIndex, Binder<T> binder, ParseTrace trace)
+            throws ParseException {
+        Object[] values = new Object[kinds.length()];
+        List<String> remainingArgs = new ArrayList<>();
+        int parameterCount = kinds.length() - optionCount;
+        int posIdx = 0;
+        // After "--" every token is positional; tokens beyond the parameters are the passthrough tail
+        boolean optionsEnded = false;
+        int passthrough = args.length;
+        int idx = fromIndex;
+        while (idx < args.length) {
+            String arg = args[idx];
+            int option = optionsEnded ? -1 : optionId(arg);
+            if (option >= 0) {
+                if (kinds.charAt(option) == FLAG) {
+                    values[option] = Boolean.TRUE;
+                } else {
+                    if (idx + 1 >= args.length) {
+                        throw new ParseException("Option " + primaryNames[option] + " requires an argument");
+                    }
+                    values[option] = convert(option, args[++idx], binder, trace);
+                }
+                idx++;
+            } else if (optionsEnded || !arg.startsWith("-")) {
+                if (stopAtPositional) {
+                    optionsEnded = true;
+                }
+                if (posIdx < parameterCount && kinds.charAt(optionCount + posIdx) != NONE) {
+                    values[optionCount + posIdx] = convert(optionCount + posIdx, arg, binder, trace);
+                } else if (optionsEnded) {
+                    passthrough = idx;
+                    break;
+                } else {
+                    remainingArgs.add(arg);
+                }
+                posIdx++;
+                idx++;
+            } else if (arg.equals("--")) {
+                optionsEnded = true;
+                idx++;
+            } else {
+                throw new ParseException("Unknown option: " + arg + suggestions().didYouMean(arg));
+            }
+        }
+        if (trace != null) {
+            trace.validationStarted();
+        }
+        return new ParseResult<>(binder.build(values), remainingArgs, args, passthrough);
+    }
+
+    private Object convert(int slot, String value, Binder<?> binder, ParseTrace trace) throws ParseException {
+        switch (kinds.charAt(slot)) {
+            case INT:
+                return Integer.parseInt(value);
+            case LONG:
+                return Long.parseLong(value);
+            case BOOLEAN:
+                return Boolean.parseBoolean(value);
+            case DOUBLE:
+                return Double.parseDouble(value);
+            case FLOAT:
+                return Float.parseFloat(value);
+            case PATH:
+                return Path.of(value);
+            case FILE:
+                return new File(value);
+            case CONVERTER:
+                return convertWith(binder.converter(slot), primaryNames[slot], value, trace);
+            default:
+                return value;
+        }
+    }
+
+    private static Object convertWith(Converter<?> converter, String option, String value, ParseTrace trace)
+            throws ParseException {
+        if (trace != null) {
+            trace.conversionStarted(option, converter.getClass().getName());
+        }
+        Object converted;
+        try {
+            converted = converter.convert(value);
+        } catch (Exception e) {
+            if (trace != null) {
+                trace.conversionFailed(e);
+            }
+            throw new ParseException("Failed to convert option " + option + ": " + e.getMessage());
+        }
+        if (trace != null) {
+            trace.conversionSucceeded();
+        }
+        return converted;
+    }
+
+    private int optionId(String name) {
+        int slot = spread(name.hashCode()) & (keys.length - 1);
+        String key;
+        while ((key = keys[slot]) != null) {
+            if (key.equals(name)) {
+                return ids[slot];
+            }
+            slot = (slot + 1) & (keys.length - 1);
+        }
+        return -1;
+    }
+
+    private SuggestionIndex suggestions() {
+        // Only needed for error messages, so built on the first unknown option
+        SuggestionIndex index = suggestions;
+        if (index == null) {
+            index = SuggestionIndex.of(Arrays.asList(names));
+            suggestions = index;
+        }
+        return index;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,20 @@
+package com.github.asm0dey.cligen.runtime;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Binary encoding of a converted option value, for options whose type has no built-in encoding.
+ * <p>
+ * A {@link Converter} that also implements this interface makes its options encodable by the
+ * generated {@link CommandCodec}; without it, a command with such an option gets no codec.
+ * {@code null} values are handled by the generated codec and never passed to {@link #encode}.
+ *
+ * @param <T> the value type, the same as the converter's.
+ */
+public interface ValueCodec<T> {
+    void encode(T value, DataOutput out) throws IOException;
+
+    T decode(DataInput in) throws IOException;
+}
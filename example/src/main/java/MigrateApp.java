@@ -1,12 +1,17 @@
 import com.github.asm0dey.cligen.runtime.Command;
+import com.github.asm0dey.cligen.runtime.CompactDuration;
 import com.github.asm0dey.cligen.runtime.Option;
+import com.github.asm0dey.cligen.runtime.OptionGroup;
 import com.github.asm0dey.cligen.runtime.Parameters;
 import com.github.asm0dey.cligen.runtime.ParseException;
 
+import java.time.Duration;
+
 @Command(
     name = "migrate",
     description = "Database migration utility"
 )
+@OptionGroup(type = OptionGroup.Type.EXCLUSIVE, options = {"--dry-run", "--force"})
 public class MigrateApp {
     
     @Option(names = {"-H", "--host"},
@@ -31,6 +36,16 @@ public class MigrateApp {
             description = "Show what would be executed without executing")
     public boolean dryRun = false;
     
+    @Option(names = {"--force"},
+            arity = "0",
+            description = "Run even if the target version is older than the current one")
+    public boolean force = false;
+    
+    @CompactDuration
+    @Option(names = {"--lock-timeout"},
+            description = "How long to wait for the migration lock, e.g. 30s or 2m (default: 30s)")
+    public Duration lockTimeout = Duration.ofSeconds(30);
+    
     @Parameters(index = 0,
                 description = "Migration command (up, down, status)")
     public String command;
@@ -43,6 +58,7 @@ public class MigrateApp {
     public void execute() {
         System.out.println("Connecting to " + dbHost + ":" + dbPort);
         System.out.println("User: " + dbUser);
+        System.out.println("Lock timeout: " + lockTimeout.toSeconds() + "s");
         
         if (dryRun) {
             System.out.println("[DRY RUN] Command: " + command);
@@ -20,6 +20,11 @@ public class WebServerConfig {
             description = "Worker threads")
     public int threads = Runtime.getRuntime().availableProcessors();
     
+    @ByteSize
+    @Option(names = {"--max-body"},
+            description = "Maximum request body size, e.g. 512KiB or 10MB (default: 1MiB)")
+    public long maxBodySize = 1L << 20;
+    
     @Option(names = {"-d", "--debug"}, 
             description = "Enable debug logging")
     public boolean debug = false;
@@ -31,6 +36,7 @@ public class WebServerConfig {
     public void start() {
         System.out.println("Starting server on " + host + ":" + port);
         System.out.println("Threads: " + threads);
+        System.out.println("Max body size: " + maxBodySize + " bytes");
         System.out.println("Doc root: " + docRoot);
         if (debug) System.out.println("Debug mode ENABLED");
     }